@@ -0,0 +1,31 @@
+package net.nightzy.paysign.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of the benchmarks JAR.
+ * Runs JMH with the given arguments and writes the results as JSON
+ * to {@code jmh-result.json} unless another result format or file is given.
+ */
+public final class BenchmarkMain {
+
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.add("-rf");
+            arguments.add("json");
+        }
+        if (!arguments.contains("-rff")) {
+            arguments.add("-rff");
+            arguments.add(DEFAULT_RESULT_FILE);
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+}
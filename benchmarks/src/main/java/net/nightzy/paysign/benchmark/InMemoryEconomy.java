@@ -0,0 +1,306 @@
+package net.nightzy.paysign.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.OfflinePlayer;
+
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import net.milkbowl.vault.economy.EconomyResponse.ResponseType;
+
+/**
+ * Thread-safe in-memory {@link Economy} with one balance per player name (case-insensitive).
+ * Worlds are ignored and banks are not supported. An optional latency is added to every
+ * balance change to imitate a database-backed economy.
+ */
+public class InMemoryEconomy implements Economy {
+
+    private final Map<String, Double> balances = new ConcurrentHashMap<>();
+    private final long latencyNanos;
+
+    public InMemoryEconomy() {
+        this(0);
+    }
+
+    /**
+     * @param latencyNanos time every withdrawal and deposit takes
+     */
+    public InMemoryEconomy(long latencyNanos) {
+        this.latencyNanos = latencyNanos;
+    }
+
+    // ============================================================
+    // Balances
+    // ============================================================
+
+    /**
+     * Sets the balance of a player, creating the account if needed.
+     */
+    public void setBalance(String playerName, double balance) {
+        this.balances.put(key(playerName), balance);
+    }
+
+    private static String key(String playerName) {
+        return Objects.requireNonNull(playerName, "playerName cannot be null").toLowerCase(Locale.ROOT);
+    }
+
+    private void simulateLatency() {
+        if (this.latencyNanos > 0) {
+            long end = System.nanoTime() + this.latencyNanos;
+            while (System.nanoTime() < end) {
+                // busy wait, sleeping is far too coarse for microsecond latencies
+            }
+        }
+    }
+
+    private EconomyResponse change(String playerName, double delta) {
+        if (Double.isNaN(delta) || Double.isInfinite(delta)) {
+            return new EconomyResponse(0, 0, ResponseType.FAILURE, "Invalid amount");
+        }
+        this.simulateLatency();
+
+        double[] result = new double[1];
+        boolean[] success = new boolean[1];
+        this.balances.compute(key(playerName), (name, balance) -> {
+            double current = balance != null ? balance : 0;
+            success[0] = current + delta >= 0;
+            result[0] = success[0] ? current + delta : current;
+            return result[0];
+        });
+        return success[0]
+                ? new EconomyResponse(Math.abs(delta), result[0], ResponseType.SUCCESS, null)
+                : new EconomyResponse(0, result[0], ResponseType.FAILURE, "Insufficient funds");
+    }
+
+    // ============================================================
+    // Economy
+    // ============================================================
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "InMemoryEconomy";
+    }
+
+    @Override
+    public boolean hasBankSupport() {
+        return false;
+    }
+
+    @Override
+    public int fractionalDigits() {
+        return 2;
+    }
+
+    @Override
+    public String format(double amount) {
+        return String.format(Locale.ROOT, "$%.2f", amount);
+    }
+
+    @Override
+    public String currencyNamePlural() {
+        return "Dollars";
+    }
+
+    @Override
+    public String currencyNameSingular() {
+        return "Dollar";
+    }
+
+    @Override
+    public boolean hasAccount(String playerName) {
+        return this.balances.containsKey(key(playerName));
+    }
+
+    @Override
+    public boolean hasAccount(OfflinePlayer player) {
+        return this.hasAccount(player.getName());
+    }
+
+    @Override
+    public boolean hasAccount(String playerName, String worldName) {
+        return this.hasAccount(playerName);
+    }
+
+    @Override
+    public boolean hasAccount(OfflinePlayer player, String worldName) {
+        return this.hasAccount(player.getName());
+    }
+
+    @Override
+    public double getBalance(String playerName) {
+        return this.balances.getOrDefault(key(playerName), 0D);
+    }
+
+    @Override
+    public double getBalance(OfflinePlayer player) {
+        return this.getBalance(player.getName());
+    }
+
+    @Override
+    public double getBalance(String playerName, String world) {
+        return this.getBalance(playerName);
+    }
+
+    @Override
+    public double getBalance(OfflinePlayer player, String world) {
+        return this.getBalance(player.getName());
+    }
+
+    @Override
+    public boolean has(String playerName, double amount) {
+        return this.getBalance(playerName) >= amount;
+    }
+
+    @Override
+    public boolean has(OfflinePlayer player, double amount) {
+        return this.has(player.getName(), amount);
+    }
+
+    @Override
+    public boolean has(String playerName, String worldName, double amount) {
+        return this.has(playerName, amount);
+    }
+
+    @Override
+    public boolean has(OfflinePlayer player, String worldName, double amount) {
+        return this.has(player.getName(), amount);
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(String playerName, double amount) {
+        return this.change(playerName, -amount);
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(OfflinePlayer player, double amount) {
+        return this.withdrawPlayer(player.getName(), amount);
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(String playerName, String worldName, double amount) {
+        return this.withdrawPlayer(playerName, amount);
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(OfflinePlayer player, String worldName, double amount) {
+        return this.withdrawPlayer(player.getName(), amount);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(String playerName, double amount) {
+        return this.change(playerName, amount);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(OfflinePlayer player, double amount) {
+        return this.depositPlayer(player.getName(), amount);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(String playerName, String worldName, double amount) {
+        return this.depositPlayer(playerName, amount);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(OfflinePlayer player, String worldName, double amount) {
+        return this.depositPlayer(player.getName(), amount);
+    }
+
+    @Override
+    public boolean createPlayerAccount(String playerName) {
+        return this.balances.putIfAbsent(key(playerName), 0D) == null;
+    }
+
+    @Override
+    public boolean createPlayerAccount(OfflinePlayer player) {
+        return this.createPlayerAccount(player.getName());
+    }
+
+    @Override
+    public boolean createPlayerAccount(String playerName, String worldName) {
+        return this.createPlayerAccount(playerName);
+    }
+
+    @Override
+    public boolean createPlayerAccount(OfflinePlayer player, String worldName) {
+        return this.createPlayerAccount(player.getName());
+    }
+
+    // ============================================================
+    // Banks (not supported)
+    // ============================================================
+
+    private static EconomyResponse noBanks() {
+        return new EconomyResponse(0, 0, ResponseType.NOT_IMPLEMENTED, "Banks are not supported");
+    }
+
+    @Override
+    public EconomyResponse createBank(String name, String player) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse createBank(String name, OfflinePlayer player) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse deleteBank(String name) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse bankBalance(String name) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse bankHas(String name, double amount) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse bankWithdraw(String name, double amount) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse bankDeposit(String name, double amount) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse isBankOwner(String name, String playerName) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse isBankOwner(String name, OfflinePlayer player) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse isBankMember(String name, String playerName) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse isBankMember(String name, OfflinePlayer player) {
+        return noBanks();
+    }
+
+    @Override
+    public List<String> getBanks() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,55 @@
+package net.nightzy.paysign.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.nightzy.paysign.MessageRenderer;
+
+/**
+ * Rendering the messages sent on every payment from their compiled templates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageRendererBenchmark {
+
+    // Built-in messages with the plugin's prefix
+    private final MessageRenderer renderer = MessageRenderer.builtIn("PaySign");
+    private final Player recipient = Stubs.player("Steve", 1, Stubs.world("world"));
+
+    private final String playerName = "Notch";
+    private final String formattedPrice = "$12.50";
+
+    @Benchmark
+    public String paid() {
+        return this.renderer.paid(this.recipient, this.formattedPrice, this.playerName);
+    }
+
+    @Benchmark
+    public String notification() {
+        return this.renderer.notification(this.recipient, this.playerName, this.formattedPrice);
+    }
+
+    @Benchmark
+    public String tooPoor() {
+        return this.renderer.tooPoor(this.recipient);
+    }
+
+    @Benchmark
+    public String error() {
+        return this.renderer.error(this.recipient, "Line 3: Price is not a valid number");
+    }
+}
@@ -0,0 +1,111 @@
+package net.nightzy.paysign.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.nightzy.paysign.Configuration;
+import net.nightzy.paysign.Metrics;
+import net.nightzy.paysign.Money;
+import net.nightzy.paysign.OwnerLedger;
+import net.nightzy.paysign.PaySign;
+import net.nightzy.paysign.Payment;
+import net.nightzy.paysign.PaymentJournal;
+import net.nightzy.paysign.PlayerSession;
+import net.nightzy.paysign.SignDataParser;
+
+/**
+ * A complete {@link PaySign#pay} against the in-memory economy,
+ * with and without the write-behind ledger and the payment journal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentBenchmark {
+
+    // Held so that the configured level is not lost when the logger is garbage collected
+    private static final Logger PLUGIN_LOGGER = Logger.getLogger("net.nightzy.paysign");
+
+    @Param({"false", "true"})
+    public boolean writeBehind;
+
+    @Param({"false", "true"})
+    public boolean journal;
+
+    private InMemoryEconomy economy;
+    private OwnerLedger ledger;
+    private PaymentJournal paymentJournal;
+    private Path journalDirectory;
+    private PaySign paySign;
+    private PlayerSession payer;
+    private OfflinePlayer owner;
+    private final Metrics metrics = new Metrics();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SignDataParser.ParseException {
+        // Payment logging would dominate the measurement
+        PLUGIN_LOGGER.setLevel(java.util.logging.Level.WARNING);
+
+        World world = Stubs.world("world");
+        this.economy = new InMemoryEconomy();
+        this.economy.setBalance("Steve", 1e12);
+        this.economy.setBalance("Notch", 0);
+        this.payer = new PlayerSession(Stubs.player("Steve", 1, world), Configuration.load(new YamlConfiguration()),
+                "nightzypaysign.use");
+        this.owner = Stubs.offlinePlayer("Notch");
+
+        if (this.journal) {
+            this.journalDirectory = Files.createTempDirectory("paysign-journal");
+            this.paymentJournal = PaymentJournal.open(this.journalDirectory, Money.DEFAULT_SCALE);
+        } else {
+            this.paymentJournal = PaymentJournal.disabled();
+        }
+        this.ledger = new OwnerLedger(this.paymentJournal, this.writeBehind,
+                Money.ofMinor(Long.MAX_VALUE, Money.DEFAULT_SCALE));
+
+        String[] lines = {"[PaySign]", "Notch", "2.5", ""};
+        this.paySign = new SignDataParser(Money.DEFAULT_SCALE)
+                .parse(Stubs.sign(world.getBlockAt(0, 64, 0), lines), lines)
+                .orElseThrow(IllegalStateException::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.paymentJournal.close();
+        if (this.journalDirectory != null) {
+            try (Stream<Path> files = Files.walk(this.journalDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public Payment pay() {
+        return this.paySign.pay(this.payer, this.owner, this.economy, this.ledger, this.paymentJournal, true,
+                this.metrics);
+    }
+}
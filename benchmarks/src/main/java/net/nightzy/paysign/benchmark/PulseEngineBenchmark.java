@@ -0,0 +1,103 @@
+package net.nightzy.paysign.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.Sign;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.nightzy.paysign.BarrierSwapPulseEngine;
+import net.nightzy.paysign.DirectPulseEngine;
+import net.nightzy.paysign.Money;
+import net.nightzy.paysign.PaySign;
+import net.nightzy.paysign.ProtectionIndex;
+import net.nightzy.paysign.PulseEngine;
+import net.nightzy.paysign.Trigger;
+import net.nightzy.paysign.simulation.SimulatedServer;
+import net.nightzy.paysign.simulation.SimulatedWorld;
+
+/**
+ * A full redstone pulse (execute and flush of a {@link Trigger}) with each {@link PulseEngine},
+ * on a simulated world that fires a physics event per neighbour update.
+ * Block writes and neighbour updates per pulse are reported as secondary results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PulseEngineBenchmark {
+
+    // Only one simulated server can be installed per JVM
+    private static SimulatedServer server;
+
+    @Param({PulseEngine.BARRIER_SWAP, PulseEngine.DIRECT})
+    public String engine;
+
+    private SimulatedWorld world;
+    private ProtectionIndex protectionIndex;
+    private PulseEngine pulseEngine;
+    private PaySign paySign;
+
+    /**
+     * Block changes and neighbour updates, summed over all pulses.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Writes {
+
+        public long blockWrites;
+        public long neighbourUpdates;
+    }
+
+    @Setup
+    public void setUp() {
+        this.world = server().createWorld("world-" + this.engine);
+        this.protectionIndex = new ProtectionIndex();
+        this.pulseEngine = PulseEngine.DIRECT.equals(this.engine)
+                ? new DirectPulseEngine(this.world::notifyNeighbours)
+                : new BarrierSwapPulseEngine();
+
+        // Standing sign on a stone block
+        Block base = this.world.blockAt(0, 64, 0);
+        Block block = this.world.blockAt(0, 65, 0);
+        this.world.setType(base, Material.STONE);
+        this.world.setType(block, Material.OAK_SIGN);
+        this.world.setLines(block, new String[]{"[PaySign]", "Notch", "1", ""});
+        this.paySign = new PaySign((Sign) block.getState(), "Notch", Money.parse("1", Money.DEFAULT_SCALE), 0);
+    }
+
+    @Benchmark
+    public Trigger pulse(Writes writes) {
+        long blockWrites = this.world.blockWrites();
+        long neighbourUpdates = this.world.neighbourUpdates();
+
+        Trigger trigger = new Trigger(this.protectionIndex, this.pulseEngine, this.paySign, 30, 0L);
+        trigger.execute();
+        trigger.flush();
+
+        writes.blockWrites += this.world.blockWrites() - blockWrites;
+        writes.neighbourUpdates += this.world.neighbourUpdates() - neighbourUpdates;
+        return trigger;
+    }
+
+    private static synchronized SimulatedServer server() {
+        if (server == null) {
+            server = new SimulatedServer();
+        }
+        return server;
+    }
+}
@@ -0,0 +1,66 @@
+package net.nightzy.paysign.benchmark;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.World;
+import org.bukkit.block.Sign;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.nightzy.paysign.Money;
+import net.nightzy.paysign.PaySign;
+import net.nightzy.paysign.SignDataParser;
+
+/**
+ * Parsing of valid PaySigns, invalid PaySigns and ordinary signs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignDataParserBenchmark {
+
+    private static final String[] VALID = {"\u00a72[PaySign]", "Notch", "12.5", "3"};
+    private static final String[] INVALID = {"[PaySign]", "Notch", "twelve", ""};
+    private static final String[] OTHER = {"Welcome", "to the", "shop", ""};
+
+    private SignDataParser parser;
+    private Sign sign;
+
+    @Setup
+    public void setUp() {
+        World world = Stubs.world("world");
+        this.parser = new SignDataParser(Money.DEFAULT_SCALE);
+        this.sign = Stubs.sign(world.getBlockAt(0, 64, 0), VALID);
+    }
+
+    @Benchmark
+    public Optional<PaySign> valid() throws SignDataParser.ParseException {
+        return this.parser.parse(this.sign, VALID);
+    }
+
+    @Benchmark
+    public Object invalid() {
+        try {
+            return this.parser.parse(this.sign, INVALID);
+        } catch (SignDataParser.ParseException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Optional<PaySign> notPaySign() throws SignDataParser.ParseException {
+        return this.parser.parse(this.sign, OTHER);
+    }
+}
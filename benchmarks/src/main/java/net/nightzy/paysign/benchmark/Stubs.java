@@ -0,0 +1,231 @@
+package net.nightzy.paysign.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.Sign;
+import org.bukkit.entity.Player;
+import org.bukkit.persistence.PersistentDataContainer;
+
+import net.nightzy.paysign.BlockKeys;
+
+/**
+ * Minimal stand-ins for the Bukkit objects used by the PaySign hot paths.
+ * Each stub is a dynamic proxy that answers the methods it is given and throws
+ * {@link UnsupportedOperationException} for every other method, so a benchmark
+ * fails loudly instead of measuring a silently stubbed call.
+ */
+public final class Stubs {
+
+    /**
+     * Answers a stubbed method call.
+     */
+    @FunctionalInterface
+    public interface Answer {
+        Object answer(Object[] args);
+    }
+
+    private Stubs() {
+    }
+
+    // ============================================================
+    // Factories
+    // ============================================================
+
+    /**
+     * Creates a world whose blocks are created on first access and are identical on later accesses.
+     * @param name name of the world
+     * @return the world stub
+     */
+    public static World world(String name) {
+        Objects.requireNonNull(name, "name cannot be null");
+        UUID uid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        Map<Long, Block> blocks = new HashMap<>();
+        World[] world = new World[1];
+
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("getName", args -> name);
+        answers.put("getUID", args -> uid);
+        answers.put("getBlockAt", args -> {
+            int x, y, z;
+            if (args.length == 1) {
+                Location location = (Location) args[0];
+                x = location.getBlockX();
+                y = location.getBlockY();
+                z = location.getBlockZ();
+            } else {
+                x = (Integer) args[0];
+                y = (Integer) args[1];
+                z = (Integer) args[2];
+            }
+            return blocks.computeIfAbsent(BlockKeys.pack(x, y, z), key -> block(world[0], x, y, z));
+        });
+        answers.put("playSound", args -> null);
+        world[0] = stub(World.class, answers);
+        return world[0];
+    }
+
+    /**
+     * Creates a block with a mutable type, initially air.
+     * Prefer {@link World#getBlockAt(int, int, int)} of a stub world, which keeps blocks identical.
+     */
+    public static Block block(World world, int x, int y, int z) {
+        Objects.requireNonNull(world, "world cannot be null");
+        Material[] type = {Material.AIR};
+
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("getWorld", args -> world);
+        answers.put("getX", args -> x);
+        answers.put("getY", args -> y);
+        answers.put("getZ", args -> z);
+        answers.put("getLocation", args -> new Location(world, x, y, z));
+        answers.put("getType", args -> type[0]);
+        answers.put("setType", args -> type[0] = (Material) args[0]);
+        return stub(Block.class, answers);
+    }
+
+    /**
+     * Creates a sign state of the given block. The block type is set to an oak sign.
+     * @param block the sign block
+     * @param lines the four sign lines
+     * @return the sign stub
+     */
+    public static Sign sign(Block block, String... lines) {
+        Objects.requireNonNull(block, "block cannot be null");
+        String[] text = Arrays.copyOf(lines, 4);
+        for (int i = 0; i < text.length; i++) {
+            if (text[i] == null) {
+                text[i] = "";
+            }
+        }
+        block.setType(Material.OAK_SIGN);
+
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("getBlock", args -> block);
+        answers.put("getWorld", args -> block.getWorld());
+        answers.put("getLocation", args -> block.getLocation());
+        answers.put("getX", args -> block.getX());
+        answers.put("getY", args -> block.getY());
+        answers.put("getZ", args -> block.getZ());
+        answers.put("getType", args -> block.getType());
+        answers.put("getLines", args -> text.clone());
+        answers.put("getLine", args -> text[(Integer) args[0]]);
+        answers.put("setLine", args -> text[(Integer) args[0]] = (String) args[1]);
+        answers.put("update", args -> true);
+        return stub(Sign.class, answers);
+    }
+
+    /**
+     * Creates a persistent data container backed by the given map.
+     * Values are stored as given, without conversion between data types.
+     * @param values values by key, updated by the container
+     * @return the container stub
+     */
+    public static PersistentDataContainer persistentData(Map<NamespacedKey, Object> values) {
+        Objects.requireNonNull(values, "values cannot be null");
+
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("get", args -> values.get(args[0]));
+        answers.put("getOrDefault", args -> values.getOrDefault(args[0], args[2]));
+        answers.put("has", args -> values.containsKey(args[0]));
+        answers.put("set", args -> values.put((NamespacedKey) args[0], args[2]));
+        answers.put("remove", args -> values.remove(args[0]));
+        answers.put("isEmpty", args -> values.isEmpty());
+        return stub(PersistentDataContainer.class, answers);
+    }
+
+    /**
+     * Creates an online player with every permission.
+     * @param name name of the player
+     * @param entityId entity id of the player
+     * @param world world the player is in
+     * @return the player stub
+     */
+    public static Player player(String name, int entityId, World world) {
+        Objects.requireNonNull(name, "name cannot be null");
+        Objects.requireNonNull(world, "world cannot be null");
+        UUID uuid = UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("getName", args -> name);
+        answers.put("getUniqueId", args -> uuid);
+        answers.put("getEntityId", args -> entityId);
+        answers.put("getWorld", args -> world);
+        answers.put("isOnline", args -> true);
+        answers.put("isSneaking", args -> false);
+        answers.put("hasPermission", args -> true);
+        answers.put("getLocale", args -> "en_us");
+        answers.put("sendMessage", args -> null);
+        return stub(Player.class, answers);
+    }
+
+    /**
+     * Creates an offline player.
+     * @param name name of the player
+     * @return the offline player stub
+     */
+    public static OfflinePlayer offlinePlayer(String name) {
+        Objects.requireNonNull(name, "name cannot be null");
+        UUID uuid = UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("getName", args -> name);
+        answers.put("getUniqueId", args -> uuid);
+        answers.put("isOnline", args -> false);
+        return stub(OfflinePlayer.class, answers);
+    }
+
+    /**
+     * Creates a proxy of the given interface answering the given methods by name.
+     * Objects are equal only to themselves.
+     * @param type interface to implement
+     * @param answers answers by method name
+     * @return the stub
+     */
+    public static <T> T stub(Class<T> type, Map<String, Answer> answers) {
+        Objects.requireNonNull(type, "type cannot be null");
+        Map<String, Answer> methods = new HashMap<>(answers);
+
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object[] arguments = args != null ? args : new Object[0];
+            switch (method.getName()) {
+                case "equals":
+                    if (arguments.length == 1) {
+                        return proxy == arguments[0];
+                    }
+                    break;
+                case "hashCode":
+                    if (arguments.length == 0) {
+                        return System.identityHashCode(proxy);
+                    }
+                    break;
+                case "toString":
+                    if (arguments.length == 0) {
+                        return type.getSimpleName() + "Stub@" + Integer.toHexString(System.identityHashCode(proxy));
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            Answer answer = methods.get(method.getName());
+            if (answer == null) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName() + " is not stubbed");
+            }
+            return answer.answer(arguments);
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
@@ -0,0 +1,93 @@
+package net.nightzy.paysign.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.nightzy.paysign.BarrierSwapPulseEngine;
+import net.nightzy.paysign.Money;
+import net.nightzy.paysign.PaySign;
+import net.nightzy.paysign.ProtectionIndex;
+import net.nightzy.paysign.Trigger;
+
+/**
+ * Deciding whether a block event touches an active trigger, with N triggers active.
+ * Compares testing every {@link Trigger} in turn with a single {@link ProtectionIndex} lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TriggerDispatchBenchmark {
+
+    @Param({"1", "16", "256", "4096"})
+    public int triggers;
+
+    private final List<Trigger> active = new ArrayList<>();
+    private ProtectionIndex protectionIndex;
+    private Block hit;
+    private Block miss;
+
+    @Setup
+    public void setUp() {
+        World world = Stubs.world("world");
+        this.protectionIndex = new ProtectionIndex();
+
+        for (int i = 0; i < this.triggers; i++) {
+            Block block = world.getBlockAt(i * 3, 64, i * 7);
+            PaySign paySign = new PaySign(Stubs.sign(block, "[PaySign]", "Notch", "1", ""), "Notch",
+                    Money.parse("1", Money.DEFAULT_SCALE), 0);
+            this.active.add(new Trigger(this.protectionIndex, new BarrierSwapPulseEngine(), paySign, 30, 0L));
+            this.protectionIndex.protect(block);
+        }
+
+        // The last trigger is the worst case for the linear scan
+        this.hit = world.getBlockAt((this.triggers - 1) * 3, 64, (this.triggers - 1) * 7);
+        this.miss = world.getBlockAt(1, 64, 1);
+    }
+
+    @Benchmark
+    public boolean linearHit() {
+        return this.scan(this.hit);
+    }
+
+    @Benchmark
+    public boolean linearMiss() {
+        return this.scan(this.miss);
+    }
+
+    @Benchmark
+    public boolean indexHit() {
+        return this.protectionIndex.isProtected(this.hit);
+    }
+
+    @Benchmark
+    public boolean indexMiss() {
+        return this.protectionIndex.isProtected(this.miss);
+    }
+
+    private boolean scan(Block block) {
+        for (Trigger trigger : this.active) {
+            if (trigger.test(block)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
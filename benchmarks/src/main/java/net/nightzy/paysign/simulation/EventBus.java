@@ -0,0 +1,95 @@
+package net.nightzy.paysign.simulation;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+
+/**
+ * Dispatches events to the {@link EventHandler} methods of registered listeners
+ * in priority order, honouring {@link EventHandler#ignoreCancelled()}, like the server does.
+ */
+public class EventBus {
+
+    private final List<Handler> handlers = new ArrayList<>();
+
+    // Handlers per event class, resolved on first dispatch
+    private final Map<Class<?>, Handler[]> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * Registers all event handler methods of the listener.
+     * @param listener the listener
+     */
+    public synchronized void register(Listener listener) {
+        Objects.requireNonNull(listener, "listener cannot be null");
+        for (Method method : listener.getClass().getMethods()) {
+            EventHandler annotation = method.getAnnotation(EventHandler.class);
+            if (annotation == null || method.getParameterCount() != 1
+                    || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                continue;
+            }
+            method.setAccessible(true);
+            this.handlers.add(new Handler(listener, method, annotation));
+        }
+        this.resolved.clear();
+    }
+
+    /**
+     * Calls all handlers of the event. Must be called from the tick thread.
+     * @param event the event
+     * @return the event
+     */
+    public <E extends Event> E call(E event) {
+        Objects.requireNonNull(event, "event cannot be null");
+        Handler[] handlers = this.resolved.computeIfAbsent(event.getClass(), this::resolve);
+        for (Handler handler : handlers) {
+            if (handler.annotation.ignoreCancelled() && event instanceof Cancellable
+                    && ((Cancellable) event).isCancelled()) {
+                continue;
+            }
+            try {
+                handler.method.invoke(handler.listener, event);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("Could not pass " + event.getEventName() + " to " +
+                                                handler.method, e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return event;
+    }
+
+    private synchronized Handler[] resolve(Class<?> eventClass) {
+        List<Handler> matching = new ArrayList<>();
+        for (Handler handler : this.handlers) {
+            if (handler.method.getParameterTypes()[0].isAssignableFrom(eventClass)) {
+                matching.add(handler);
+            }
+        }
+        // Stable sort keeps registration order within a priority
+        matching.sort(Comparator.comparingInt(handler -> handler.annotation.priority().getSlot()));
+        return matching.toArray(new Handler[0]);
+    }
+
+    private static final class Handler {
+
+        private final Listener listener;
+        private final Method method;
+        private final EventHandler annotation;
+
+        private Handler(Listener listener, Method method, EventHandler annotation) {
+            this.listener = listener;
+            this.method = method;
+            this.annotation = annotation;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package net.nightzy.paysign.simulation;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+
+import net.milkbowl.vault.economy.Economy;
+import net.nightzy.paysign.PaySignPlugin;
+import net.nightzy.paysign.benchmark.InMemoryEconomy;
+import net.nightzy.paysign.benchmark.Stubs;
+
+/**
+ * Headless load simulator. Runs the real plugin on a {@link SimulatedServer} and replays
+ * synthetic sign clicks, sign creations, block breaks and explosions on a simulated tick loop.
+ * <p>
+ * Reports tick time percentiles, bytes allocated on the server thread per click and the
+ * scheduler queue depth. Options are given as {@code --name=value}, see {@link Options}.
+ * <pre>
+ * java -cp benchmarks.jar net.nightzy.paysign.simulation.LoadSimulator --signs=2000 --players=200
+ * </pre>
+ */
+public final class LoadSimulator {
+
+    // Held so that the configured level is not lost when the logger is garbage collected
+    private static final Logger PLUGIN_LOGGER = Logger.getLogger("net.nightzy.paysign");
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    // Ticks after enabling before clicks start, the economy is hooked in the first tick
+    private static final int WARMUP_TICKS = 20;
+
+    // Ticks after which destroyed signs are placed again
+    private static final int RESPAWN_TICKS = 40;
+
+    private final Options options;
+    private final Random random;
+    private final SimulatedServer server = new SimulatedServer();
+    private final SimulatedWorld world = this.server.createWorld("world");
+    private final List<Player> players = new ArrayList<>();
+    private final List<Block> signs = new ArrayList<>();
+    private final Map<Block, Integer> signIndex = new IdentityHashMap<>();
+    private final Map<Long, List<Integer>> respawns = new HashMap<>();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results
+    private long[] tickNanos;
+    private long clicks;
+    private long clickBytes;
+    private long maxQueueDepth;
+    private long totalQueueDepth;
+    private long maxAsyncTasks;
+    private long explosions;
+    private long cancelledBreaks;
+    private long signsDestroyed;
+
+    private LoadSimulator(Options options) {
+        this.options = options;
+        this.random = new Random(options.seed);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        PLUGIN_LOGGER.setLevel(options.verbose ? Level.INFO : Level.WARNING);
+
+        Path dataFolder = Files.createTempDirectory("paysign-simulation");
+        try {
+            LoadSimulator simulator = new LoadSimulator(options);
+            simulator.run(dataFolder.toFile());
+            simulator.report(System.out);
+            if (options.json != null) {
+                Files.write(Paths.get(options.json), simulator.json().getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dataFolder)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // ============================================================
+    // Simulation
+    // ============================================================
+
+    private void run(File dataFolder) throws Exception {
+        InMemoryEconomy economy = new InMemoryEconomy(TimeUnit.MICROSECONDS.toNanos(this.options.economyLatencyMicros));
+        for (int i = 0; i < this.options.players; i++) {
+            String name = "Player" + i;
+            this.players.add(this.server.addPlayer(name, this.world));
+            economy.setBalance(name, 1e12);
+        }
+
+        PaySignPlugin plugin = this.server.loadPlugin(dataFolder);
+        this.server.registerService(Economy.class, economy, plugin);
+        plugin.onEnable();
+
+        for (int i = 0; i < this.options.signs; i++) {
+            Block block = this.world.blockAt((i % 100) * 3, 64, (i / 100) * 3);
+            this.signs.add(block);
+            this.signIndex.put(block, i);
+            this.placeSign(i);
+        }
+
+        SimulatedScheduler scheduler = this.server.getScheduler();
+        int ticks = WARMUP_TICKS + this.options.ticks;
+        this.tickNanos = new long[this.options.ticks];
+        double clickChance = this.options.clickRate / 20;
+        long next = System.nanoTime();
+
+        for (int tick = 1; tick <= ticks; tick++) {
+            long start = System.nanoTime();
+            int queueDepth = scheduler.queueDepth();
+            scheduler.tick();
+
+            if (tick > WARMUP_TICKS) {
+                for (Player player : this.players) {
+                    if (this.random.nextDouble() < clickChance) {
+                        this.click(player);
+                    }
+                }
+                if (this.options.explosionInterval > 0 && tick % this.options.explosionInterval == 0) {
+                    this.explode(tick);
+                }
+                if (this.options.explosionInterval > 0
+                        && tick % this.options.explosionInterval == this.options.explosionInterval / 2) {
+                    this.breakSign(tick);
+                }
+            }
+            List<Integer> respawn = this.respawns.remove((long) tick);
+            if (respawn != null) {
+                respawn.forEach(this::placeSign);
+            }
+
+            if (tick > WARMUP_TICKS) {
+                this.tickNanos[tick - WARMUP_TICKS - 1] = System.nanoTime() - start;
+                this.totalQueueDepth += queueDepth;
+                this.maxQueueDepth = Math.max(this.maxQueueDepth, queueDepth);
+                this.maxAsyncTasks = Math.max(this.maxAsyncTasks, scheduler.activeAsyncTasks());
+            }
+
+            if (this.options.realtime) {
+                next += TICK_NANOS;
+                long sleep = next - System.nanoTime();
+                if (sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+            }
+        }
+
+        plugin.onDisable();
+        scheduler.shutdown();
+    }
+
+    /**
+     * Places the sign with the given index and creates it as a PaySign.
+     */
+    private void placeSign(int index) {
+        Block block = this.signs.get(index);
+        Player owner = this.players.get(index % this.players.size());
+        this.world.setType(block.getRelative(BlockFace.DOWN), Material.STONE);
+        this.world.setType(block, Material.OAK_SIGN);
+
+        String price = (index % 10 == 0) ? "0" : String.valueOf(1 + index % 50) + ".5";
+        String delay = (index % 4 == 0) ? String.valueOf(1 + index % 3) : "";
+        SignChangeEvent event = this.server.getEventBus().call(
+                new SignChangeEvent(block, owner, new String[]{"[PaySign]", owner.getName(), price, delay}));
+        if (!event.isCancelled()) {
+            this.world.setLines(block, event.getLines());
+        }
+    }
+
+    /**
+     * Right-clicks a sign, most clicks go to a small set of popular signs.
+     */
+    private void click(Player player) {
+        int index = this.random.nextDouble() < this.options.hotClickShare
+                ? this.random.nextInt(Math.max(1, this.signs.size() / 10))
+                : this.random.nextInt(this.signs.size());
+        Block block = this.signs.get(index);
+
+        long threadId = Thread.currentThread().getId();
+        long before = this.threads.getThreadAllocatedBytes(threadId);
+        this.server.getEventBus().call(new PlayerInteractEvent(player, Action.RIGHT_CLICK_BLOCK, null, block, BlockFace.NORTH));
+        long after = this.threads.getThreadAllocatedBytes(threadId);
+
+        this.clicks++;
+        this.clickBytes += after - before;
+    }
+
+    /**
+     * Explodes the blocks around a random sign, alternating block and entity explosions.
+     */
+    private void explode(long tick) {
+        Block center = this.signs.get(this.random.nextInt(this.signs.size()));
+        List<Block> blocks = new ArrayList<>();
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    Block block = center.getRelative(dx, dy, dz);
+                    if (block.getType() != Material.AIR) {
+                        blocks.add(block);
+                    }
+                }
+            }
+        }
+
+        List<Block> destroyed;
+        if (this.explosions++ % 2 == 0) {
+            BlockExplodeEvent event = this.server.getEventBus().call(new BlockExplodeEvent(center, blocks, 0.3F));
+            destroyed = event.isCancelled() ? new ArrayList<>() : event.blockList();
+        } else {
+            Entity creeper = Stubs.stub(Entity.class, new HashMap<>());
+            EntityExplodeEvent event = this.server.getEventBus().call(
+                    new EntityExplodeEvent(creeper, center.getLocation(), blocks, 0.3F));
+            destroyed = event.isCancelled() ? new ArrayList<>() : event.blockList();
+        }
+
+        for (Block block : destroyed) {
+            this.destroy(block, tick);
+        }
+    }
+
+    /**
+     * Lets a random player try to break a random sign.
+     */
+    private void breakSign(long tick) {
+        Block block = this.signs.get(this.random.nextInt(this.signs.size()));
+        Player player = this.players.get(this.random.nextInt(this.players.size()));
+        BlockBreakEvent event = this.server.getEventBus().call(new BlockBreakEvent(block, player));
+        if (event.isCancelled()) {
+            this.cancelledBreaks++;
+        } else {
+            this.destroy(block, tick);
+        }
+    }
+
+    private void destroy(Block block, long tick) {
+        this.world.setType(block, Material.AIR);
+        Integer index = this.signIndex.get(block);
+        if (index != null) {
+            this.signsDestroyed++;
+            this.respawns.computeIfAbsent(tick + RESPAWN_TICKS, key -> new ArrayList<>()).add(index);
+        }
+    }
+
+    // ============================================================
+    // Report
+    // ============================================================
+
+    private double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private void report(PrintStream out) {
+        long[] sorted = this.tickNanos.clone();
+        Arrays.sort(sorted);
+
+        out.println("PaySign load simulation");
+        out.println("  signs " + this.options.signs + ", players " + this.options.players + ", ticks " + this.options.ticks +
+                    ", clicks/player/s " + this.options.clickRate + ", economy latency " +
+                    this.options.economyLatencyMicros + " us" + (this.options.realtime ? "" : ", unpaced"));
+        out.printf(Locale.ROOT, "Tick time (ms)       p50 %.3f  p90 %.3f  p99 %.3f  p99.9 %.3f  max %.3f%n",
+                this.percentileMillis(sorted, 50), this.percentileMillis(sorted, 90),
+                this.percentileMillis(sorted, 99), this.percentileMillis(sorted, 99.9),
+                this.percentileMillis(sorted, 100));
+        out.printf(Locale.ROOT, "Clicks               %d (%.1f bytes allocated per click)%n",
+                this.clicks, this.bytesPerClick());
+        out.printf(Locale.ROOT, "Scheduler queue      avg %.1f  max %d  (max %d async tasks running)%n",
+                this.averageQueueDepth(), this.maxQueueDepth, this.maxAsyncTasks);
+        out.printf(Locale.ROOT, "Redstone pulses      %d%n", this.pulses());
+        out.printf(Locale.ROOT, "Messages sent        %d%n", this.server.messagesSent());
+        out.printf(Locale.ROOT, "Explosions           %d (%d signs destroyed, %d breaks cancelled)%n",
+                this.explosions, this.signsDestroyed, this.cancelledBreaks);
+    }
+
+    private String json() {
+        long[] sorted = this.tickNanos.clone();
+        Arrays.sort(sorted);
+        return String.format(Locale.ROOT,
+                "{\"signs\":%d,\"players\":%d,\"ticks\":%d,\"clickRate\":%s,\"economyLatencyMicros\":%d," +
+                "\"tickMillis\":{\"p50\":%.4f,\"p90\":%.4f,\"p99\":%.4f,\"p999\":%.4f,\"max\":%.4f}," +
+                "\"clicks\":%d,\"bytesPerClick\":%.1f,\"queueDepth\":{\"avg\":%.2f,\"max\":%d}," +
+                "\"maxAsyncTasks\":%d,\"pulses\":%d,\"messages\":%d,\"explosions\":%d,\"signsDestroyed\":%d," +
+                "\"cancelledBreaks\":%d}%n",
+                this.options.signs, this.options.players, this.options.ticks, this.options.clickRate,
+                this.options.economyLatencyMicros,
+                this.percentileMillis(sorted, 50), this.percentileMillis(sorted, 90), this.percentileMillis(sorted, 99),
+                this.percentileMillis(sorted, 99.9), this.percentileMillis(sorted, 100),
+                this.clicks, this.bytesPerClick(), this.averageQueueDepth(), this.maxQueueDepth,
+                this.maxAsyncTasks, this.pulses(), this.server.messagesSent(), this.explosions,
+                this.signsDestroyed, this.cancelledBreaks);
+    }
+
+    private double bytesPerClick() {
+        return this.clicks > 0 ? (double) this.clickBytes / this.clicks : 0;
+    }
+
+    private double averageQueueDepth() {
+        return this.tickNanos.length > 0 ? (double) this.totalQueueDepth / this.tickNanos.length : 0;
+    }
+
+    private long pulses() {
+        // Every pulse plays a press and a release sound
+        return this.world.soundsPlayed() / 2;
+    }
+
+    // ============================================================
+    // Options
+    // ============================================================
+
+    /**
+     * Simulation options, parsed from {@code --name=value} arguments.
+     */
+    static final class Options {
+
+        int signs = 2000;
+        int players = 200;
+        int ticks = 1200;
+        double clickRate = 1;
+        double hotClickShare = 0.8;
+        int explosionInterval = 100;
+        long economyLatencyMicros = 200;
+        boolean realtime = true;
+        long seed = 1;
+        boolean verbose;
+        String json;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, got " + arg);
+                }
+                String name = arg.substring(2, separator);
+                String value = arg.substring(separator + 1);
+                switch (name) {
+                    case "signs": options.signs = Integer.parseInt(value); break;
+                    case "players": options.players = Integer.parseInt(value); break;
+                    case "ticks": options.ticks = Integer.parseInt(value); break;
+                    case "click-rate": options.clickRate = Double.parseDouble(value); break;
+                    case "hot-click-share": options.hotClickShare = Double.parseDouble(value); break;
+                    case "explosion-interval": options.explosionInterval = Integer.parseInt(value); break;
+                    case "economy-latency": options.economyLatencyMicros = Long.parseLong(value); break;
+                    case "realtime": options.realtime = Boolean.parseBoolean(value); break;
+                    case "seed": options.seed = Long.parseLong(value); break;
+                    case "verbose": options.verbose = Boolean.parseBoolean(value); break;
+                    case "json": options.json = value; break;
+                    default: throw new IllegalArgumentException("Unknown option --" + name);
+                }
+            }
+            if (options.signs < 1 || options.players < 1 || options.ticks < 1) {
+                throw new IllegalArgumentException("signs, players and ticks must be positive");
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package net.nightzy.paysign.simulation;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.type.Switch;
+
+import net.nightzy.paysign.benchmark.Stubs;
+
+/**
+ * Block data stand-ins. Buttons are {@link Switch}es with face, facing and powered state,
+ * all other materials are plain {@link BlockData}.
+ */
+public final class SimulatedBlockData {
+
+    private SimulatedBlockData() {
+    }
+
+    /**
+     * Creates the default block data of a material.
+     * @param material the material
+     * @return the block data
+     */
+    public static BlockData create(Material material) {
+        Objects.requireNonNull(material, "material cannot be null");
+        if (material.name().endsWith("_BUTTON")) {
+            return button(material, Switch.Face.WALL, BlockFace.NORTH, false);
+        }
+
+        Map<String, Stubs.Answer> answers = new HashMap<>();
+        answers.put("getMaterial", args -> material);
+        answers.put("getAsString", args -> "minecraft:" + material.name().toLowerCase(Locale.ROOT));
+        answers.put("clone", args -> create(material));
+        answers.put("matches", args -> args[0] instanceof BlockData && ((BlockData) args[0]).getMaterial() == material);
+        return Stubs.stub(BlockData.class, answers);
+    }
+
+    private static Switch button(Material material, Switch.Face initialFace, BlockFace initialFacing, boolean initialPowered) {
+        Switch.Face[] face = {initialFace};
+        BlockFace[] facing = {initialFacing};
+        boolean[] powered = {initialPowered};
+
+        Map<String, Stubs.Answer> answers = new HashMap<>();
+        answers.put("getMaterial", args -> material);
+        answers.put("getAsString", args -> "minecraft:" + material.name().toLowerCase(Locale.ROOT) +
+                "[face=" + face[0].name().toLowerCase(Locale.ROOT) +
+                ",facing=" + facing[0].name().toLowerCase(Locale.ROOT) + ",powered=" + powered[0] + "]");
+        answers.put("clone", args -> button(material, face[0], facing[0], powered[0]));
+        answers.put("getFace", args -> face[0]);
+        answers.put("setFace", args -> face[0] = (Switch.Face) args[0]);
+        answers.put("getFacing", args -> facing[0]);
+        answers.put("setFacing", args -> facing[0] = (BlockFace) args[0]);
+        answers.put("isPowered", args -> powered[0]);
+        answers.put("setPowered", args -> powered[0] = (Boolean) args[0]);
+        return Stubs.stub(Switch.class, answers);
+    }
+}
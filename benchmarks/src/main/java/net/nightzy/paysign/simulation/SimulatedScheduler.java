@@ -0,0 +1,200 @@
+package net.nightzy.paysign.simulation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import net.nightzy.paysign.benchmark.Stubs;
+
+/**
+ * Tick-driven scheduler standing in for the server scheduler.
+ * Synchronous tasks run on the thread calling {@link #tick()}, asynchronous tasks
+ * on a cached thread pool. Tasks may be scheduled from any thread.
+ */
+public class SimulatedScheduler {
+
+    private final AtomicInteger ids = new AtomicInteger();
+
+    // Tasks scheduled since the last tick, possibly by other threads
+    private final Queue<Task> incoming = new ConcurrentLinkedQueue<>();
+
+    // Scheduled tasks by due tick, tick thread only
+    private final PriorityQueue<Task> pending = new PriorityQueue<>(
+            (a, b) -> a.due != b.due ? Long.compare(a.due, b.due) : Integer.compare(a.id, b.id));
+
+    private final ThreadPoolExecutor asyncExecutor = (ThreadPoolExecutor) Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Simulated Async Task");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long currentTick;
+
+    // ============================================================
+    // Ticking
+    // ============================================================
+
+    /**
+     * Runs all synchronous tasks due in the next tick and starts due asynchronous tasks.
+     * @return number of tasks that ran
+     */
+    public int tick() {
+        long tick = ++this.currentTick;
+        Task task;
+        while ((task = this.incoming.poll()) != null) {
+            task.due += tick;
+            this.pending.add(task);
+        }
+
+        int ran = 0;
+        while ((task = this.pending.peek()) != null && task.due <= tick) {
+            this.pending.poll();
+            if (task.cancelled) {
+                continue;
+            }
+
+            if (task.async) {
+                this.asyncExecutor.execute(task.runnable);
+            } else {
+                task.runnable.run();
+            }
+            ran++;
+
+            if (task.period > 0 && !task.cancelled) {
+                task.due = tick + task.period;
+                this.pending.add(task);
+            }
+        }
+        return ran;
+    }
+
+    /**
+     * @return number of scheduled tasks that have not run yet, including repeating tasks
+     */
+    public int queueDepth() {
+        return this.incoming.size() + this.pending.size();
+    }
+
+    /**
+     * @return number of asynchronous tasks currently running
+     */
+    public int activeAsyncTasks() {
+        return this.asyncExecutor.getActiveCount();
+    }
+
+    /**
+     * @return number of ticks run so far
+     */
+    public long currentTick() {
+        return this.currentTick;
+    }
+
+    /**
+     * Stops the asynchronous task threads.
+     */
+    public void shutdown() throws InterruptedException {
+        this.asyncExecutor.shutdown();
+        this.asyncExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // ============================================================
+    // Scheduling
+    // ============================================================
+
+    private BukkitTask schedule(Plugin plugin, Runnable runnable, long delay, long period, boolean async) {
+        Objects.requireNonNull(plugin, "plugin cannot be null");
+        Objects.requireNonNull(runnable, "runnable cannot be null");
+        Task task = new Task(this.ids.incrementAndGet(), plugin, runnable, Math.max(0, delay), period, async);
+        this.incoming.add(task);
+        return task.handle();
+    }
+
+    /**
+     * Cancels all tasks of a plugin. Tick thread only.
+     */
+    private Object cancelTasks(Plugin plugin) {
+        Objects.requireNonNull(plugin, "plugin cannot be null");
+        for (Task task : this.incoming) {
+            if (task.plugin == plugin) {
+                task.cancelled = true;
+            }
+        }
+        for (Task task : this.pending) {
+            if (task.plugin == plugin) {
+                task.cancelled = true;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates the {@link BukkitScheduler} view of this scheduler.
+     * Supports the runTask family of methods with {@link Runnable}s and cancelTasks.
+     */
+    public BukkitScheduler asBukkitScheduler() {
+        Map<String, Stubs.Answer> answers = new HashMap<>();
+        answers.put("runTask", args -> this.schedule((Plugin) args[0], runnable(args[1]), 0, 0, false));
+        answers.put("runTaskLater", args -> this.schedule((Plugin) args[0], runnable(args[1]), (Long) args[2], 0, false));
+        answers.put("runTaskTimer", args ->
+                this.schedule((Plugin) args[0], runnable(args[1]), (Long) args[2], Math.max(1, (Long) args[3]), false));
+        answers.put("runTaskAsynchronously", args -> this.schedule((Plugin) args[0], runnable(args[1]), 0, 0, true));
+        answers.put("runTaskLaterAsynchronously", args ->
+                this.schedule((Plugin) args[0], runnable(args[1]), (Long) args[2], 0, true));
+        answers.put("runTaskTimerAsynchronously", args ->
+                this.schedule((Plugin) args[0], runnable(args[1]), (Long) args[2], Math.max(1, (Long) args[3]), true));
+        answers.put("cancelTasks", args -> this.cancelTasks((Plugin) args[0]));
+        return Stubs.stub(BukkitScheduler.class, answers);
+    }
+
+    private static Runnable runnable(Object task) {
+        if (task instanceof Runnable) {
+            return (Runnable) task;
+        }
+        throw new UnsupportedOperationException("Only Runnable tasks are supported, got " + task.getClass().getName());
+    }
+
+    // ============================================================
+    // Task
+    // ============================================================
+
+    private static final class Task {
+
+        private final int id;
+        private final Plugin plugin;
+        private final Runnable runnable;
+        private final long period;
+        private final boolean async;
+        private long due;
+        private volatile boolean cancelled;
+
+        private Task(int id, Plugin plugin, Runnable runnable, long delay, long period, boolean async) {
+            this.id = id;
+            this.plugin = plugin;
+            this.runnable = runnable;
+            this.due = delay;
+            this.period = period;
+            this.async = async;
+        }
+
+        private BukkitTask handle() {
+            Map<String, Stubs.Answer> answers = new HashMap<>();
+            answers.put("getTaskId", args -> this.id);
+            answers.put("getOwner", args -> this.plugin);
+            answers.put("isSync", args -> !this.async);
+            answers.put("isCancelled", args -> this.cancelled);
+            answers.put("cancel", args -> this.cancelled = true);
+            return Stubs.stub(BukkitTask.class, answers);
+        }
+    }
+}
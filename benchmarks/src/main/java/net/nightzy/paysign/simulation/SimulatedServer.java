@@ -0,0 +1,302 @@
+package net.nightzy.paysign.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Server;
+import org.bukkit.Tag;
+import org.bukkit.World;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.InvalidDescriptionException;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredServiceProvider;
+import org.bukkit.plugin.ServicePriority;
+import org.bukkit.plugin.ServicesManager;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import net.nightzy.paysign.PaySignPlugin;
+import net.nightzy.paysign.benchmark.Stubs;
+
+/**
+ * Headless server for the load simulator. Provides worlds, online players, the
+ * tick-driven scheduler, event dispatch, services and commands, and installs itself
+ * as the Bukkit server. Only one simulated server can exist per JVM.
+ */
+public class SimulatedServer {
+
+    static final Logger logger = Logger.getLogger(SimulatedServer.class.getName());
+
+    private final EventBus eventBus = new EventBus();
+    private final SimulatedScheduler scheduler = new SimulatedScheduler();
+    private final Map<String, SimulatedWorld> worlds = new LinkedHashMap<>();
+    private final Map<String, Player> players = new ConcurrentHashMap<>();
+    private final Map<String, PluginCommand> commands = new HashMap<>();
+    private final Map<Class<?>, RegisteredServiceProvider<?>> services = new ConcurrentHashMap<>();
+    private final AtomicLong messages = new AtomicLong();
+    private final Server server;
+
+    public SimulatedServer() {
+        Map<String, Stubs.Answer> answers = new HashMap<>();
+        answers.put("getName", args -> "SimulatedServer");
+        answers.put("getVersion", args -> "simulated");
+        answers.put("getBukkitVersion", args -> "1.15.2-R0.1-SNAPSHOT");
+        answers.put("getLogger", args -> logger);
+        answers.put("getPluginManager", args -> this.pluginManager());
+        answers.put("getScheduler", args -> this.scheduler.asBukkitScheduler());
+        answers.put("getServicesManager", args -> this.servicesManager());
+        answers.put("getWorlds", args -> this.worlds());
+        answers.put("getWorld", args -> {
+            for (SimulatedWorld world : this.worlds.values()) {
+                World bukkitWorld = world.asWorld();
+                if (bukkitWorld.getName().equals(args[0]) || bukkitWorld.getUID().equals(args[0])) {
+                    return bukkitWorld;
+                }
+            }
+            return null;
+        });
+        answers.put("getPlayer", args -> args[0] instanceof UUID
+                ? this.findPlayer((UUID) args[0])
+                : this.players.get(((String) args[0]).toLowerCase(Locale.ROOT)));
+        answers.put("getPlayerExact", args -> this.players.get(((String) args[0]).toLowerCase(Locale.ROOT)));
+        answers.put("getOnlinePlayers", args -> Collections.unmodifiableCollection(this.players.values()));
+        answers.put("getOfflinePlayer", args -> {
+            Player player = args[0] instanceof UUID
+                    ? this.findPlayer((UUID) args[0])
+                    : this.players.get(((String) args[0]).toLowerCase(Locale.ROOT));
+            return player != null ? player : Stubs.offlinePlayer(String.valueOf(args[0]));
+        });
+        answers.put("getPluginCommand", args -> this.commands.get(((String) args[0]).toLowerCase(Locale.ROOT)));
+        answers.put("getTag", args -> tag((NamespacedKey) args[1]));
+        answers.put("createBlockData", args -> {
+            if (args.length != 1 || !(args[0] instanceof Material)) {
+                throw new UnsupportedOperationException("Only createBlockData(Material) is supported");
+            }
+            return SimulatedBlockData.create((Material) args[0]);
+        });
+        this.server = Stubs.stub(Server.class, answers);
+
+        if (Bukkit.getServer() != null) {
+            throw new IllegalStateException("A server is already installed");
+        }
+        Bukkit.setServer(this.server);
+    }
+
+    // ============================================================
+    // Accessors
+    // ============================================================
+
+    public Server asServer() {
+        return this.server;
+    }
+
+    public EventBus getEventBus() {
+        return this.eventBus;
+    }
+
+    public SimulatedScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * @return number of chat messages sent to players
+     */
+    public long messagesSent() {
+        return this.messages.get();
+    }
+
+    // ============================================================
+    // Setup
+    // ============================================================
+
+    /**
+     * Creates a world.
+     * @param name name of the world
+     * @return the world
+     */
+    public SimulatedWorld createWorld(String name) {
+        SimulatedWorld world = new SimulatedWorld(name, this.eventBus);
+        this.worlds.put(name, world);
+        return world;
+    }
+
+    /**
+     * Adds an online player with every permission.
+     * @param name name of the player
+     * @param world world the player is in
+     * @return the player
+     */
+    public Player addPlayer(String name, SimulatedWorld world) {
+        Objects.requireNonNull(name, "name cannot be null");
+        Objects.requireNonNull(world, "world cannot be null");
+        UUID uuid = UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+        int entityId = this.players.size() + 1;
+
+        Map<String, Stubs.Answer> answers = new HashMap<>();
+        answers.put("getName", args -> name);
+        answers.put("getDisplayName", args -> name);
+        answers.put("getUniqueId", args -> uuid);
+        answers.put("getEntityId", args -> entityId);
+        answers.put("getServer", args -> this.server);
+        answers.put("getWorld", args -> world.asWorld());
+        answers.put("isOnline", args -> true);
+        answers.put("isSneaking", args -> false);
+        answers.put("getLocale", args -> "en_us");
+        answers.put("isOp", args -> true);
+        answers.put("hasPermission", args -> true);
+        answers.put("isPermissionSet", args -> true);
+        answers.put("sendMessage", args -> this.messages.incrementAndGet());
+        Player player = Stubs.stub(Player.class, answers);
+        this.players.put(name.toLowerCase(Locale.ROOT), player);
+        return player;
+    }
+
+    /**
+     * Registers a service provider, like an economy.
+     */
+    public <T> void registerService(Class<T> service, T provider, Plugin plugin) {
+        this.services.put(service, new RegisteredServiceProvider<>(service, provider, ServicePriority.Normal, plugin));
+    }
+
+    /**
+     * Creates the PaySign plugin with the given data folder, using the plugin.yml on the class path.
+     * The plugin is not enabled.
+     */
+    public PaySignPlugin loadPlugin(File dataFolder) throws IOException, InvalidDescriptionException {
+        PluginDescriptionFile description = findDescription();
+
+        @SuppressWarnings("deprecation")
+        JavaPluginLoader loader = new JavaPluginLoader(this.server);
+        PaySignPlugin plugin = new PaySignPlugin(loader, description, dataFolder, new File(dataFolder, "PaySign.jar"));
+
+        for (String name : description.getCommands().keySet()) {
+            this.commands.put(name.toLowerCase(Locale.ROOT), createCommand(name, plugin));
+        }
+        return plugin;
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    private List<World> worlds() {
+        List<World> worlds = new ArrayList<>();
+        this.worlds.values().forEach(world -> worlds.add(world.asWorld()));
+        return worlds;
+    }
+
+    private Player findPlayer(UUID uuid) {
+        for (Player player : this.players.values()) {
+            if (player.getUniqueId().equals(uuid)) {
+                return player;
+            }
+        }
+        return null;
+    }
+
+    private PluginManager pluginManager() {
+        Map<String, Stubs.Answer> answers = new HashMap<>();
+        answers.put("registerEvents", args -> {
+            this.eventBus.register((Listener) args[0]);
+            return null;
+        });
+        answers.put("callEvent", args -> {
+            this.eventBus.call((org.bukkit.event.Event) args[0]);
+            return null;
+        });
+        answers.put("getPlugin", args -> null);
+        answers.put("isPluginEnabled", args -> false);
+        return Stubs.stub(PluginManager.class, answers);
+    }
+
+    private ServicesManager servicesManager() {
+        Map<String, Stubs.Answer> answers = new HashMap<>();
+        answers.put("getRegistration", args -> this.services.get((Class<?>) args[0]));
+        return Stubs.stub(ServicesManager.class, answers);
+    }
+
+    private static PluginDescriptionFile findDescription() throws IOException, InvalidDescriptionException {
+        Enumeration<URL> resources = PaySignPlugin.class.getClassLoader().getResources("plugin.yml");
+        while (resources.hasMoreElements()) {
+            try (InputStream in = resources.nextElement().openStream()) {
+                PluginDescriptionFile description = new PluginDescriptionFile(in);
+                if (PaySignPlugin.class.getName().equals(description.getMain())) {
+                    return description;
+                }
+            }
+        }
+        throw new InvalidDescriptionException("No plugin.yml of PaySign on the class path");
+    }
+
+    private static PluginCommand createCommand(String name, Plugin plugin) {
+        try {
+            Constructor<PluginCommand> constructor = PluginCommand.class.getDeclaredConstructor(String.class, Plugin.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(name, plugin);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create command " + name, e);
+        }
+    }
+
+    /**
+     * Creates the material tags used by PaySign, all other tags are empty.
+     */
+    private static Tag<Material> tag(NamespacedKey key) {
+        Set<Material> materials = EnumSet.noneOf(Material.class);
+        for (Material material : Material.values()) {
+            if (material.isLegacy()) {
+                continue;
+            }
+            String name = material.name();
+            boolean sign = name.endsWith("_SIGN");
+            boolean wallSign = name.endsWith("_WALL_SIGN");
+            switch (key.getKey()) {
+                case "signs":
+                    if (sign) materials.add(material);
+                    break;
+                case "standing_signs":
+                    if (sign && !wallSign) materials.add(material);
+                    break;
+                case "wall_signs":
+                    if (wallSign) materials.add(material);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        Set<Material> values = Collections.unmodifiableSet(materials);
+        Map<String, Stubs.Answer> answers = new HashMap<>();
+        answers.put("getKey", args -> key);
+        answers.put("isTagged", args -> values.contains(args[0]));
+        answers.put("getValues", args -> values);
+        @SuppressWarnings("unchecked")
+        Tag<Material> tag = Stubs.stub(Tag.class, answers);
+        return tag;
+    }
+}
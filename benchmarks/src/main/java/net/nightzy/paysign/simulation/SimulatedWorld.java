@@ -0,0 +1,255 @@
+package net.nightzy.paysign.simulation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.Chunk;
+import org.bukkit.DyeColor;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Tag;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Sign;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.event.block.BlockPhysicsEvent;
+
+import net.nightzy.paysign.BlockKeys;
+import net.nightzy.paysign.benchmark.Stubs;
+
+/**
+ * In-memory world: a sparse map of blocks with their type, block data and sign lines.
+ * Block changes with physics fire a {@link BlockPhysicsEvent} for each neighbour,
+ * like the server does. Must be used from the tick thread.
+ */
+public class SimulatedWorld {
+
+    private static final BlockFace[] NEIGHBOURS = {
+            BlockFace.UP, BlockFace.DOWN, BlockFace.NORTH, BlockFace.SOUTH, BlockFace.EAST, BlockFace.WEST
+    };
+
+    private final String name;
+    private final UUID uid;
+    private final EventBus eventBus;
+    private final World world;
+    private final Map<Long, SimBlock> blocks = new HashMap<>();
+    private final AtomicLong sounds = new AtomicLong();
+    private final AtomicLong blockWrites = new AtomicLong();
+    private final AtomicLong neighbourUpdates = new AtomicLong();
+
+    public SimulatedWorld(String name, EventBus eventBus) {
+        this.name = Objects.requireNonNull(name, "name cannot be null");
+        this.uid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        this.eventBus = Objects.requireNonNull(eventBus, "eventBus cannot be null");
+
+        Map<String, Stubs.Answer> answers = new HashMap<>();
+        answers.put("getName", args -> this.name);
+        answers.put("getUID", args -> this.uid);
+        answers.put("getBlockAt", args -> {
+            if (args.length == 1) {
+                Location location = (Location) args[0];
+                return this.blockAt(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+            }
+            return this.blockAt((Integer) args[0], (Integer) args[1], (Integer) args[2]);
+        });
+        answers.put("getLoadedChunks", args -> new Chunk[0]);
+        answers.put("isChunkLoaded", args -> false);
+        answers.put("playSound", args -> this.sounds.incrementAndGet());
+        this.world = Stubs.stub(World.class, answers);
+    }
+
+    /**
+     * @return the Bukkit view of this world
+     */
+    public World asWorld() {
+        return this.world;
+    }
+
+    /**
+     * @return number of sounds played in this world
+     */
+    public long soundsPlayed() {
+        return this.sounds.get();
+    }
+
+    /**
+     * @return number of block changes made through the Bukkit API
+     */
+    public long blockWrites() {
+        return this.blockWrites.get();
+    }
+
+    /**
+     * @return number of neighbour updates, one per neighbour of a block change with physics
+     */
+    public long neighbourUpdates() {
+        return this.neighbourUpdates.get();
+    }
+
+    /**
+     * Notifies the neighbours of a block without changing it, like the server's neighbour update.
+     */
+    public void notifyNeighbours(Block block) {
+        this.blockAt(block.getX(), block.getY(), block.getZ());
+        this.applyPhysics(this.simBlock(block));
+    }
+
+    /**
+     * Gets the block at the given position, creating an air block on first access.
+     */
+    public Block blockAt(int x, int y, int z) {
+        return this.blocks.computeIfAbsent(BlockKeys.pack(x, y, z), key -> new SimBlock(x, y, z)).block;
+    }
+
+    /**
+     * Sets the type of a block without physics, resetting its block data and sign lines.
+     */
+    public void setType(Block block, Material type) {
+        SimBlock simBlock = this.simBlock(block);
+        simBlock.type = type;
+        simBlock.data = SimulatedBlockData.create(type);
+        simBlock.lines = new String[]{"", "", "", ""};
+    }
+
+    /**
+     * Writes the given lines to a sign block, as the server does after a sign change.
+     */
+    public void setLines(Block block, String[] lines) {
+        this.simBlock(block).lines = lines.clone();
+    }
+
+    private SimBlock simBlock(Block block) {
+        return this.blocks.get(BlockKeys.pack(block.getX(), block.getY(), block.getZ()));
+    }
+
+    private void applyPhysics(SimBlock source) {
+        for (BlockFace face : NEIGHBOURS) {
+            Block neighbour = this.blockAt(source.x + face.getModX(), source.y + face.getModY(), source.z + face.getModZ());
+            this.neighbourUpdates.incrementAndGet();
+            this.eventBus.call(new BlockPhysicsEvent(neighbour, source.data));
+        }
+    }
+
+    // ============================================================
+    // Block
+    // ============================================================
+
+    /**
+     * State of a single block and its Bukkit view.
+     */
+    private final class SimBlock {
+
+        private final int x;
+        private final int y;
+        private final int z;
+        private final Block block;
+        private Material type = Material.AIR;
+        private BlockData data = SimulatedBlockData.create(Material.AIR);
+        private String[] lines = {"", "", "", ""};
+        private Map<NamespacedKey, Object> persistentData = new HashMap<>();
+
+        private SimBlock(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+
+            Map<String, Stubs.Answer> answers = new HashMap<>();
+            answers.put("getWorld", args -> SimulatedWorld.this.world);
+            answers.put("getX", args -> this.x);
+            answers.put("getY", args -> this.y);
+            answers.put("getZ", args -> this.z);
+            answers.put("getLocation", args -> new Location(SimulatedWorld.this.world, this.x, this.y, this.z));
+            answers.put("getType", args -> this.type);
+            answers.put("isEmpty", args -> this.type == Material.AIR);
+            answers.put("getBlockData", args -> this.data.clone());
+            answers.put("setType", args -> {
+                this.set((Material) args[0], SimulatedBlockData.create((Material) args[0]),
+                        args.length < 2 || (Boolean) args[1]);
+                return null;
+            });
+            answers.put("setBlockData", args -> {
+                BlockData data = (BlockData) args[0];
+                this.set(data.getMaterial(), data.clone(), args.length < 2 || (Boolean) args[1]);
+                return null;
+            });
+            answers.put("getRelative", args -> {
+                if (args.length == 3) {
+                    return SimulatedWorld.this.blockAt(this.x + (Integer) args[0], this.y + (Integer) args[1],
+                            this.z + (Integer) args[2]);
+                }
+                BlockFace face = (BlockFace) args[0];
+                int distance = args.length == 2 ? (Integer) args[1] : 1;
+                return SimulatedWorld.this.blockAt(this.x + face.getModX() * distance,
+                        this.y + face.getModY() * distance, this.z + face.getModZ() * distance);
+            });
+            answers.put("breakNaturally", args -> {
+                this.set(Material.AIR, SimulatedBlockData.create(Material.AIR), true);
+                return true;
+            });
+            answers.put("getState", args -> this.state());
+            this.block = Stubs.stub(Block.class, answers);
+        }
+
+        private void set(Material type, BlockData data, boolean physics) {
+            SimulatedWorld.this.blockWrites.incrementAndGet();
+            if (this.type != type) {
+                this.lines = new String[]{"", "", "", ""};
+                this.persistentData = new HashMap<>();
+            }
+            this.type = type;
+            this.data = data;
+            if (physics) {
+                SimulatedWorld.this.applyPhysics(this);
+            }
+        }
+
+        /**
+         * Creates a snapshot of this block, a {@link Sign} if it is a sign.
+         */
+        private BlockState state() {
+            Material type = this.type;
+            BlockData data = this.data.clone();
+            String[] lines = this.lines.clone();
+            Map<NamespacedKey, Object> persistentData = new HashMap<>(this.persistentData);
+
+            Map<String, Stubs.Answer> answers = new HashMap<>();
+            answers.put("getBlock", args -> this.block);
+            answers.put("getWorld", args -> SimulatedWorld.this.world);
+            answers.put("getLocation", args -> new Location(SimulatedWorld.this.world, this.x, this.y, this.z));
+            answers.put("getX", args -> this.x);
+            answers.put("getY", args -> this.y);
+            answers.put("getZ", args -> this.z);
+            answers.put("getType", args -> type);
+            answers.put("getBlockData", args -> data.clone());
+            answers.put("isPlaced", args -> true);
+            answers.put("update", args -> {
+                boolean force = args.length > 0 && (Boolean) args[0];
+                boolean physics = args.length < 2 || (Boolean) args[1];
+                if (this.type != type && !force) {
+                    return false;
+                }
+                this.set(type, data.clone(), physics);
+                this.lines = lines.clone();
+                this.persistentData = new HashMap<>(persistentData);
+                return true;
+            });
+
+            if (!Tag.SIGNS.isTagged(type)) {
+                return Stubs.stub(BlockState.class, answers);
+            }
+            answers.put("getLines", args -> lines.clone());
+            answers.put("getLine", args -> lines[(Integer) args[0]]);
+            answers.put("setLine", args -> lines[(Integer) args[0]] = (String) args[1]);
+            answers.put("getColor", args -> DyeColor.BLACK);
+            answers.put("getPersistentDataContainer", args -> Stubs.persistentData(persistentData));
+            return Stubs.stub(Sign.class, answers);
+        }
+    }
+}
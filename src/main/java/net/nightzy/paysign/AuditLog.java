@@ -0,0 +1,393 @@
+package net.nightzy.paysign;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Audit log of PaySign creations, payments and bulk edits, written by a background thread.
+ * <p>
+ * Records are handed over through a bounded, lock-free ring buffer of preallocated
+ * slots, so recording does not lock, block or allocate. When the buffer is full the
+ * record is dropped and counted instead of stalling the caller. The writer thread drains
+ * the buffer in batches into gzip compressed, tab separated files which are rotated by
+ * size; the oldest files are deleted once more than the configured number exist.
+ */
+public class AuditLog implements Closeable {
+
+    // Logger for audit log problems
+    static final Logger logger = Logger.getLogger(AuditLog.class.getName());
+
+    /**
+     * Kind of an audit record.
+     */
+    public enum Action {
+        /** A PaySign has been created, the amount is its price */
+        CREATE,
+        /** A PaySign has been paid for and triggered */
+        PAYMENT,
+        /** A sign has been rewritten by a bulk operation, the amount is its new price, if still a PaySign */
+        EDIT
+    }
+
+    // How long the writer sleeps when the buffer is empty
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // How long to wait for the writer on close
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final String FILE_PREFIX = "audit-";
+    private static final String FILE_SUFFIX = ".tsv.gz";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss", Locale.ROOT)
+            .withZone(ZoneOffset.UTC);
+
+    private final Path directory;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    // Ring buffer: a slot may be written when its sequence equals the claimed position,
+    // and read when it equals the position + 1
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Current file, writer thread only
+    private CountingOutputStream out;
+    private Writer lines;
+
+    private AuditLog(Path directory, int capacity, long maxFileSize, int maxFiles) {
+        this.directory = directory;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new Slot();
+            this.sequences.set(i, i);
+        }
+        this.mask = size - 1;
+
+        if (directory != null) {
+            this.writer = new Thread(this::run, "PaySign Audit Log Writer");
+            this.writer.setDaemon(true);
+        } else {
+            this.writer = null;
+        }
+    }
+
+    // ============================================================
+    // Factories
+    // ============================================================
+
+    /**
+     * Starts an audit log writing to the given directory.
+     * @param directory directory of the audit files
+     * @param capacity number of records that may wait for the writer
+     * @param maxFileSize compressed size in bytes after which a new file is started
+     * @param maxFiles number of files to keep
+     * @return started audit log
+     * @throws IOException if the directory cannot be created
+     */
+    public static AuditLog open(Path directory, int capacity, long maxFileSize, int maxFiles) throws IOException {
+        Objects.requireNonNull(directory, "directory cannot be null");
+        Files.createDirectories(directory);
+
+        AuditLog auditLog = new AuditLog(directory, capacity, maxFileSize, maxFiles);
+        auditLog.writer.start();
+        return auditLog;
+    }
+
+    /**
+     * @return an audit log that records nothing
+     */
+    public static AuditLog disabled() {
+        return new AuditLog(null, 2, 0, 0);
+    }
+
+    // ============================================================
+    // Recording
+    // ============================================================
+
+    /**
+     * Records an action. Never blocks; drops the record if the writer is behind.
+     * @return false if the record was dropped
+     */
+    public boolean record(Action action, UUID player, String playerName, String owner, Money amount,
+                          String worldName, int x, int y, int z) {
+        if (this.writer == null) {
+            return true;
+        }
+
+        long position;
+        do {
+            position = this.tail.get();
+            if (this.sequences.get((int) position & this.mask) != position) {
+                // Not yet consumed by the writer, or claimed by another producer
+                if (this.sequences.get((int) position & this.mask) < position) {
+                    this.dropped.increment();
+                    return false;
+                }
+                continue;
+            }
+        } while (!this.tail.compareAndSet(position, position + 1));
+
+        int index = (int) position & this.mask;
+        Slot slot = this.slots[index];
+        slot.time = System.currentTimeMillis();
+        slot.action = action;
+        slot.player = player;
+        slot.playerName = playerName;
+        slot.owner = owner;
+        slot.amount = amount;
+        slot.worldName = worldName;
+        slot.x = x;
+        slot.y = y;
+        slot.z = z;
+        this.sequences.set(index, position + 1);
+        return true;
+    }
+
+    /**
+     * @return number of records dropped because the buffer was full
+     */
+    public long dropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * Writes the remaining records and stops the writer.
+     */
+    @Override
+    public void close() {
+        if (this.writer == null || !this.running) {
+            return;
+        }
+        this.running = false;
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.writer.isAlive()) {
+            logger.warning("Audit log writer did not finish in time, some records may be lost.");
+        }
+    }
+
+    // ============================================================
+    // Writer thread
+    // ============================================================
+
+    private void run() {
+        long reportedDrops = 0;
+        while (true) {
+            boolean running = this.running;
+            try {
+                if (this.drain() > 0) {
+                    this.lines.flush();
+                    if (this.out.count >= this.maxFileSize) {
+                        this.closeFile();
+                    }
+                } else if (!running) {
+                    break;
+                } else {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not write audit log, records are discarded.", e);
+                this.closeFile();
+                LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1));
+            }
+
+            long dropped = this.dropped.sum();
+            if (dropped != reportedDrops) {
+                logger.warning("Audit log buffer was full, " + (dropped - reportedDrops) + " records were dropped.");
+                reportedDrops = dropped;
+            }
+        }
+        this.closeFile();
+    }
+
+    /**
+     * Writes all published records.
+     * @return number of records written
+     */
+    private int drain() throws IOException {
+        int written = 0;
+        while (true) {
+            int index = (int) this.head & this.mask;
+            if (this.sequences.get(index) != this.head + 1) {
+                return written;
+            }
+            if (this.lines == null) {
+                this.openFile();
+            }
+
+            Slot slot = this.slots[index];
+            this.write(slot);
+            slot.clear();
+            this.sequences.set(index, this.head + this.slots.length);
+            this.head++;
+            written++;
+        }
+    }
+
+    private void write(Slot slot) throws IOException {
+        Writer lines = this.lines;
+        lines.write(Instant.ofEpochMilli(slot.time).toString());
+        lines.write('\t');
+        lines.write(slot.action.name());
+        lines.write('\t');
+        lines.write(String.valueOf(slot.player));
+        lines.write('\t');
+        lines.write(String.valueOf(slot.playerName));
+        lines.write('\t');
+        lines.write(String.valueOf(slot.owner));
+        lines.write('\t');
+        lines.write(String.valueOf(slot.amount));
+        lines.write('\t');
+        lines.write(String.valueOf(slot.worldName));
+        lines.write('\t');
+        lines.write(Integer.toString(slot.x));
+        lines.write('\t');
+        lines.write(Integer.toString(slot.y));
+        lines.write('\t');
+        lines.write(Integer.toString(slot.z));
+        lines.write('\n');
+    }
+
+    private void openFile() throws IOException {
+        Path file = this.directory.resolve(FILE_PREFIX + FILE_TIME.format(Instant.now()) + FILE_SUFFIX);
+        for (int i = 1; Files.exists(file); i++) {
+            file = this.directory.resolve(FILE_PREFIX + FILE_TIME.format(Instant.now()) + "-" + i + FILE_SUFFIX);
+        }
+        this.out = new CountingOutputStream(Files.newOutputStream(file));
+        this.lines = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(this.out, true),
+                StandardCharsets.UTF_8));
+        this.lines.write("time\taction\tplayer\tplayer_name\towner\tamount\tworld\tx\ty\tz\n");
+        this.deleteOldFiles();
+    }
+
+    private void closeFile() {
+        if (this.lines == null) {
+            return;
+        }
+        try {
+            this.lines.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not close audit log file.", e);
+        }
+        this.lines = null;
+        this.out = null;
+    }
+
+    /**
+     * Deletes the oldest files so that at most the configured number of files exist.
+     */
+    private void deleteOldFiles() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not list audit log files.", e);
+            return;
+        }
+
+        // File names sort by creation time
+        Collections.sort(files);
+        for (int i = 0; i < files.size() - this.maxFiles; i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not delete audit log file " + files.get(i), e);
+            }
+        }
+    }
+
+    // ============================================================
+    // Slot & output stream
+    // ============================================================
+
+    /**
+     * A preallocated record of the ring buffer.
+     */
+    private static final class Slot {
+
+        private long time;
+        private Action action;
+        private UUID player;
+        private String playerName;
+        private String owner;
+        private Money amount;
+        private String worldName;
+        private int x;
+        private int y;
+        private int z;
+
+        private void clear() {
+            this.action = null;
+            this.player = null;
+            this.playerName = null;
+            this.owner = null;
+            this.amount = null;
+            this.worldName = null;
+        }
+    }
+
+    /**
+     * Counts the compressed bytes written to the current file.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package net.nightzy.paysign;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.Sign;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.type.Switch;
+
+/**
+ * Pulse engine that forces neighbour updates of the base block by replacing it with
+ * another block type and restoring it with physics. Works on every server, but costs
+ * three block writes and their client packets per power change.
+ */
+public class BarrierSwapPulseEngine implements PulseEngine {
+
+    @Override
+    public void powerOn(Sign sign, Block baseBlock, Switch button) {
+        sign.getBlock().setBlockData(button);
+        updateNeighbors(baseBlock);
+    }
+
+    @Override
+    public void powerOff(Sign sign, Block baseBlock) {
+        sign.update(true, true);
+        updateNeighbors(baseBlock);
+    }
+
+    /**
+     * Forces Minecraft to re-check block neighbors by temporarily replacing
+     * the base block with another block type and restoring it.
+     */
+    private static void updateNeighbors(Block baseBlock) {
+        BlockData realBlockData = baseBlock.getBlockData();
+
+        // Choose a dummy material to trigger physics
+        Material dummy = realBlockData.getMaterial().equals(Material.BARRIER)
+                ? Material.STONE : Material.BARRIER;
+
+        // Set dummy block (no physics), then restore real block (with physics)
+        baseBlock.setBlockData(dummy.createBlockData(), false);
+        baseBlock.setBlockData(realBlockData, true);
+    }
+}
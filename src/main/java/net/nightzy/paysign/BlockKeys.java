@@ -0,0 +1,100 @@
+package net.nightzy.paysign;
+
+import java.util.Objects;
+
+import org.bukkit.block.Block;
+
+/**
+ * Packs block and chunk coordinates into primitive long keys.
+ * Layout of a block key: 26 bits X | 26 bits Z | 12 bits Y.
+ */
+public final class BlockKeys {
+
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+
+    // Chunks per side of a region as a shift, 16 x 16 chunks like the default region size of Folia
+    private static final int REGION_SHIFT = 4;
+
+    private BlockKeys() {
+    }
+
+    /**
+     * Packs block coordinates into a single long.
+     */
+    public static long pack(int x, int y, int z) {
+        return ((x & XZ_MASK) << (XZ_BITS + Y_BITS))
+                | ((z & XZ_MASK) << Y_BITS)
+                | (y & Y_MASK);
+    }
+
+    /**
+     * Packs the coordinates of the given block into a single long.
+     */
+    public static long pack(Block block) {
+        Objects.requireNonNull(block, "block cannot be null");
+        return pack(block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Unpacks the X coordinate of a block key.
+     */
+    public static int x(long key) {
+        return (int) (key >> (XZ_BITS + Y_BITS));
+    }
+
+    /**
+     * Unpacks the Y coordinate of a block key.
+     */
+    public static int y(long key) {
+        return (int) (key << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    /**
+     * Unpacks the Z coordinate of a block key.
+     */
+    public static int z(long key) {
+        return (int) (key << XZ_BITS >> (64 - XZ_BITS));
+    }
+
+    /**
+     * Packs chunk coordinates into a single long.
+     */
+    public static long chunk(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the key of the chunk that contains the given block key.
+     */
+    public static long chunkOf(long key) {
+        return chunk(x(key) >> 4, z(key) >> 4);
+    }
+
+    /**
+     * Unpacks the X coordinate of a chunk key.
+     */
+    public static int chunkX(long chunkKey) {
+        return (int) (chunkKey >> 32);
+    }
+
+    /**
+     * Unpacks the Z coordinate of a chunk key.
+     */
+    public static int chunkZ(long chunkKey) {
+        return (int) chunkKey;
+    }
+
+    /**
+     * Maps the region containing the given chunk to a shard, so that state of blocks
+     * ticked by the same region thread ends up in the same shard.
+     * @param shards number of shards, a power of two
+     */
+    public static int regionShard(int chunkX, int chunkZ, int shards) {
+        int hash = (chunkX >> REGION_SHIFT) * 0x9E3779B9 ^ (chunkZ >> REGION_SHIFT) * 0x85EBCA6B;
+        return (hash ^ (hash >>> 16)) & (shards - 1);
+    }
+}
@@ -0,0 +1,62 @@
+package net.nightzy.paysign;
+
+import java.util.Objects;
+
+import org.bukkit.block.Block;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+
+/**
+ * Task scheduler of classic servers, running all synchronous tasks on the server thread.
+ */
+public class BukkitTaskScheduler implements TaskScheduler {
+
+    private final Plugin plugin;
+
+    public BukkitTaskScheduler(Plugin plugin) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin cannot be null");
+    }
+
+    @Override
+    public boolean isRegionThreaded() {
+        return false;
+    }
+
+    @Override
+    public void runGlobal(Runnable task) {
+        this.scheduler().runTask(this.plugin, task);
+    }
+
+    @Override
+    public void runGlobalTimer(Runnable task, long delay, long period) {
+        this.scheduler().runTaskTimer(this.plugin, task, delay, period);
+    }
+
+    @Override
+    public void runAt(Block block, Runnable task, long delay) {
+        if (delay < 1) {
+            this.scheduler().runTask(this.plugin, task);
+        } else {
+            this.scheduler().runTaskLater(this.plugin, task, delay);
+        }
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        this.scheduler().runTaskAsynchronously(this.plugin, task);
+    }
+
+    @Override
+    public void runAsyncTimer(Runnable task, long delay, long period) {
+        this.scheduler().runTaskTimerAsynchronously(this.plugin, task, delay, period);
+    }
+
+    @Override
+    public void cancelAll() {
+        this.scheduler().cancelTasks(this.plugin);
+    }
+
+    private BukkitScheduler scheduler() {
+        return this.plugin.getServer().getScheduler();
+    }
+}
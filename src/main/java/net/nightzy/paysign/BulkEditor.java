@@ -0,0 +1,861 @@
+package net.nightzy.paysign;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Sign;
+import org.bukkit.command.CommandSender;
+
+import net.nightzy.paysign.MessageRenderer.Message;
+
+/**
+ * Executor of the {@code /paysign bulk} operations, which rewrite many PaySigns at once:
+ * repricing, transferring to another owner and disabling, filtered by world, region, owner
+ * and price range.
+ * <p>
+ * The matching signs are collected from the {@link SignRegistry} on its background thread and
+ * rewritten a few per tick, within a time budget, through the same validation as signs created
+ * by the sender. Signs in chunks that are not loaded come last, their chunk is loaded when they
+ * are reached, at most one chunk per tick. Every
+ * sign is checked against the filter again when it is rewritten. New prices are validated
+ * against the money scale and the decimal settings before anything is rewritten.
+ * The previous lines of every rewritten sign are written to an undo log first, and
+ * {@code /paysign bulk undo} reverts the latest operation that has not been undone, sign by
+ * sign, unless the sign has changed since. One operation runs at a time.
+ * <p>
+ * On region threaded servers every sign is rewritten by a task on the thread owning it.
+ * Safe to use from any thread.
+ */
+public class BulkEditor {
+
+    // Logger for bulk operation messages
+    static final Logger logger = Logger.getLogger(BulkEditor.class.getName());
+
+    /** First line of a disabled PaySign, which is no longer recognized as one */
+    static final String DISABLED_LINE = ChatColor.GRAY + "[Disabled]";
+
+    /**
+     * Validates and writes the new lines of a sign. Called on the thread owning the sign.
+     */
+    @FunctionalInterface
+    public interface SignRewriter {
+
+        /**
+         * Rewrites a sign.
+         * @param sender sender of the operation, whose permissions apply
+         * @param sign current snapshot of the sign
+         * @param lines the new lines
+         * @return true if the lines were written
+         */
+        boolean rewrite(CommandSender sender, Sign sign, String[] lines);
+    }
+
+    // Undo log file layout
+    private static final int MAGIC = 0x50534255; // "PSBU"
+    private static final int VERSION = 1;
+    private static final String FILE_EXTENSION = ".undo";
+    private static final int LINE_COUNT = 4;
+
+    // Interval between progress reports to the sender
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    // Signs dispatched per tick to their region threads on region threaded servers
+    private static final int REGION_BATCH = 32;
+
+    /**
+     * Kind of a bulk operation.
+     */
+    private enum Kind {
+        REPRICE,
+        TRANSFER,
+        DISABLE,
+        UNDO
+    }
+
+    private final Path directory;
+    private final Server server;
+    private final TaskScheduler scheduler;
+    private final SignRegistry registry;
+    private final SignDataParser parser;
+    private final SignRewriter rewriter;
+    private final MessageRenderer messageRenderer;
+    private final Supplier<Configuration> configuration;
+
+    // The running operation, null if none
+    private Operation running;
+
+    // Operation whose signs are being collected from the registry, null if none
+    private PendingOperation collecting;
+
+    /**
+     * Creates a bulk editor.
+     * @param directory directory of the undo logs
+     * @param server the running server
+     * @param scheduler scheduler running the rewrites on region threaded servers
+     * @param registry registry the matching signs are taken from
+     * @param parser parser recognizing PaySigns
+     * @param rewriter validates and writes the new lines
+     * @param messageRenderer renders the progress reports
+     * @param configuration current configuration, new prices are validated against
+     */
+    public BulkEditor(Path directory, Server server, TaskScheduler scheduler, SignRegistry registry,
+                      SignDataParser parser, SignRewriter rewriter, MessageRenderer messageRenderer,
+                      Supplier<Configuration> configuration) {
+        this.directory = Objects.requireNonNull(directory, "directory cannot be null");
+        this.server = Objects.requireNonNull(server, "server cannot be null");
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler cannot be null");
+        this.registry = Objects.requireNonNull(registry, "registry cannot be null");
+        this.parser = Objects.requireNonNull(parser, "parser cannot be null");
+        this.rewriter = Objects.requireNonNull(rewriter, "rewriter cannot be null");
+        this.messageRenderer = Objects.requireNonNull(messageRenderer, "messageRenderer cannot be null");
+        this.configuration = Objects.requireNonNull(configuration, "configuration cannot be null");
+    }
+
+    // ============================================================
+    // Command handling
+    // ============================================================
+
+    /**
+     * Executes {@code /paysign bulk}.
+     * @param sender sender of the command
+     * @param args arguments following {@code bulk}
+     */
+    public synchronized void execute(CommandSender sender, String[] args) {
+        Objects.requireNonNull(sender, "sender cannot be null");
+        Objects.requireNonNull(args, "args cannot be null");
+        String action = args.length > 0 ? args[0].toLowerCase(Locale.ROOT) : "";
+
+        switch (action) {
+            case "status":
+                if (this.running != null) {
+                    this.progress(sender, this.running);
+                } else if (this.collecting != null) {
+                    this.send(sender, Message.BULK_COLLECTING, this.describe(sender, this.collecting.kind,
+                            this.collecting.argument));
+                } else {
+                    this.send(sender, Message.BULK_NOT_RUNNING);
+                }
+                return;
+            case "cancel":
+                if (this.running != null) {
+                    this.finish(Message.BULK_CANCELLED);
+                } else if (this.collecting != null) {
+                    PendingOperation collection = this.collecting;
+                    this.collecting = null;
+                    this.send(sender, Message.BULK_COLLECTING_CANCELLED, this.describe(sender, collection.kind,
+                            collection.argument));
+                } else {
+                    this.send(sender, Message.BULK_NOT_RUNNING);
+                }
+                return;
+            default:
+                break;
+        }
+
+        if (this.running != null || this.collecting != null) {
+            this.send(sender, Message.BULK_ALREADY_RUNNING);
+            return;
+        }
+
+        try {
+            switch (action) {
+                case "reprice":
+                    String price = argument(args);
+                    Filter filter = Filter.parse(args, 2);
+                    this.checkPrice(sender, price, filter);
+                    this.collect(sender, Kind.REPRICE, price, filter);
+                    break;
+                case "transfer":
+                    this.collect(sender, Kind.TRANSFER, argument(args), Filter.parse(args, 2));
+                    break;
+                case "disable":
+                    this.collect(sender, Kind.DISABLE, null, Filter.parse(args, 1));
+                    break;
+                case "undo":
+                    Operation operation = this.undo(sender);
+                    if (operation != null) {
+                        this.begin(operation);
+                    }
+                    break;
+                default:
+                    this.send(sender, Message.BULK_USAGE);
+                    break;
+            }
+        } catch (CommandException e) {
+            this.send(sender, e.message, e.values);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not start bulk operation.", e);
+            this.send(sender, Message.BULK_FAILED, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Rewrites signs of the running operation within the given budget. Runs once per tick,
+     * on the global region thread of region threaded servers.
+     * @param maxNanos maximum time to spend, at least one sign is rewritten
+     */
+    public synchronized void tick(long maxNanos) {
+        Operation operation = this.running;
+        if (operation == null) {
+            return;
+        }
+
+        // At most one chunk is loaded per tick, however small its cost
+        long start = System.nanoTime();
+        boolean chunkLoad = false;
+        if (this.scheduler.isRegionThreaded()) {
+            if (operation.inFlight == 0) {
+                for (int i = 0; i < REGION_BATCH && operation.position < operation.targets.size(); i++) {
+                    Target target = operation.targets.get(operation.position);
+                    World world = this.server.getWorld(target.world);
+                    if (world != null && !world.isChunkLoaded(target.x >> 4, target.z >> 4)) {
+                        if (chunkLoad) {
+                            break;
+                        }
+                        chunkLoad = true;
+                    }
+                    operation.position++;
+                    if (world == null) {
+                        operation.skipped++;
+                        continue;
+                    }
+                    operation.inFlight++;
+                    this.scheduler.runAt(world.getBlockAt(target.x, target.y, target.z), () -> {
+                        Result result = this.apply(operation, world, target);
+                        synchronized (this) {
+                            operation.inFlight--;
+                            operation.count(result);
+                        }
+                    }, 0);
+                }
+            }
+        } else {
+            while (operation.position < operation.targets.size()) {
+                Target target = operation.targets.get(operation.position);
+                World world = this.server.getWorld(target.world);
+                if (world != null && !world.isChunkLoaded(target.x >> 4, target.z >> 4)) {
+                    if (chunkLoad) {
+                        break;
+                    }
+                    chunkLoad = true;
+                }
+                operation.position++;
+                operation.count(world != null ? this.apply(operation, world, target) : Result.SKIPPED);
+                if (System.nanoTime() - start >= maxNanos) {
+                    break;
+                }
+            }
+        }
+
+        operation.flushUndo();
+        if (operation.position >= operation.targets.size() && operation.inFlight == 0) {
+            this.finish(Message.BULK_FINISHED);
+        } else if (start - operation.reportedAt >= PROGRESS_INTERVAL_NANOS) {
+            operation.reportedAt = start;
+            this.progress(operation.sender, operation);
+        }
+    }
+
+    /**
+     * Stops the running operation, e.g. when the plugin is disabled. Its undo log is kept.
+     */
+    public synchronized void close() {
+        this.collecting = null;
+        if (this.running != null) {
+            this.finish(Message.BULK_STOPPED);
+        }
+    }
+
+    // ============================================================
+    // Operations
+    // ============================================================
+
+    /**
+     * Checks that a new price is valid on every sign the filter may match, with the settings of the sender.
+     * @throws CommandException if it is not
+     */
+    private void checkPrice(CommandSender sender, String price, Filter filter) throws CommandException {
+        Configuration configuration = this.configuration.get();
+        Money amount;
+        try {
+            amount = Money.parse(price, configuration.moneyScale());
+        } catch (NumberFormatException e) {
+            amount = null;
+        }
+        if (amount == null || amount.signum() < 0) {
+            throw new CommandException(Message.BULK_INVALID_PRICE, price, Integer.toString(configuration.moneyScale()));
+        }
+
+        if (!amount.isWhole()) {
+            for (World world : this.server.getWorlds()) {
+                if (filter.matchesWorld(world) && !configuration.settings(sender, world.getName()).allowDecimals()) {
+                    throw new CommandException(Message.DISABLED_DECIMALS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the matching signs of the registry on its background thread, the operation starts once they
+     * are all collected.
+     */
+    private void collect(CommandSender sender, Kind kind, String argument, Filter filter) throws CommandException {
+        if (filter.worldName != null && this.server.getWorld(filter.worldName) == null) {
+            throw new CommandException(Message.BULK_UNKNOWN_WORLD, filter.worldName);
+        }
+
+        List<World> worlds = new ArrayList<>();
+        for (World world : this.server.getWorlds()) {
+            if (filter.matchesWorld(world)) {
+                worlds.add(world);
+            }
+        }
+
+        PendingOperation collection = new PendingOperation(sender, kind, argument, filter, worlds.size());
+        this.collecting = collection;
+        this.send(sender, Message.BULK_COLLECTING, this.describe(sender, kind, argument));
+        if (worlds.isEmpty()) {
+            this.collected(collection);
+            return;
+        }
+
+        for (World world : worlds) {
+            UUID worldId = world.getUID();
+            this.registry.forEachAsync(world,
+                    entry -> collection.add(collection.loaded, worldId, entry),
+                    entry -> collection.add(collection.unloaded, worldId, entry),
+                    () -> {
+                        if (--collection.remainingWorlds == 0) {
+                            this.scheduler.runGlobal(() -> this.collected(collection));
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Starts an operation once its signs are collected, unless it has been cancelled meanwhile.
+     * Signs of loaded chunks come first, then the ones read from the registry files.
+     */
+    private synchronized void collected(PendingOperation collection) {
+        if (this.collecting != collection) {
+            return;
+        }
+        this.collecting = null;
+
+        List<Target> targets = new ArrayList<>(collection.loaded.size() + collection.unloaded.size());
+        targets.addAll(collection.loaded);
+        targets.addAll(collection.unloaded);
+        try {
+            Files.createDirectories(this.directory);
+            Path undoLog = this.directory.resolve(System.currentTimeMillis() + FILE_EXTENSION);
+            Operation operation = new Operation(collection.sender, collection.kind, collection.argument,
+                    collection.filter, targets, undoLog);
+            operation.unloaded = collection.unloaded.size();
+            this.begin(operation);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not start bulk operation.", e);
+            this.send(collection.sender, Message.BULK_FAILED, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void begin(Operation operation) {
+        this.running = operation;
+        this.send(operation.sender, Message.BULK_STARTED, this.describe(operation.sender, operation),
+                Integer.toString(operation.targets.size()), Integer.toString(operation.unloaded));
+    }
+
+    /**
+     * Reads the latest undo log into an operation reverting it.
+     * @return the operation, or null if there is nothing to undo
+     */
+    private Operation undo(CommandSender sender) throws IOException {
+        Path latest = null;
+        if (Files.isDirectory(this.directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*" + FILE_EXTENSION)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (latest == null || name.compareTo(latest.getFileName().toString()) > 0) {
+                        latest = file;
+                    }
+                }
+            }
+        }
+        if (latest == null) {
+            this.send(sender, Message.BULK_NOTHING_TO_UNDO);
+            return null;
+        }
+
+        List<Target> targets = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(latest)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Invalid undo log " + latest);
+            }
+            while (true) {
+                long msb;
+                try {
+                    msb = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                UUID world = new UUID(msb, in.readLong());
+                int x = in.readInt();
+                int y = in.readInt();
+                int z = in.readInt();
+                String[] previous = readLines(in);
+                String[] written = readLines(in);
+                targets.add(new Target(world, x, y, z, written, previous));
+            }
+        } catch (EOFException e) {
+            logger.warning("Undo log " + latest + " ends with a torn record, it is ignored.");
+        }
+
+        // Undo the latest rewrite of a sign first
+        List<Target> reversed = new ArrayList<>(targets.size());
+        for (int i = targets.size() - 1; i >= 0; i--) {
+            reversed.add(targets.get(i));
+        }
+        return new Operation(sender, Kind.UNDO, latest.getFileName().toString(), Filter.ALL, reversed, latest);
+    }
+
+    /**
+     * Rewrites one sign. Must be called from the thread owning it.
+     */
+    private Result apply(Operation operation, World world, Target target) {
+        try {
+            // Chunks that are not loaded are loaded when their first sign is reached
+            int chunkX = target.x >> 4;
+            int chunkZ = target.z >> 4;
+            if (!world.isChunkLoaded(chunkX, chunkZ) && !world.loadChunk(chunkX, chunkZ, false)) {
+                return Result.SKIPPED;
+            }
+            Block block = world.getBlockAt(target.x, target.y, target.z);
+            BlockState state = block.getState();
+            if (!(state instanceof Sign)) {
+                return Result.SKIPPED; // removed, or replaced by an active trigger
+            }
+
+            Sign sign = (Sign) state;
+            String[] current = sign.getLines();
+            String[] lines;
+            if (operation.kind == Kind.UNDO) {
+                if (!Arrays.equals(current, target.expected)) {
+                    return Result.SKIPPED; // changed since the operation
+                }
+                lines = target.replacement;
+            } else {
+                Optional<PaySign> paySign = this.parser.parse(sign);
+                if (!paySign.isPresent() || !operation.filter.matches(paySign.get())) {
+                    return Result.SKIPPED;
+                }
+                lines = operation.rewrite(current);
+                if (Arrays.equals(current, lines)) {
+                    return Result.SKIPPED;
+                }
+                operation.recordUndo(target, current, lines);
+            }
+            return this.rewriter.rewrite(operation.sender, sign, lines) ? Result.CHANGED : Result.FAILED;
+        } catch (SignDataParser.ParseException e) {
+            return Result.SKIPPED;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not rewrite sign at " + world.getName() + " " + target.x + ", " +
+                                      target.y + ", " + target.z, e);
+            return Result.FAILED;
+        }
+    }
+
+    /**
+     * Ends the running operation and reports its outcome. An undo log is deleted once it has been
+     * undone, or if nothing was changed.
+     */
+    private void finish(Message outcome) {
+        Operation operation = this.running;
+        this.running = null;
+        operation.closeUndo();
+
+        boolean undone = operation.kind == Kind.UNDO && outcome == Message.BULK_FINISHED;
+        if (undone || (operation.kind != Kind.UNDO && operation.changed == 0 && operation.inFlight == 0)) {
+            try {
+                Files.deleteIfExists(operation.undoLog);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not delete undo log " + operation.undoLog, e);
+            }
+        }
+
+        String seconds = Long.toString(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - operation.startedAt));
+        CommandSender console = this.server.getConsoleSender();
+        logger.info(operation.sender.getName() + ": " + ChatColor.stripColor(this.summary(console, operation,
+                outcome, seconds)));
+        operation.sender.sendMessage(this.summary(operation.sender, operation, outcome, seconds));
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    private String summary(CommandSender recipient, Operation operation, Message outcome, String seconds) {
+        return this.messageRenderer.render(recipient, outcome, this.describe(recipient, operation),
+                Integer.toString(operation.changed), Integer.toString(operation.skipped),
+                Integer.toString(operation.failed), seconds);
+    }
+
+    private void progress(CommandSender recipient, Operation operation) {
+        this.send(recipient, Message.BULK_PROGRESS, this.describe(recipient, operation),
+                Integer.toString(operation.position), Integer.toString(operation.targets.size()),
+                Integer.toString(operation.changed), Integer.toString(operation.skipped),
+                Integer.toString(operation.failed));
+    }
+
+    private String describe(CommandSender recipient, Operation operation) {
+        return this.describe(recipient, operation.kind, operation.argument);
+    }
+
+    /**
+     * Renders what an operation does in the locale of the recipient, e.g. "reprice to 5".
+     */
+    private String describe(CommandSender recipient, Kind kind, String argument) {
+        switch (kind) {
+            case REPRICE:
+                return this.messageRenderer.render(recipient, Message.BULK_REPRICE, argument);
+            case TRANSFER:
+                return this.messageRenderer.render(recipient, Message.BULK_TRANSFER, argument);
+            case DISABLE:
+                return this.messageRenderer.render(recipient, Message.BULK_DISABLE);
+            default:
+                return this.messageRenderer.render(recipient, Message.BULK_UNDO, argument);
+        }
+    }
+
+    private void send(CommandSender recipient, Message message, String... values) {
+        recipient.sendMessage(this.messageRenderer.render(recipient, message, values));
+    }
+
+    private static String argument(String[] args) throws CommandException {
+        if (args.length < 2 || args[1].contains(":")) {
+            throw new CommandException(Message.BULK_USAGE);
+        }
+        return args[1];
+    }
+
+    private static String[] readLines(DataInputStream in) throws IOException {
+        String[] lines = new String[LINE_COUNT];
+        for (int line = 0; line < LINE_COUNT; line++) {
+            lines[line] = in.readUTF();
+        }
+        return lines;
+    }
+
+    // ============================================================
+    // Filter
+    // ============================================================
+
+    /**
+     * Signs an operation applies to.
+     */
+    private static final class Filter {
+
+        private static final Filter ALL = new Filter(null, null, null, null, null);
+
+        private final String worldName;
+        private final int[] region; // min x, min z, max x, max z
+        private final String owner;
+        private final Money minPrice;
+        private final Money maxPrice;
+
+        private Filter(String worldName, int[] region, String owner, Money minPrice, Money maxPrice) {
+            this.worldName = worldName;
+            this.region = region;
+            this.owner = owner;
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+        }
+
+        /**
+         * Parses {@code key:value} filter arguments.
+         * @throws CommandException if an argument is invalid
+         */
+        private static Filter parse(String[] args, int from) throws CommandException {
+            String worldName = null;
+            int[] region = null;
+            String owner = null;
+            Money minPrice = null;
+            Money maxPrice = null;
+
+            for (int i = from; i < args.length; i++) {
+                int separator = args[i].indexOf(':');
+                String key = separator > 0 ? args[i].substring(0, separator).toLowerCase(Locale.ROOT) : "";
+                String value = args[i].substring(separator + 1);
+                try {
+                    switch (key) {
+                        case "world":
+                            worldName = value;
+                            break;
+                        case "region":
+                            String[] corners = value.split(",");
+                            if (corners.length != 4) {
+                                throw new CommandException(Message.BULK_INVALID_FILTER, args[i]);
+                            }
+                            int x1 = Integer.parseInt(corners[0].trim());
+                            int z1 = Integer.parseInt(corners[1].trim());
+                            int x2 = Integer.parseInt(corners[2].trim());
+                            int z2 = Integer.parseInt(corners[3].trim());
+                            region = new int[]{Math.min(x1, x2), Math.min(z1, z2), Math.max(x1, x2), Math.max(z1, z2)};
+                            break;
+                        case "owner":
+                            owner = value;
+                            break;
+                        case "price":
+                            int dash = value.indexOf('-', 1);
+                            minPrice = Money.parse(dash < 0 ? value : value.substring(0, dash), Money.MAX_SCALE);
+                            maxPrice = Money.parse(dash < 0 ? value : value.substring(dash + 1), Money.MAX_SCALE);
+                            break;
+                        default:
+                            throw new CommandException(Message.BULK_INVALID_FILTER, args[i]);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new CommandException(Message.BULK_INVALID_FILTER, args[i]);
+                }
+            }
+            return new Filter(worldName, region, owner, minPrice, maxPrice);
+        }
+
+        private boolean matchesWorld(World world) {
+            return this.worldName == null || this.worldName.equals(world.getName());
+        }
+
+        private boolean contains(int x, int z) {
+            return this.region == null
+                   || (x >= this.region[0] && z >= this.region[1] && x <= this.region[2] && z <= this.region[3]);
+        }
+
+        private boolean matchesOwner(String ownerName) {
+            return this.owner == null || this.owner.equalsIgnoreCase(ownerName);
+        }
+
+        private boolean matches(PaySign paySign) {
+            return this.matchesOwner(paySign.getPlayerName())
+                   && (this.minPrice == null || this.minPrice.compareTo(paySign.getPrice()) <= 0)
+                   && (this.maxPrice == null || this.maxPrice.compareTo(paySign.getPrice()) >= 0);
+        }
+    }
+
+    /**
+     * A command that cannot be executed, with the message explaining why.
+     */
+    private static final class CommandException extends Exception {
+
+        private final Message message;
+        private final String[] values;
+
+        private CommandException(Message message, String... values) {
+            super(message.getKey(), null, false, false);
+            this.message = message;
+            this.values = values;
+        }
+    }
+
+    // ============================================================
+    // Operation state
+    // ============================================================
+
+    /**
+     * Outcome of rewriting one sign.
+     */
+    private enum Result {
+        CHANGED,
+        SKIPPED,
+        FAILED
+    }
+
+    /**
+     * A sign an operation applies to. Undo targets carry the lines expected on the sign
+     * and the lines to restore.
+     */
+    private static final class Target {
+
+        private final UUID world;
+        private final int x;
+        private final int y;
+        private final int z;
+        private final String[] expected;
+        private final String[] replacement;
+
+        private Target(UUID world, int x, int y, int z, String[] expected, String[] replacement) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.expected = expected;
+            this.replacement = replacement;
+        }
+    }
+
+    /**
+     * An operation whose signs are being collected. The targets are only changed on the background
+     * thread of the registry until the operation starts.
+     */
+    private static final class PendingOperation {
+
+        private final CommandSender sender;
+        private final Kind kind;
+        private final String argument;
+        private final Filter filter;
+        private final List<Target> loaded = new ArrayList<>();
+        private final List<Target> unloaded = new ArrayList<>();
+        private int remainingWorlds;
+
+        private PendingOperation(CommandSender sender, Kind kind, String argument, Filter filter, int worlds) {
+            this.sender = sender;
+            this.kind = kind;
+            this.argument = argument;
+            this.filter = filter;
+            this.remainingWorlds = worlds;
+        }
+
+        private void add(List<Target> targets, UUID world, SignRegistry.Entry entry) {
+            if (this.filter.contains(entry.getX(), entry.getZ()) && this.filter.matchesOwner(entry.getOwner())) {
+                targets.add(new Target(world, entry.getX(), entry.getY(), entry.getZ(), null, null));
+            }
+        }
+    }
+
+    /**
+     * A running bulk operation. Changed under the lock of the editor, apart from the
+     * undo log, which has its own lock as signs may be rewritten on several region threads.
+     */
+    private static final class Operation {
+
+        private final CommandSender sender;
+        private final Kind kind;
+        private final String argument;
+        private final Filter filter;
+        private final List<Target> targets;
+        private final Path undoLog;
+        private final long startedAt = System.nanoTime();
+        private DataOutputStream undo;
+
+        private int unloaded; // targets in chunks that were not loaded
+        private int position;
+        private int inFlight;
+        private int changed;
+        private int skipped;
+        private int failed;
+        private long reportedAt = this.startedAt;
+
+        private Operation(CommandSender sender, Kind kind, String argument, Filter filter, List<Target> targets,
+                          Path undoLog) throws IOException {
+            this.sender = sender;
+            this.kind = kind;
+            this.argument = argument;
+            this.filter = filter;
+            this.targets = targets;
+            this.undoLog = undoLog;
+            if (kind != Kind.UNDO) {
+                this.undo = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(undoLog)));
+                this.undo.writeInt(MAGIC);
+                this.undo.writeInt(VERSION);
+            }
+        }
+
+        private String[] rewrite(String[] lines) {
+            String[] rewritten = Arrays.copyOf(lines, LINE_COUNT);
+            switch (this.kind) {
+                case REPRICE:
+                    rewritten[2] = this.argument;
+                    break;
+                case TRANSFER:
+                    rewritten[1] = this.argument;
+                    break;
+                case DISABLE:
+                    rewritten[0] = DISABLED_LINE;
+                    break;
+                default:
+                    throw new IllegalStateException("Cannot rewrite lines for " + this.kind);
+            }
+            return rewritten;
+        }
+
+        private void count(Result result) {
+            switch (result) {
+                case CHANGED:
+                    this.changed++;
+                    break;
+                case SKIPPED:
+                    this.skipped++;
+                    break;
+                default:
+                    this.failed++;
+                    break;
+            }
+        }
+
+        // ------------------------------------------------------------
+        // Undo log
+        // ------------------------------------------------------------
+
+        /**
+         * Records the lines of a sign before it is rewritten.
+         */
+        private synchronized void recordUndo(Target target, String[] previous, String[] written) throws IOException {
+            if (this.undo == null) {
+                throw new IOException("Undo log is closed");
+            }
+            this.undo.writeLong(target.world.getMostSignificantBits());
+            this.undo.writeLong(target.world.getLeastSignificantBits());
+            this.undo.writeInt(target.x);
+            this.undo.writeInt(target.y);
+            this.undo.writeInt(target.z);
+            for (String line : previous) {
+                this.undo.writeUTF(line);
+            }
+            for (String line : written) {
+                this.undo.writeUTF(line);
+            }
+        }
+
+        private synchronized void flushUndo() {
+            if (this.undo == null) {
+                return;
+            }
+            try {
+                this.undo.flush();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not write undo log " + this.undoLog, e);
+            }
+        }
+
+        private synchronized void closeUndo() {
+            if (this.undo == null) {
+                return;
+            }
+            try {
+                this.undo.close();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not write undo log " + this.undoLog, e);
+            }
+            this.undo = null;
+        }
+    }
+}
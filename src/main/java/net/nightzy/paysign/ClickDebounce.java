@@ -0,0 +1,153 @@
+package net.nightzy.paysign;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Rejects repeated PaySign clicks before any payment is made.
+ * <p>
+ * A player may click a PaySign once per debounce window, and a sign accepts no clicks
+ * while it is claimed: from an accepted click until its payment fails or its trigger resets.
+ * Rejected clicks cost two primitive hash lookups and no allocations.
+ * <p>
+ * Safe to use from any thread. Sign claims are sharded by region like the
+ * {@link ProtectionIndex}, so clicks in different regions rarely contend.
+ */
+public class ClickDebounce implements Listener {
+
+    // Number of sign claim shards, a power of two
+    private static final int SHARDS = 64;
+
+    // Tick until which each player (by entity id) cannot click again; guarded by itself
+    private final LongIntMap players = new LongIntMap(64);
+
+    // Claimed sign block keys per shard and world
+    private final Shard[] signs = new Shard[SHARDS];
+
+    public ClickDebounce() {
+        for (int i = 0; i < SHARDS; i++) {
+            this.signs[i] = new Shard();
+        }
+    }
+
+    // ============================================================
+    // Debounce
+    // ============================================================
+
+    /**
+     * Accepts or rejects a click. An accepted click starts the player's debounce window
+     * and, if signs are debounced, claims the sign until it is {@link #release(Block) released}.
+     * @param player the clicking player
+     * @param sign the clicked sign block
+     * @param tick current server tick
+     * @param playerTicks length of the player debounce window in ticks, 0 to disable it
+     * @param debounceSigns whether the sign is claimed
+     * @return true if the click is accepted
+     */
+    public boolean tryAcquire(Player player, Block sign, long tick, int playerTicks, boolean debounceSigns) {
+        Objects.requireNonNull(player, "player cannot be null");
+        Objects.requireNonNull(sign, "sign cannot be null");
+
+        // Ticks are compared as differences, so the truncation to int wraps safely
+        long playerKey = player.getEntityId();
+        if (playerTicks > 0) {
+            synchronized (this.players) {
+                if (this.players.containsKey(playerKey) && (int) tick - this.players.get(playerKey, 0) < 0) {
+                    return false;
+                }
+            }
+        }
+
+        if (debounceSigns) {
+            long signKey = BlockKeys.pack(sign);
+            Shard shard = this.shard(sign);
+            synchronized (shard) {
+                LongIntMap claimed = shard.worlds.computeIfAbsent(sign.getWorld().getUID(), uid -> new LongIntMap(64));
+                if (claimed.containsKey(signKey)) {
+                    return false;
+                }
+                claimed.put(signKey, 1, 0);
+            }
+        }
+
+        // A player is owned by a single region, so no other thread starts its window in between
+        if (playerTicks > 0) {
+            synchronized (this.players) {
+                this.players.put(playerKey, (int) tick + playerTicks, 0);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the claim of a sign, so that it accepts clicks again.
+     * @param sign the sign block
+     */
+    public void release(Block sign) {
+        Objects.requireNonNull(sign, "sign cannot be null");
+        Shard shard = this.shard(sign);
+        synchronized (shard) {
+            LongIntMap claimed = shard.worlds.get(sign.getWorld().getUID());
+            if (claimed != null) {
+                claimed.remove(BlockKeys.pack(sign), 0);
+            }
+        }
+    }
+
+    /**
+     * Removes all debounce windows and claims.
+     */
+    public void clear() {
+        synchronized (this.players) {
+            this.players.clear();
+        }
+        for (Shard shard : this.signs) {
+            synchronized (shard) {
+                shard.worlds.clear();
+            }
+        }
+    }
+
+    private Shard shard(Block sign) {
+        return this.signs[BlockKeys.regionShard(sign.getX() >> 4, sign.getZ() >> 4, SHARDS)];
+    }
+
+    /**
+     * Claimed signs of the regions mapped to one shard.
+     */
+    private static final class Shard {
+
+        private final Map<UUID, LongIntMap> worlds = new HashMap<>();
+    }
+
+    // ============================================================
+    // Event handlers
+    // ============================================================
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        synchronized (this.players) {
+            this.players.remove(event.getPlayer().getEntityId(), 0);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        UUID uid = event.getWorld().getUID();
+        for (Shard shard : this.signs) {
+            synchronized (shard) {
+                shard.worlds.remove(uid);
+            }
+        }
+    }
+}
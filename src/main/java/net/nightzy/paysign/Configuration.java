@@ -1,15 +1,29 @@
 package net.nightzy.paysign;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.function.Supplier;
+import java.util.logging.Logger;
 
-import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.permissions.Permissible;
 
 /**
- * Plugin configuration wrapper.
- * Uses a Supplier<FileConfiguration> to allow dynamic reloads of the config.
+ * Immutable, validated snapshot of the plugin configuration.
+ * The YAML is read once when the snapshot is built, so accessors only read final fields.
+ * A reload builds a new snapshot and swaps it in as a whole.
+ * <p>
+ * Per-world and per-permission overrides of the sign {@link Settings} are resolved
+ * when the snapshot is built, so resolving them for a player costs one map lookup
+ * and one permission check per configured override.
  */
-public class Configuration {
+public final class Configuration {
+
+    // Logger for configuration warnings
+    static final Logger logger = Logger.getLogger(Configuration.class.getName());
 
     // ============================================================
     // Default configuration values
@@ -21,43 +35,222 @@ public class Configuration {
     /** Whether decimal prices are allowed by default */
     private static final boolean DEFAULT_ALLOW_DECIMALS = true;
 
+    /** Default number of decimal places of amounts */
+    private static final int DEFAULT_MONEY_SCALE = Money.DEFAULT_SCALE;
+
+    /** Default number of ticks a player must wait between PaySign clicks */
+    private static final int DEFAULT_DEBOUNCE_TICKS = 4;
+
+    /** Whether signs reject clicks while they are paid for or triggered by default */
+    private static final boolean DEFAULT_DEBOUNCE_SIGNS = true;
+
+    /** Default number of trigger activations and resets per tick (0 = no limit) */
+    private static final int DEFAULT_TRIGGER_BUDGET_OPERATIONS = 256;
+
+    /** Default time in microseconds spent on trigger activations and resets per tick (0 = no limit) */
+    private static final long DEFAULT_TRIGGER_BUDGET_MICROS = 2000;
+
+    /** Whether existing signs are indexed in the background by default */
+    private static final boolean DEFAULT_INDEXER_ENABLED = true;
+
+    /** Default time in microseconds spent indexing signs per tick */
+    private static final long DEFAULT_INDEXER_MAX_MICROS = 1000;
+
+    /** Default ticks per second below which indexing pauses */
+    private static final double DEFAULT_INDEXER_MIN_TPS = 18;
+
+    /** Default time in microseconds spent on bulk operations per tick */
+    private static final long DEFAULT_BULK_MAX_MICROS = 1000;
+
+    /** Default locale of messages */
+    private static final String DEFAULT_LOCALE = MessageRenderer.BUILT_IN_LOCALE;
+
+    /** Default engine turning the redstone signal on and off */
+    private static final String DEFAULT_PULSE_ENGINE = PulseEngine.BARRIER_SWAP;
+
+    /** Default number of payment worker threads */
+    private static final int DEFAULT_PAYMENT_THREADS = 2;
+
+    /** Default number of payments that may wait for a worker */
+    private static final int DEFAULT_PAYMENT_QUEUE_SIZE = 256;
+
+    /** Default time in milliseconds a payment may wait for a worker */
+    private static final long DEFAULT_PAYMENT_TIMEOUT = 5000;
+
+    /** Default number of sign owner names whose UUID is cached */
+    private static final int DEFAULT_OWNER_CACHE_SIZE = 1024;
+
+    /** Default interval in seconds between owner income summaries (0 = notify on every use) */
+    private static final long DEFAULT_INCOME_SUMMARY_INTERVAL = 30;
+
+    /** Whether payments are journaled by default */
+    private static final boolean DEFAULT_JOURNAL = true;
+
+    /** Default interval in ticks between owner deposit flushes (0 = deposit immediately) */
+    private static final long DEFAULT_DEPOSIT_FLUSH_INTERVAL = 200;
+
+    /** Default owner balance at which deposits are flushed immediately */
+    private static final double DEFAULT_DEPOSIT_FLUSH_THRESHOLD = 1000;
+
+    /** Whether the audit log is written by default */
+    private static final boolean DEFAULT_AUDIT_LOG = true;
+
+    /** Default number of audit records that may wait for the writer */
+    private static final int DEFAULT_AUDIT_BUFFER_SIZE = 8192;
+
+    /** Default compressed size in megabytes after which a new audit file is started */
+    private static final int DEFAULT_AUDIT_MAX_FILE_SIZE = 16;
+
+    /** Default number of audit files to keep */
+    private static final int DEFAULT_AUDIT_MAX_FILES = 30;
+
+    /** Whether the metrics exporter is started by default */
+    private static final boolean DEFAULT_EXPORTER_ENABLED = false;
+
+    /** Default address the metrics exporter binds to */
+    private static final String DEFAULT_EXPORTER_ADDRESS = "127.0.0.1";
+
+    /** Default port of the metrics exporter */
+    private static final int DEFAULT_EXPORTER_PORT = 9225;
+
+    /** Highest valid port number */
+    private static final int MAX_PORT = 65535;
+
     // ============================================================
     // Fields
     // ============================================================
 
-    /** Source of the FileConfiguration */
-    private final Supplier<FileConfiguration> config;
+    private final Settings settings;
+    private final Map<String, Settings> worldSettings;
+    private final List<PermissionOverride> overrides;
+    private final int moneyScale;
+    private final int debounceTicks;
+    private final boolean debounceSigns;
+    private final int triggerBudgetOperations;
+    private final long triggerBudgetMicros;
+    private final boolean indexerEnabled;
+    private final long indexerMaxMicros;
+    private final double indexerMinTps;
+    private final long bulkMaxMicros;
+    private final String locale;
+    private final String pulseEngine;
+    private final int paymentThreads;
+    private final int paymentQueueSize;
+    private final long paymentTimeout;
+    private final long depositFlushInterval;
+    private final Money depositFlushThreshold;
+    private final int ownerCacheSize;
+    private final long incomeSummaryInterval;
+    private final boolean journal;
+    private final boolean auditLog;
+    private final int auditBufferSize;
+    private final int auditMaxFileSize;
+    private final int auditMaxFiles;
+    private final boolean exporterEnabled;
+    private final String exporterAddress;
+    private final int exporterPort;
 
     // ============================================================
     // Constructor
     // ============================================================
 
+    private Configuration(ConfigurationSection config) {
+        this.settings = new Settings(
+                readInt(config, "delay", DEFAULT_DELAY, 1),
+                config.getBoolean("allow-decimals", DEFAULT_ALLOW_DECIMALS));
+        int moneyScale = readInt(config, "money-scale", DEFAULT_MONEY_SCALE, 0);
+        if (moneyScale > Money.MAX_SCALE) {
+            logger.warning("Invalid value of 'money-scale' (must be at most " + Money.MAX_SCALE +
+                           "), using " + DEFAULT_MONEY_SCALE + ".");
+            moneyScale = DEFAULT_MONEY_SCALE;
+        }
+        this.moneyScale = moneyScale;
+        this.debounceTicks = readInt(config, "debounce.player-ticks", DEFAULT_DEBOUNCE_TICKS, 0);
+        this.debounceSigns = config.getBoolean("debounce.signs", DEFAULT_DEBOUNCE_SIGNS);
+        this.triggerBudgetOperations = readInt(config, "trigger-budget.max-operations", DEFAULT_TRIGGER_BUDGET_OPERATIONS, 0);
+        this.triggerBudgetMicros = readLong(config, "trigger-budget.max-micros", DEFAULT_TRIGGER_BUDGET_MICROS, 0);
+        this.indexerEnabled = config.getBoolean("indexer.enabled", DEFAULT_INDEXER_ENABLED);
+        this.indexerMaxMicros = readLong(config, "indexer.max-micros", DEFAULT_INDEXER_MAX_MICROS, 1);
+        this.indexerMinTps = readDouble(config, "indexer.min-tps", DEFAULT_INDEXER_MIN_TPS, 0);
+        this.bulkMaxMicros = readLong(config, "bulk.max-micros", DEFAULT_BULK_MAX_MICROS, 1);
+        this.locale = config.getString("locale", DEFAULT_LOCALE);
+        this.pulseEngine = readPulseEngine(config);
+        this.paymentThreads = readInt(config, "payments.threads", DEFAULT_PAYMENT_THREADS, 1);
+        this.paymentQueueSize = readInt(config, "payments.queue-size", DEFAULT_PAYMENT_QUEUE_SIZE, 1);
+        this.paymentTimeout = readLong(config, "payments.timeout", DEFAULT_PAYMENT_TIMEOUT, 1);
+        this.depositFlushInterval = readLong(config, "owner-deposits.flush-interval", DEFAULT_DEPOSIT_FLUSH_INTERVAL, 0);
+        this.depositFlushThreshold = Money.fromDouble(readDouble(config, "owner-deposits.flush-threshold",
+                DEFAULT_DEPOSIT_FLUSH_THRESHOLD, 0), moneyScale);
+        this.ownerCacheSize = readInt(config, "owner-cache-size", DEFAULT_OWNER_CACHE_SIZE, 1);
+        this.incomeSummaryInterval = readLong(config, "owner-notifications.summary-interval",
+                DEFAULT_INCOME_SUMMARY_INTERVAL, 0);
+        this.journal = config.getBoolean("journal", DEFAULT_JOURNAL);
+        this.auditLog = config.getBoolean("audit-log.enabled", DEFAULT_AUDIT_LOG);
+        this.auditBufferSize = readInt(config, "audit-log.buffer-size", DEFAULT_AUDIT_BUFFER_SIZE, 16);
+        this.auditMaxFileSize = readInt(config, "audit-log.max-file-size", DEFAULT_AUDIT_MAX_FILE_SIZE, 1);
+        this.auditMaxFiles = readInt(config, "audit-log.max-files", DEFAULT_AUDIT_MAX_FILES, 1);
+        this.exporterEnabled = config.getBoolean("metrics-exporter.enabled", DEFAULT_EXPORTER_ENABLED);
+        this.exporterAddress = config.getString("metrics-exporter.bind-address", DEFAULT_EXPORTER_ADDRESS);
+        int exporterPort = readInt(config, "metrics-exporter.port", DEFAULT_EXPORTER_PORT, 1);
+        if (exporterPort > MAX_PORT) {
+            logger.warning("Invalid value of 'metrics-exporter.port' (must be at most " + MAX_PORT +
+                           "), using " + DEFAULT_EXPORTER_PORT + ".");
+            exporterPort = DEFAULT_EXPORTER_PORT;
+        }
+        this.exporterPort = exporterPort;
+
+        // Per-world settings, layered over the global settings
+        Map<String, Settings> worldSettings = new HashMap<>();
+        ConfigurationSection worlds = config.getConfigurationSection("worlds");
+        if (worlds != null) {
+            for (String world : worlds.getKeys(false)) {
+                ConfigurationSection section = worlds.getConfigurationSection(world);
+                if (section == null) {
+                    logger.warning("Ignoring invalid settings of world '" + world + "'.");
+                    continue;
+                }
+                worldSettings.put(world, this.settings.with(section));
+            }
+        }
+        this.worldSettings = Collections.unmodifiableMap(worldSettings);
+
+        // Per-permission settings, layered over the world settings, first match wins
+        List<PermissionOverride> overrides = new ArrayList<>();
+        ConfigurationSection permissions = config.getConfigurationSection("overrides");
+        if (permissions != null) {
+            for (String name : permissions.getKeys(false)) {
+                ConfigurationSection section = permissions.getConfigurationSection(name);
+                String permission = section != null ? section.getString("permission") : null;
+                if (permission == null || permission.isEmpty()) {
+                    logger.warning("Ignoring override '" + name + "' without a permission.");
+                    continue;
+                }
+                overrides.add(new PermissionOverride(permission, this.settings, this.worldSettings, section));
+            }
+        }
+        this.overrides = Collections.unmodifiableList(overrides);
+    }
+
     /**
-     * Creates a Configuration wrapper.
-     * @param config Supplier that provides the current FileConfiguration
+     * Builds a configuration snapshot. Invalid values are reported and replaced by their defaults.
+     * Does not touch the server, so it may be called from any thread.
+     * @param config configuration to read
+     * @return the validated snapshot
      */
-    public Configuration(Supplier<FileConfiguration> config) {
-        this.config = Objects.requireNonNull(config, "configuration cannot be null");
+    public static Configuration load(ConfigurationSection config) {
+        return new Configuration(Objects.requireNonNull(config, "config cannot be null"));
     }
 
     // ============================================================
     // Configuration accessors
     // ============================================================
 
-    /**
-     * Gets the current FileConfiguration from the supplier.
-     * @return current FileConfiguration
-     */
-    public FileConfiguration getConfig() {
-        return Objects.requireNonNull(this.config.get(), "FileConfiguration cannot be null");
-    }
-
     /**
      * Gets the configured redstone delay in ticks.
      * @return delay in ticks
      */
     public int delay() {
-        return this.getConfig().getInt("delay", DEFAULT_DELAY);
+        return this.settings.delay();
     }
 
     /**
@@ -65,6 +258,366 @@ public class Configuration {
      * @return true if decimals are allowed, false otherwise
      */
     public boolean allowDecimals() {
-        return this.getConfig().getBoolean("allow-decimals", DEFAULT_ALLOW_DECIMALS);
+        return this.settings.allowDecimals();
+    }
+
+    /**
+     * Gets the number of decimal places of prices and collected revenue.
+     * @return money scale, see {@link Money}
+     */
+    public int moneyScale() {
+        return this.moneyScale;
+    }
+
+    /**
+     * Resolves the sign settings that apply to a player in the given world.
+     * The first override whose permission the player has wins, otherwise the world settings apply.
+     * @param permissible player to check the override permissions of
+     * @param worldName world the player is in
+     * @return the applicable settings
+     */
+    public Settings settings(Permissible permissible, String worldName) {
+        Objects.requireNonNull(permissible, "permissible cannot be null");
+        Objects.requireNonNull(worldName, "worldName cannot be null");
+
+        for (PermissionOverride override : this.overrides) {
+            if (permissible.hasPermission(override.permission)) {
+                return override.settings(worldName);
+            }
+        }
+        return this.worldSettings.getOrDefault(worldName, this.settings);
+    }
+
+    /**
+     * Gets the number of ticks a player must wait between PaySign clicks.
+     * @return debounce window in ticks, 0 if players are not debounced
+     */
+    public int debounceTicks() {
+        return this.debounceTicks;
+    }
+
+    /**
+     * Determines whether a sign rejects clicks while it is paid for or triggered.
+     * @return true if signs are debounced
+     */
+    public boolean debounceSigns() {
+        return this.debounceSigns;
+    }
+
+    /**
+     * Gets the maximum number of trigger activations and resets per tick.
+     * @return number of operations, 0 if not limited
+     */
+    public int triggerBudgetOperations() {
+        return this.triggerBudgetOperations;
+    }
+
+    /**
+     * Gets the maximum time spent on trigger activations and resets per tick.
+     * @return time in microseconds, 0 if not limited
+     */
+    public long triggerBudgetMicros() {
+        return this.triggerBudgetMicros;
+    }
+
+    /**
+     * Determines whether signs created before the sign registry are indexed in the background.
+     * @return true if the indexer runs
+     */
+    public boolean indexerEnabled() {
+        return this.indexerEnabled;
+    }
+
+    /**
+     * Gets the maximum time spent indexing signs per tick.
+     * @return time in microseconds, at least 1
+     */
+    public long indexerMaxMicros() {
+        return this.indexerMaxMicros;
+    }
+
+    /**
+     * Gets the ticks per second below which indexing pauses.
+     * @return ticks per second, 0 if indexing never pauses
+     */
+    public double indexerMinTps() {
+        return this.indexerMinTps;
+    }
+
+    /**
+     * Gets the maximum time spent rewriting signs of a bulk operation per tick.
+     * @return time in microseconds, at least 1
+     */
+    public long bulkMaxMicros() {
+        return this.bulkMaxMicros;
+    }
+
+    /**
+     * Gets the locale of messages sent to the console and to players whose client locale has no messages.
+     * @return locale name, e.g. {@code en} or {@code pt_br}
+     */
+    public String locale() {
+        return this.locale;
+    }
+
+    /**
+     * Gets the name of the engine turning the redstone signal on and off.
+     * @return {@link PulseEngine#BARRIER_SWAP} or {@link PulseEngine#DIRECT}
+     */
+    public String pulseEngine() {
+        return this.pulseEngine;
+    }
+
+    /**
+     * Gets the number of payment worker threads.
+     * @return number of threads, at least 1
+     */
+    public int paymentThreads() {
+        return this.paymentThreads;
+    }
+
+    /**
+     * Gets the maximum number of payments waiting for a worker.
+     * @return queue size, at least 1
+     */
+    public int paymentQueueSize() {
+        return this.paymentQueueSize;
+    }
+
+    /**
+     * Gets the maximum time a payment may wait for a worker, and a single economy call may take.
+     * @return timeout in milliseconds
+     */
+    public long paymentTimeout() {
+        return this.paymentTimeout;
+    }
+
+    /**
+     * Gets the interval between owner deposit flushes.
+     * @return interval in ticks, 0 if owner deposits are written immediately
+     */
+    public long depositFlushInterval() {
+        return this.depositFlushInterval;
+    }
+
+    /**
+     * Gets the owner balance at which deposits are flushed immediately.
+     * @return flush threshold in the configured money scale
+     */
+    public Money depositFlushThreshold() {
+        return this.depositFlushThreshold;
+    }
+
+    /**
+     * Determines whether payments are recorded in the crash-safe journal.
+     * @return true if the journal is enabled
+     */
+    public boolean journal() {
+        return this.journal;
+    }
+
+    /**
+     * Determines whether creations and payments are written to the audit log.
+     * @return true if the audit log is enabled
+     */
+    public boolean auditLog() {
+        return this.auditLog;
+    }
+
+    /**
+     * Gets the number of sign owner names whose UUID is cached.
+     * @return cache size, at least 1
+     */
+    public int ownerCacheSize() {
+        return this.ownerCacheSize;
+    }
+
+    /**
+     * Gets the interval between the income summaries sent to sign owners.
+     * @return interval in seconds, 0 if owners are notified on every use
+     */
+    public long incomeSummaryInterval() {
+        return this.incomeSummaryInterval;
+    }
+
+    /**
+     * Gets the number of audit records that may wait for the writer.
+     * @return buffer size, at least 16
+     */
+    public int auditBufferSize() {
+        return this.auditBufferSize;
+    }
+
+    /**
+     * Gets the size after which a new audit file is started.
+     * @return compressed file size in megabytes
+     */
+    public int auditMaxFileSize() {
+        return this.auditMaxFileSize;
+    }
+
+    /**
+     * Gets the number of audit files to keep.
+     * @return number of files, at least 1
+     */
+    public int auditMaxFiles() {
+        return this.auditMaxFiles;
+    }
+
+    /**
+     * Determines whether the Prometheus metrics exporter is started.
+     * @return true if the exporter is enabled
+     */
+    public boolean exporterEnabled() {
+        return this.exporterEnabled;
+    }
+
+    /**
+     * Gets the address the metrics exporter binds to.
+     * @return host name or IP address
+     */
+    public String exporterAddress() {
+        return this.exporterAddress;
+    }
+
+    /**
+     * Gets the port of the metrics exporter.
+     * @return port number
+     */
+    public int exporterPort() {
+        return this.exporterPort;
+    }
+
+    /**
+     * Determines whether switching to the other snapshot changes settings that are
+     * only applied on startup (money scale, locale, pulse engine, payment workers, owner deposits, the owner cache,
+     * owner notifications, the journal, the audit log and the exporter).
+     * @param other snapshot to compare with
+     * @return true if a restart is needed to apply all settings of the other snapshot
+     */
+    public boolean requiresRestart(Configuration other) {
+        Objects.requireNonNull(other, "other cannot be null");
+        return this.moneyScale != other.moneyScale
+               || !this.locale.equals(other.locale)
+               || !this.pulseEngine.equals(other.pulseEngine)
+               || this.paymentThreads != other.paymentThreads
+               || this.paymentQueueSize != other.paymentQueueSize
+               || this.paymentTimeout != other.paymentTimeout
+               || this.depositFlushInterval != other.depositFlushInterval
+               || !this.depositFlushThreshold.equals(other.depositFlushThreshold)
+               || this.ownerCacheSize != other.ownerCacheSize
+               || this.incomeSummaryInterval != other.incomeSummaryInterval
+               || this.journal != other.journal
+               || this.auditLog != other.auditLog
+               || this.auditBufferSize != other.auditBufferSize
+               || this.auditMaxFileSize != other.auditMaxFileSize
+               || this.auditMaxFiles != other.auditMaxFiles
+               || this.exporterEnabled != other.exporterEnabled
+               || !this.exporterAddress.equals(other.exporterAddress)
+               || this.exporterPort != other.exporterPort;
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    private static int readInt(ConfigurationSection config, String path, int def, int min) {
+        if (config.contains(path) && (!config.isInt(path) || config.getInt(path) < min)) {
+            logger.warning("Invalid value of '" + path + "' (must be a whole number of at least " + min +
+                           "), using " + def + ".");
+            return def;
+        }
+        return config.getInt(path, def);
+    }
+
+    private static long readLong(ConfigurationSection config, String path, long def, long min) {
+        if (config.contains(path) && (!(config.isInt(path) || config.isLong(path)) || config.getLong(path) < min)) {
+            logger.warning("Invalid value of '" + path + "' (must be a whole number of at least " + min +
+                           "), using " + def + ".");
+            return def;
+        }
+        return config.getLong(path, def);
+    }
+
+    private static String readPulseEngine(ConfigurationSection config) {
+        String engine = config.getString("pulse-engine", DEFAULT_PULSE_ENGINE);
+        if (!PulseEngine.BARRIER_SWAP.equals(engine) && !PulseEngine.DIRECT.equals(engine)) {
+            logger.warning("Invalid value of 'pulse-engine' (must be " + PulseEngine.BARRIER_SWAP + " or " +
+                           PulseEngine.DIRECT + "), using " + DEFAULT_PULSE_ENGINE + ".");
+            return DEFAULT_PULSE_ENGINE;
+        }
+        return engine;
+    }
+
+    private static double readDouble(ConfigurationSection config, String path, double def, double min) {
+        if (config.contains(path) && (!(config.isDouble(path) || config.isInt(path) || config.isLong(path))
+                                      || config.getDouble(path) < min)) {
+            logger.warning("Invalid value of '" + path + "' (must be a number of at least " + min +
+                           "), using " + def + ".");
+            return def;
+        }
+        return config.getDouble(path, def);
+    }
+
+    // ============================================================
+    // Settings & overrides
+    // ============================================================
+
+    /**
+     * Settings of PaySigns that may be overridden per world and per permission.
+     */
+    public static final class Settings {
+
+        private final int delay;
+        private final boolean allowDecimals;
+
+        private Settings(int delay, boolean allowDecimals) {
+            this.delay = delay;
+            this.allowDecimals = allowDecimals;
+        }
+
+        /**
+         * @return redstone delay in ticks for signs without their own delay
+         */
+        public int delay() {
+            return this.delay;
+        }
+
+        /**
+         * @return true if decimal prices are allowed
+         */
+        public boolean allowDecimals() {
+            return this.allowDecimals;
+        }
+
+        /**
+         * Creates settings with the values present in the section replacing these ones.
+         */
+        private Settings with(ConfigurationSection section) {
+            return new Settings(
+                    readInt(section, "delay", this.delay, 1),
+                    section.getBoolean("allow-decimals", this.allowDecimals));
+        }
+    }
+
+    /**
+     * Settings granted by a permission, resolved for every configured world.
+     */
+    private static final class PermissionOverride {
+
+        private final String permission;
+        private final Settings settings;
+        private final Map<String, Settings> worldSettings = new HashMap<>();
+
+        private PermissionOverride(String permission, Settings settings, Map<String, Settings> worldSettings,
+                         ConfigurationSection section) {
+            this.permission = permission;
+            this.settings = settings.with(section);
+            worldSettings.forEach((world, base) -> this.worldSettings.put(world, base.with(section)));
+        }
+
+        private Settings settings(String worldName) {
+            return this.worldSettings.getOrDefault(worldName, this.settings);
+        }
     }
 }
@@ -0,0 +1,127 @@
+package net.nightzy.paysign;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Server;
+import org.bukkit.block.Block;
+import org.bukkit.block.Sign;
+import org.bukkit.block.data.type.Switch;
+
+/**
+ * Pulse engine that writes the button and the sign with physics and notifies the
+ * neighbours of the base block directly, like a pressed button does. The base block
+ * is never replaced, so a power change costs a single block write.
+ * <p>
+ * The Bukkit API cannot notify neighbours without changing a block, so the server's
+ * neighbour update is called through a {@link NeighborNotifier}, see {@link #create(Server)}.
+ */
+public class DirectPulseEngine implements PulseEngine {
+
+    // Logger for server support problems
+    static final Logger logger = Logger.getLogger(DirectPulseEngine.class.getName());
+
+    /**
+     * Notifies the six neighbours of a block that the block has changed.
+     */
+    @FunctionalInterface
+    public interface NeighborNotifier {
+
+        /**
+         * @param block block whose neighbours are notified
+         */
+        void notifyNeighbors(Block block);
+    }
+
+    private final NeighborNotifier notifier;
+
+    /**
+     * Creates an engine notifying neighbours through the given notifier.
+     * @param notifier performs the neighbour updates
+     */
+    public DirectPulseEngine(NeighborNotifier notifier) {
+        this.notifier = Objects.requireNonNull(notifier, "notifier cannot be null");
+    }
+
+    /**
+     * Creates an engine calling the neighbour update of a CraftBukkit server.
+     * @param server the running server
+     * @return the engine, or empty if the server does not support direct neighbour updates
+     */
+    public static Optional<DirectPulseEngine> create(Server server) {
+        Objects.requireNonNull(server, "server cannot be null");
+        try {
+            return Optional.of(new DirectPulseEngine(new CraftNeighborNotifier(server)));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.FINE, "Direct neighbour updates are not supported by " + server.getVersion(), e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void powerOn(Sign sign, Block baseBlock, Switch button) {
+        sign.getBlock().setBlockData(button, true);
+        this.notifier.notifyNeighbors(baseBlock);
+    }
+
+    @Override
+    public void powerOff(Sign sign, Block baseBlock) {
+        sign.update(true, true);
+        this.notifier.notifyNeighbors(baseBlock);
+    }
+
+    // ============================================================
+    // CraftBukkit support
+    // ============================================================
+
+    /**
+     * Calls {@code World.applyPhysics(BlockPosition, Block)} of the server implementation.
+     * The methods are resolved once, from the versioned CraftBukkit package of the server.
+     */
+    private static final class CraftNeighborNotifier implements NeighborNotifier {
+
+        private final Method getHandle;
+        private final Constructor<?> newPosition;
+        private final Method applyPhysics;
+        private final Method getState;
+        private final Method getBlock;
+
+        private CraftNeighborNotifier(Server server) throws ReflectiveOperationException {
+            String craftPackage = server.getClass().getPackage().getName();
+            String version = craftPackage.substring(craftPackage.lastIndexOf('.') + 1);
+            String nmsPackage = "net.minecraft.server." + version;
+
+            Class<?> craftWorld = Class.forName(craftPackage + ".CraftWorld");
+            Class<?> craftBlockData = Class.forName(craftPackage + ".block.data.CraftBlockData");
+            Class<?> world = Class.forName(nmsPackage + ".World");
+            Class<?> position = Class.forName(nmsPackage + ".BlockPosition");
+            Class<?> block = Class.forName(nmsPackage + ".Block");
+            Class<?> blockData = Class.forName(nmsPackage + ".IBlockData");
+
+            this.getHandle = craftWorld.getMethod("getHandle");
+            this.newPosition = position.getConstructor(int.class, int.class, int.class);
+            this.applyPhysics = world.getMethod("applyPhysics", position, block);
+            this.getState = craftBlockData.getMethod("getState");
+            this.getBlock = blockData.getMethod("getBlock");
+        }
+
+        @Override
+        public void notifyNeighbors(Block block) {
+            try {
+                Object world = this.getHandle.invoke(block.getWorld());
+                Object position = this.newPosition.newInstance(block.getX(), block.getY(), block.getZ());
+                Object type = this.getBlock.invoke(this.getState.invoke(block.getBlockData()));
+                this.applyPhysics.invoke(world, position, type);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("Neighbour update failed at " + block, e.getCause());
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Neighbour update is not accessible", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package net.nightzy.paysign;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.milkbowl.vault.economy.Economy;
+
+/**
+ * Puts a deadline on every call to the economy provider.
+ * <p>
+ * Calls of a wrapped provider run on threads of their own. A caller waits for the result at
+ * most until the deadline and gets an {@link EconomyTimeoutException} otherwise, so a hung
+ * provider cannot hold a payment worker or the server thread. The call itself keeps running,
+ * callers that move money register for its late result on the exception and settle it then.
+ * Every hung call keeps its thread until the provider returns.
+ */
+public class EconomyDeadline {
+
+    private final long timeoutNanos;
+    private final ExecutorService calls;
+
+    /**
+     * Creates an economy deadline.
+     * @param pluginName name of the plugin, used in thread names
+     * @param timeoutMillis maximum time to wait for a single economy call
+     */
+    public EconomyDeadline(String pluginName, long timeoutMillis) {
+        Objects.requireNonNull(pluginName, "pluginName cannot be null");
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.calls = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, pluginName + " Economy Call #" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Wraps an economy provider so that every call is subject to the deadline.
+     * @param economy the Vault economy provider
+     * @return the wrapped provider
+     */
+    public Economy wrap(Economy economy) {
+        Objects.requireNonNull(economy, "economy cannot be null");
+        return (Economy) Proxy.newProxyInstance(Economy.class.getClassLoader(), new Class<?>[]{Economy.class},
+                new Handler(economy));
+    }
+
+    /**
+     * Stops accepting calls. Calls still running finish and settle their late results.
+     */
+    public void shutdown() {
+        this.calls.shutdown();
+    }
+
+    /**
+     * Runs the calls of a wrapped provider on the call threads.
+     */
+    private final class Handler implements InvocationHandler {
+
+        private final Economy economy;
+
+        private Handler(Economy economy) {
+            this.economy = economy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeDirectly(this.economy, method, args);
+            }
+
+            CompletableFuture<Object> call;
+            try {
+                call = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return invokeDirectly(this.economy, method, args);
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, EconomyDeadline.this.calls);
+            } catch (RejectedExecutionException e) {
+                return invokeDirectly(this.economy, method, args); // shut down, call without a deadline
+            }
+
+            try {
+                return call.get(EconomyDeadline.this.timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new EconomyTimeoutException(method.getName(), call);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EconomyTimeoutException(method.getName(), call);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+
+        private Object invokeDirectly(Economy economy, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(economy, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
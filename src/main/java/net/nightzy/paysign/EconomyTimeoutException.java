@@ -0,0 +1,39 @@
+package net.nightzy.paysign;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import net.milkbowl.vault.economy.EconomyResponse;
+
+/**
+ * Thrown when a call to the economy provider misses its deadline.
+ * <p>
+ * The call keeps running on its own thread. Callers that move money register for its
+ * late response with {@link #onResponse(Consumer)} to settle the journal once it is known.
+ */
+public class EconomyTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient CompletableFuture<Object> call;
+
+    /**
+     * Creates a new exception for a call that missed its deadline.
+     * @param method name of the economy method
+     * @param call the running call
+     */
+    public EconomyTimeoutException(String method, CompletableFuture<Object> call) {
+        super("The economy call " + method + " did not complete in time.");
+        this.call = call;
+    }
+
+    /**
+     * Registers a handler for the late response of the call.
+     * The handler receives {@code null} if the call failed or did not return a response.
+     * @param handler the handler, run on the thread completing the call
+     */
+    public void onResponse(Consumer<EconomyResponse> handler) {
+        this.call.whenComplete((result, error) ->
+                handler.accept(error == null && result instanceof EconomyResponse ? (EconomyResponse) result : null));
+    }
+}
@@ -0,0 +1,144 @@
+package net.nightzy.paysign;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+
+import net.milkbowl.vault.economy.Economy;
+
+/**
+ * Tells sign owners about the income of their PaySigns.
+ * <p>
+ * Owners are either notified on every use, or their income is collected per owner and
+ * summarized in one message per interval, e.g. "12 players paid you $340 in the last 30s".
+ * Summaries are sent by {@link #flush(Server, Economy)}, which is run by a single periodic
+ * task. Owners who are offline when their summary is due do not receive it.
+ * Safe to use from any thread.
+ */
+public class IncomeNotifier {
+
+    private final MessageRenderer messageRenderer;
+    private final long intervalSeconds;
+
+    // Income collected since the last flush by lower case owner name
+    private final Map<String, Income> incomes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an income notifier.
+     * @param messageRenderer renders the notifications
+     * @param intervalSeconds interval between summaries, 0 to notify on every use
+     */
+    public IncomeNotifier(MessageRenderer messageRenderer, long intervalSeconds) {
+        this.messageRenderer = Objects.requireNonNull(messageRenderer, "messageRenderer cannot be null");
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    // ============================================================
+    // Notifications
+    // ============================================================
+
+    /**
+     * @return true if income is summarized instead of notified on every use
+     */
+    public boolean isBatched() {
+        return this.intervalSeconds > 0;
+    }
+
+    /**
+     * Notifies the owner of a sign about a payment, or adds it to the owner's next summary.
+     * @param paySign the paid sign
+     * @param payer the player who paid
+     * @param payment the successful payment
+     */
+    public void paid(PaySign paySign, Player payer, Payment payment) {
+        Objects.requireNonNull(paySign, "paySign cannot be null");
+        Objects.requireNonNull(payer, "payer cannot be null");
+        Objects.requireNonNull(payment, "payment cannot be null");
+
+        if (!this.isBatched()) {
+            paySign.getOwner(payer.getServer()).ifPresent(owner -> owner.sendMessage(
+                    this.messageRenderer.notification(owner, payer.getName(), payment.getFormattedAmount())));
+            return;
+        }
+
+        UUID ownerId = paySign.getOwnerId().orElse(null);
+        this.incomes.compute(paySign.getPlayerName().toLowerCase(Locale.ROOT), (key, income) -> {
+            if (income == null) {
+                income = new Income(paySign.getPlayerName(), payment.getAmount().getScale());
+            }
+            income.add(ownerId, payer.getUniqueId(), payment.getAmount());
+            return income;
+        });
+    }
+
+    /**
+     * Sends the summaries of all owners with collected income and starts a new interval.
+     * @param server the running server
+     * @param economy economy formatting the amounts
+     */
+    public void flush(Server server, Economy economy) {
+        Objects.requireNonNull(server, "server cannot be null");
+        Objects.requireNonNull(economy, "economy cannot be null");
+
+        for (String key : this.incomes.keySet()) {
+            Income income = this.incomes.remove(key);
+            if (income == null) {
+                continue;
+            }
+
+            Player owner = income.ownerId != null
+                    ? server.getPlayer(income.ownerId)
+                    : server.getPlayerExact(income.ownerName);
+            if (owner != null) {
+                Money amount = Money.ofMinor(income.units, income.scale);
+                String formatted;
+                try {
+                    formatted = economy.format(amount.toDouble());
+                } catch (EconomyTimeoutException e) {
+                    formatted = amount.toString();
+                }
+                owner.sendMessage(this.messageRenderer.incomeSummary(owner, income.payers.size(), income.payments,
+                        formatted, this.intervalSeconds));
+            }
+        }
+    }
+
+    // ============================================================
+    // Income
+    // ============================================================
+
+    /**
+     * Income of one owner within the current interval, summed up in minor units.
+     * Only changed inside the atomic updates of the income map.
+     */
+    private static final class Income {
+
+        private final String ownerName;
+        private final Set<UUID> payers = new HashSet<>();
+        private UUID ownerId;
+        private final int scale;
+        private int payments;
+        private long units;
+
+        private Income(String ownerName, int scale) {
+            this.ownerName = ownerName;
+            this.scale = scale;
+        }
+
+        private void add(UUID ownerId, UUID payer, Money amount) {
+            if (ownerId != null) {
+                this.ownerId = ownerId;
+            }
+            this.payers.add(payer);
+            this.payments++;
+            this.units += amount.rescale(this.scale).getMinorUnits();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package net.nightzy.paysign;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets (HDR style).
+ * Every power of two is split into 16 buckets, so recorded values are kept
+ * with a relative error below 6.25% over the whole range of long values.
+ * Recording is wait-free apart from the max update and does not allocate.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param name name of the measured operation, used in reports
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    // ============================================================
+    // Recording
+    // ============================================================
+
+    /**
+     * Records a latency.
+     * @param nanos latency in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(index(value));
+        this.count.increment();
+        this.sum.add(value);
+
+        long current;
+        while (value > (current = this.max.get()) && !this.max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime()}.
+     * @param startNanos start of the operation
+     */
+    public void recordSince(long startNanos) {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    // ============================================================
+    // Reading
+    // ============================================================
+
+    /**
+     * Takes a snapshot of the recorded values. Values recorded concurrently
+     * may or may not be included.
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.counts.get(i);
+            total += counts[i];
+        }
+        return new Snapshot(counts, total, this.sum.sum(), this.max.get());
+    }
+
+    /**
+     * Gets the bucket a value is counted in.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Gets the highest value counted in the given bucket.
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lower = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    // ============================================================
+    // Snapshot
+    // ============================================================
+
+    /**
+     * Immutable view of a histogram at some point in time.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * @return sum of all recorded values in nanoseconds
+         */
+        public long getSum() {
+            return this.sum;
+        }
+
+        /**
+         * @return largest recorded value in nanoseconds
+         */
+        public long getMax() {
+            return this.max;
+        }
+
+        /**
+         * @return mean of the recorded values in nanoseconds
+         */
+        public double getMean() {
+            return this.count > 0 ? (double) this.sum / this.count : 0;
+        }
+
+        /**
+         * Gets the value below which the given percentage of the recorded values fall.
+         * @param percentile percentile between 0 and 100
+         * @return the value in nanoseconds, 0 if nothing has been recorded
+         */
+        public long getPercentile(double percentile) {
+            if (this.count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), this.max);
+                }
+            }
+            return this.max;
+        }
+
+        /**
+         * Gets the number of values recorded at or below the given value.
+         * Exact at bucket boundaries, used for cumulative bucket exports.
+         * @param nanos upper bound in nanoseconds
+         * @return cumulative count
+         */
+        public long getCountAtOrBelow(long nanos) {
+            long total = 0;
+            for (int i = 0; i < this.counts.length && upperBound(i) <= nanos; i++) {
+                total += this.counts[i];
+            }
+            return total;
+        }
+
+        /**
+         * Formats the snapshot for chat and logs, in microseconds.
+         */
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", this.count,
+                    this.getMean() / 1000, micros(this.getPercentile(50)), micros(this.getPercentile(99)),
+                    micros(this.max));
+        }
+
+        private static double micros(long nanos) {
+            return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+        }
+    }
+}
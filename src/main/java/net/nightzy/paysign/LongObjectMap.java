@@ -0,0 +1,241 @@
+package net.nightzy.paysign;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to object values.
+ * Used for block- and chunk-keyed lookups on hot paths where boxing would allocate.
+ * Not thread-safe.
+ *
+ * @param <V> type of the values
+ */
+public final class LongObjectMap<V> {
+
+    /**
+     * Receives the entries of the map.
+     */
+    @FunctionalInterface
+    public interface Visitor<V> {
+        void accept(long key, V value);
+    }
+
+    private static final float LOAD_FACTOR = 0.5F;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private V[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    // Key 0 is used to mark free slots, so it is stored separately
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    public LongObjectMap(int expectedSize) {
+        this.allocate(tableSize(expectedSize));
+    }
+
+    // ============================================================
+    // Queries
+    // ============================================================
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return this.hasZeroKey;
+        }
+        return this.indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value mapped to the key, or null if there is none.
+     */
+    public V get(long key) {
+        if (key == 0) {
+            return this.zeroValue;
+        }
+        int index = this.indexOf(key);
+        return index >= 0 ? this.values[index] : null;
+    }
+
+    /**
+     * Passes every entry to the visitor. The map must not be modified while visiting.
+     */
+    public void forEach(Visitor<? super V> visitor) {
+        if (this.hasZeroKey) {
+            visitor.accept(0, this.zeroValue);
+        }
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != 0) {
+                visitor.accept(this.keys[i], this.values[i]);
+            }
+        }
+    }
+
+    // ============================================================
+    // Updates
+    // ============================================================
+
+    /**
+     * Maps the key to the value.
+     * @return previous value, or null if there was none
+     */
+    public V put(long key, V value) {
+        if (key == 0) {
+            V previous = this.zeroValue;
+            if (!this.hasZeroKey) {
+                this.hasZeroKey = true;
+                this.size++;
+            }
+            this.zeroValue = value;
+            return previous;
+        }
+
+        int index = mix(key) & this.mask;
+        long current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                V previous = this.values[index];
+                this.values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & this.mask;
+        }
+
+        this.keys[index] = key;
+        this.values[index] = value;
+        if (++this.size >= this.resizeAt) {
+            this.rehash(this.keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping for the key.
+     * @return removed value, or null if there was none
+     */
+    public V remove(long key) {
+        if (key == 0) {
+            if (!this.hasZeroKey) {
+                return null;
+            }
+            V previous = this.zeroValue;
+            this.hasZeroKey = false;
+            this.zeroValue = null;
+            this.size--;
+            return previous;
+        }
+
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        V previous = this.values[index];
+        this.size--;
+        this.shiftKeys(index);
+        return previous;
+    }
+
+    public void clear() {
+        if (this.size == 0) {
+            return;
+        }
+        Arrays.fill(this.keys, 0L);
+        Arrays.fill(this.values, null);
+        this.hasZeroKey = false;
+        this.zeroValue = null;
+        this.size = 0;
+    }
+
+    // ============================================================
+    // Internals
+    // ============================================================
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSize(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = (V[]) new Object[capacity];
+        this.mask = capacity - 1;
+        this.resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Returns the slot holding the key, or -1 if it is absent.
+     */
+    private int indexOf(long key) {
+        int index = mix(key) & this.mask;
+        long current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                return index;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Closes the gap left by a removed key (backward-shift deletion for linear probing).
+     */
+    private void shiftKeys(int index) {
+        int last;
+        long current;
+        while (true) {
+            index = ((last = index) + 1) & this.mask;
+            while (true) {
+                if ((current = this.keys[index]) == 0) {
+                    this.keys[last] = 0;
+                    this.values[last] = null;
+                    return;
+                }
+                int slot = mix(current) & this.mask;
+                if (last <= index ? last >= slot || slot > index : last >= slot && slot > index) {
+                    break;
+                }
+                index = (index + 1) & this.mask;
+            }
+            this.keys[last] = current;
+            this.values[last] = this.values[index];
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        V[] oldValues = this.values;
+        this.allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int index = mix(key) & this.mask;
+                while (this.keys[index] != 0) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = key;
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+}
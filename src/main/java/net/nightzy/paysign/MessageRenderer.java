@@ -1,125 +1,454 @@
 package net.nightzy.paysign;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 
 /**
- * Abstract message renderer for PaySign plugin.
+ * Message renderer for PaySign plugin.
  * Provides formatted messages for various situations: errors, success, notifications, etc.
+ * <p>
+ * Messages are read from one file per locale and compiled once into {@link MessageTemplate}s,
+ * with the prefix and colors already applied. Messages without placeholders are rendered when
+ * they are compiled, so sending them costs a locale lookup. Players get the messages of their
+ * client locale, other senders those of the default locale. Safe to use from any thread.
  */
-public abstract class MessageRenderer {
+public class MessageRenderer {
+
+    // Logger for message loading problems
+    static final Logger logger = Logger.getLogger(MessageRenderer.class.getName());
+
+    // Messages shipped with the plugin, used for missing messages of every locale
+    public static final String BUILT_IN_LOCALE = "en";
+    private static final String BUILT_IN_RESOURCE = "/messages/" + BUILT_IN_LOCALE + ".yml";
+    private static final String FILE_EXTENSION = ".yml";
+
+    /**
+     * Messages with their key in the message files and their placeholders.
+     */
+    public enum Message {
+        CREATED("created"),
+        PAID("paid", "amount", "owner"),
+        NOTIFICATION("notification", "player", "amount"),
+        INCOME_SUMMARY("income-summary", "payers", "amount", "uses", "seconds"),
+        PLAYERS_ONE(false, "players-one"),
+        PLAYERS_MANY(false, "players-many", "count"),
+        USES_ONE(false, "uses-one"),
+        USES_MANY(false, "uses-many", "count"),
+        TOO_POOR("too-poor"),
+        REFUNDED("refunded", "amount"),
+        DISABLED_DECIMALS("disabled-decimals"),
+        PAYMENT_PENDING("payment-pending"),
+        PAYMENT_BUSY("payment-busy"),
+        PAYMENT_TIMED_OUT("payment-timed-out"),
+        NO_PERMISSION_CREATE("no-permission-create"),
+        NO_PERMISSION_CREATE_OTHER("no-permission-create-other"),
+        NO_PERMISSION_USE("no-permission-use"),
+        NO_PERMISSION_COMMAND("no-permission-command"),
+        RELOADED("reloaded"),
+        RELOADED_RESTART("reloaded-restart"),
+        RELOAD_FAILED("reload-failed", "reason"),
+        USAGE("usage", "label", "subcommands"),
+        ERROR("error", "text"),
+        INFO("info", "text"),
+        BULK_USAGE("bulk-usage"),
+        BULK_REPRICE(false, "bulk-reprice", "price"),
+        BULK_TRANSFER(false, "bulk-transfer", "owner"),
+        BULK_DISABLE(false, "bulk-disable"),
+        BULK_UNDO(false, "bulk-undo", "log"),
+        BULK_COLLECTING("bulk-collecting", "operation"),
+        BULK_COLLECTING_CANCELLED("bulk-collecting-cancelled", "operation"),
+        BULK_STARTED("bulk-started", "operation", "signs", "unloaded"),
+        BULK_PROGRESS("bulk-progress", "operation", "position", "signs", "changed", "skipped", "failed"),
+        BULK_FINISHED("bulk-finished", "operation", "changed", "skipped", "failed", "seconds"),
+        BULK_CANCELLED("bulk-cancelled", "operation", "changed", "skipped", "failed", "seconds"),
+        BULK_STOPPED("bulk-stopped", "operation", "changed", "skipped", "failed", "seconds"),
+        BULK_NOT_RUNNING("bulk-not-running"),
+        BULK_ALREADY_RUNNING("bulk-already-running"),
+        BULK_NOTHING_TO_UNDO("bulk-nothing-to-undo"),
+        BULK_UNKNOWN_WORLD("bulk-unknown-world", "world"),
+        BULK_INVALID_FILTER("bulk-invalid-filter", "filter"),
+        BULK_INVALID_PRICE("bulk-invalid-price", "price", "decimals"),
+        BULK_FAILED("bulk-failed", "reason");
+
+        private final boolean prefixed;
+        private final String key;
+        private final String[] parameters;
+
+        Message(String key, String... parameters) {
+            this(true, key, parameters);
+        }
+
+        Message(boolean prefixed, String key, String... parameters) {
+            this.prefixed = prefixed;
+            this.key = key;
+            this.parameters = parameters;
+        }
+
+        /**
+         * @return key of the message in the message files
+         */
+        public String getKey() {
+            return this.key;
+        }
+    }
+
+    private final Map<String, Messages> locales;
+    private final Messages defaultMessages;
+
+    // Messages by client locale, resolved once per locale
+    private final Map<String, Messages> resolved = new ConcurrentHashMap<>();
+
+    private MessageRenderer(Map<String, Messages> locales, String defaultLocale) {
+        this.locales = locales;
+        Messages defaultMessages = locales.get(defaultLocale);
+        if (defaultMessages == null) {
+            logger.warning("No messages for the default locale '" + defaultLocale + "', using '" +
+                           BUILT_IN_LOCALE + "'.");
+            defaultMessages = locales.get(BUILT_IN_LOCALE);
+        }
+        this.defaultMessages = defaultMessages;
+    }
+
+    /**
+     * Loads the messages of all locales in a directory. Files are named after their locale,
+     * e.g. {@code de.yml} or {@code pt_br.yml}; missing messages are taken from the built-in messages.
+     * @param directory directory of the message files
+     * @param pluginName plugin name shown in the prefix
+     * @param defaultLocale locale of senders that are not players and of unknown client locales
+     * @return the renderer
+     */
+    public static MessageRenderer load(Path directory, String pluginName, String defaultLocale) {
+        Objects.requireNonNull(directory, "directory cannot be null");
+        Objects.requireNonNull(pluginName, "pluginName cannot be null");
+        Objects.requireNonNull(defaultLocale, "defaultLocale cannot be null");
+
+        YamlConfiguration builtIn = builtIn();
+        Map<String, Messages> locales = new HashMap<>();
+        locales.put(BUILT_IN_LOCALE, new Messages(builtIn, pluginName));
+
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    String locale = fileName.substring(0, fileName.length() - FILE_EXTENSION.length())
+                            .toLowerCase(Locale.ROOT);
+                    YamlConfiguration config = YamlConfiguration.loadConfiguration(file.toFile());
+                    config.setDefaults(builtIn);
+                    locales.put(locale, new Messages(config, pluginName));
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not read the message files, using the built-in messages.", e);
+            }
+        }
+        return new MessageRenderer(locales, defaultLocale.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Creates a renderer with the built-in messages only.
+     * @param pluginName plugin name shown in the prefix
+     * @return the renderer
+     */
+    public static MessageRenderer builtIn(String pluginName) {
+        Objects.requireNonNull(pluginName, "pluginName cannot be null");
+        Map<String, Messages> locales = new HashMap<>();
+        locales.put(BUILT_IN_LOCALE, new Messages(builtIn(), pluginName));
+        return new MessageRenderer(locales, BUILT_IN_LOCALE);
+    }
 
     // ============================================================
     // Public messages
     // ============================================================
 
     /**
-     * Message when deposit to owner fails.
+     * Message when a payment has been refunded because its sign was removed.
      */
-    public String cantDeposit() {
-        return this.error("Could not deposit to target player.");
+    public String refunded(CommandSender recipient, String amount) {
+        return this.render(recipient, Message.REFUNDED, amount);
     }
 
     /**
      * Message when a sign is successfully created.
      */
-    public String createdSuccessfully() {
-        return this.success("The PaySign has been successfully created.");
+    public String createdSuccessfully(CommandSender recipient) {
+        return this.render(recipient, Message.CREATED);
     }
 
     /**
      * Message when decimal prices are disabled.
      */
-    public String disabledDecimals() {
-        return this.error("Decimal prices are not allowed on this server.");
+    public String disabledDecimals(CommandSender recipient) {
+        return this.render(recipient, Message.DISABLED_DECIMALS);
     }
 
     /**
      * Message when player cannot create a sign.
      */
-    public String noPermissionToCreate() {
-        return this.error("You do not have permission to create this PaySign.");
+    public String noPermissionToCreate(CommandSender recipient) {
+        return this.render(recipient, Message.NO_PERMISSION_CREATE);
     }
 
     /**
      * Message when player cannot create a sign for another player.
      */
-    public String noPermissionToCreateOther() {
-        return this.error("You do not have permission to create this PaySign for other players.");
+    public String noPermissionToCreateOther(CommandSender recipient) {
+        return this.render(recipient, Message.NO_PERMISSION_CREATE_OTHER);
+    }
+
+    /**
+     * Message when the sender cannot use admin commands.
+     */
+    public String noPermissionToCommand(CommandSender recipient) {
+        return this.render(recipient, Message.NO_PERMISSION_COMMAND);
     }
 
     /**
      * Message when player cannot use a PaySign.
      */
-    public String noPermissionToUse() {
-        return this.error("You do not have permission to use this PaySign.");
+    public String noPermissionToUse(CommandSender recipient) {
+        return this.render(recipient, Message.NO_PERMISSION_USE);
     }
 
     /**
      * Notification message to owner when their sign is used.
      */
-    public String notification(String playerName, String formattedPrice) {
+    public String notification(CommandSender recipient, String playerName, String formattedPrice) {
         Objects.requireNonNull(playerName, "playerName cannot be null");
         Objects.requireNonNull(formattedPrice, "formattedPrice cannot be null");
-        return this.fine(playerName + " has paid " + formattedPrice + " using your PaySign.");
+        return this.render(recipient, Message.NOTIFICATION, playerName, formattedPrice);
+    }
+
+    /**
+     * Summary message to owner of the income of their signs in the last interval.
+     */
+    public String incomeSummary(CommandSender recipient, int payers, int payments, String formattedAmount,
+                                long intervalSeconds) {
+        Objects.requireNonNull(formattedAmount, "formattedAmount cannot be null");
+        Messages messages = this.messages(recipient);
+        String who = payers == 1
+                ? messages.render(Message.PLAYERS_ONE)
+                : messages.render(Message.PLAYERS_MANY, Integer.toString(payers));
+        String uses = payments == 1
+                ? messages.render(Message.USES_ONE)
+                : messages.render(Message.USES_MANY, Integer.toString(payments));
+        return messages.render(Message.INCOME_SUMMARY, who, formattedAmount, uses, Long.toString(intervalSeconds));
     }
 
     /**
      * Message to player after a successful payment.
      */
-    public String paid(String formattedPrice, String ownerName) {
+    public String paid(CommandSender recipient, String formattedPrice, String ownerName) {
         Objects.requireNonNull(formattedPrice, "formattedPrice cannot be null");
         Objects.requireNonNull(ownerName, "ownerName cannot be null");
-        return this.success(formattedPrice + " has been withdrawn from your account to use " + ownerName + "'s PaySign.");
+        return this.render(recipient, Message.PAID, formattedPrice, ownerName);
+    }
+
+    /**
+     * Message when the player already has a pending payment for the sign.
+     */
+    public String paymentPending(CommandSender recipient) {
+        return this.render(recipient, Message.PAYMENT_PENDING);
+    }
+
+    /**
+     * Message when the payment workers are saturated.
+     */
+    public String paymentBusy(CommandSender recipient) {
+        return this.render(recipient, Message.PAYMENT_BUSY);
+    }
+
+    /**
+     * Message when the payment could not be processed in time.
+     */
+    public String paymentTimedOut(CommandSender recipient) {
+        return this.render(recipient, Message.PAYMENT_TIMED_OUT);
+    }
+
+    /**
+     * Message after the configuration has been reloaded.
+     */
+    public String reloaded(CommandSender recipient, boolean restartRequired) {
+        return this.render(recipient, restartRequired ? Message.RELOADED_RESTART : Message.RELOADED);
+    }
+
+    /**
+     * Message when the configuration could not be reloaded.
+     */
+    public String reloadFailed(CommandSender recipient, String reason) {
+        Objects.requireNonNull(reason, "reason cannot be null");
+        return this.render(recipient, Message.RELOAD_FAILED, reason);
     }
 
     /**
      * Message when player cannot afford the sign.
      */
-    public String tooPoor() {
-        return this.error("You are too poor to use this PaySign.");
+    public String tooPoor(CommandSender recipient) {
+        return this.render(recipient, Message.TOO_POOR);
     }
 
-    // ============================================================
-    // Formatting helpers
-    // ============================================================
+    /**
+     * Lines of the metrics report, one per histogram followed by the counters.
+     */
+    public String[] metrics(CommandSender recipient, Metrics metrics) {
+        Objects.requireNonNull(metrics, "metrics cannot be null");
+        Messages messages = this.messages(recipient);
+        List<LatencyHistogram> histograms = metrics.histograms();
+        String[] lines = new String[histograms.size() + 2];
+        for (int i = 0; i < histograms.size(); i++) {
+            LatencyHistogram histogram = histograms.get(i);
+            lines[i] = messages.render(Message.INFO, histogram.getName() + ": " + histogram.snapshot());
+        }
+
+        StringBuilder payments = new StringBuilder("payments:");
+        for (Payment.Status status : Payment.Status.values()) {
+            payments.append(' ').append(status.name().toLowerCase(Locale.ROOT)).append('=').append(metrics.payments(status));
+        }
+        lines[histograms.size()] = messages.render(Message.INFO, payments.toString());
+        lines[histograms.size() + 1] = messages.render(Message.INFO, "rollbacks: " + metrics.rollbacks() +
+                                                       ", active triggers: " + metrics.activeTriggers() +
+                                                       ", queued triggers: " + metrics.queuedTriggers());
+        return lines;
+    }
 
     /**
-     * Formats an error message in red.
+     * Progress report of the background sign indexer.
      */
-    public String error(String text) {
-        return this.colored(text, ChatColor.RED);
+    public String indexerProgress(CommandSender recipient, SignIndexer indexer) {
+        Objects.requireNonNull(indexer, "indexer cannot be null");
+        String state = indexer.isPaused()
+                ? String.format(Locale.ROOT, "paused at %.1f TPS", indexer.tps())
+                : indexer.queuedChunks() > 0 ? "running" : "idle";
+        return this.render(recipient, Message.INFO, "indexer " + state + ": " + indexer.indexedChunks() +
+                           " chunks indexed, " + indexer.queuedChunks() + " queued, " +
+                           indexer.indexedSigns() + " PaySigns found");
     }
 
     /**
-     * Formats a success message in green.
+     * Usage of the admin command.
      */
-    private String success(String text) {
-        return this.colored(text, ChatColor.GREEN);
+    public String usage(CommandSender recipient, String label, Collection<String> subcommands) {
+        Objects.requireNonNull(label, "label cannot be null");
+        Objects.requireNonNull(subcommands, "subcommands cannot be null");
+        return this.render(recipient, Message.USAGE, label, String.join("|", subcommands));
     }
 
     /**
-     * Formats a fine/neutral message in gray.
+     * Formats an error message.
      */
-    private String fine(String text) {
-        return this.colored(text, ChatColor.GRAY);
+    public String error(CommandSender recipient, String text) {
+        Objects.requireNonNull(text, "text cannot be null");
+        return this.render(recipient, Message.ERROR, text);
+    }
+
+    // ============================================================
+    // Rendering
+    // ============================================================
+
+    /**
+     * Renders a message in the locale of the recipient.
+     * @param recipient receiver of the message
+     * @param message the message
+     * @param values values of the message's placeholders, in declaration order
+     * @return the rendered message
+     */
+    public String render(CommandSender recipient, Message message, String... values) {
+        Objects.requireNonNull(message, "message cannot be null");
+        return this.messages(recipient).render(message, values);
     }
 
     /**
-     * Colors a message and adds plugin-specific prefix.
+     * Gets the messages of the recipient's locale: the messages of the client locale,
+     * of its language, or of the default locale.
      */
-    private String colored(String text, ChatColor color) {
-        Objects.requireNonNull(color, "color cannot be null");
-        return this.prefixed(color.toString() + text);
+    private Messages messages(CommandSender recipient) {
+        Objects.requireNonNull(recipient, "recipient cannot be null");
+        if (!(recipient instanceof Player)) {
+            return this.defaultMessages;
+        }
+
+        String locale = ((Player) recipient).getLocale();
+        if (locale == null || locale.isEmpty()) {
+            return this.defaultMessages;
+        }
+        return this.resolved.computeIfAbsent(locale, this::resolve);
+    }
+
+    private Messages resolve(String clientLocale) {
+        String locale = clientLocale.toLowerCase(Locale.ROOT);
+        Messages messages = this.locales.get(locale);
+        if (messages == null && locale.indexOf('_') > 0) {
+            messages = this.locales.get(locale.substring(0, locale.indexOf('_')));
+        }
+        return messages != null ? messages : this.defaultMessages;
+    }
+
+    /**
+     * Reads the built-in messages from the plugin jar.
+     */
+    private static YamlConfiguration builtIn() {
+        InputStream in = MessageRenderer.class.getResourceAsStream(BUILT_IN_RESOURCE);
+        if (in == null) {
+            throw new IllegalStateException("Built-in messages " + BUILT_IN_RESOURCE + " are missing");
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return YamlConfiguration.loadConfiguration(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the built-in messages", e);
+        }
     }
 
     // ============================================================
-    // Abstract method
+    // Compiled messages of one locale
     // ============================================================
 
     /**
-     * Adds a prefix to all messages.
+     * Compiled templates of all messages of one locale, indexed by message.
      */
-    public abstract String prefixed(String text);
+    private static final class Messages {
+
+        private final MessageTemplate[] templates = new MessageTemplate[Message.values().length];
+
+        private Messages(ConfigurationSection config, String pluginName) {
+            String prefix = colored(MessageTemplate.compile(config.getString("prefix", ""), "plugin")
+                    .render(pluginName));
+            for (Message message : Message.values()) {
+                String text = config.getString(message.key);
+                if (text == null) {
+                    logger.warning("Message '" + message.key + "' is missing.");
+                    text = message.key;
+                }
+
+                MessageTemplate template = MessageTemplate.compile(colored(text), message.parameters);
+                this.templates[message.ordinal()] = message.prefixed ? template.prefixed(prefix) : template;
+            }
+        }
+
+        private String render(Message message, String... values) {
+            return this.templates[message.ordinal()].render(values);
+        }
+
+        private static String colored(String text) {
+            return ChatColor.translateAlternateColorCodes('&', text);
+        }
+    }
 }
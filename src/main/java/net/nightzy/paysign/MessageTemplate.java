@@ -0,0 +1,121 @@
+package net.nightzy.paysign;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Message text compiled once into literal parts and placeholder slots.
+ * Placeholders are written as {@code {name}}; braces that do not name a parameter are kept
+ * as text. Rendering appends the literals and the values into a single presized builder,
+ * and a template without placeholders is rendered once when it is compiled.
+ */
+public final class MessageTemplate {
+
+    // Literal text before each slot, followed by the text after the last slot
+    private final String[] literals;
+
+    // Parameter index of each slot
+    private final int[] slots;
+
+    // Total length of the literals
+    private final int length;
+
+    // Rendered text of a template without slots
+    private final String text;
+
+    private MessageTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.length = length;
+        this.text = slots.length == 0 ? literals[0] : null;
+    }
+
+    /**
+     * Compiles a template.
+     * @param text template text
+     * @param parameters parameter names, in the order their values are passed to {@link #render(String...)}
+     * @return the compiled template
+     */
+    public static MessageTemplate compile(String text, String... parameters) {
+        Objects.requireNonNull(text, "text cannot be null");
+        Objects.requireNonNull(parameters, "parameters cannot be null");
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int index = 0;
+        while (index < text.length()) {
+            int open = text.indexOf('{', index);
+            int close = open < 0 ? -1 : text.indexOf('}', open);
+            if (close < 0) {
+                break;
+            }
+
+            int parameter = Arrays.asList(parameters).indexOf(text.substring(open + 1, close));
+            if (parameter < 0) {
+                // Not a placeholder, keep the brace as text
+                literal.append(text, index, open + 1);
+                index = open + 1;
+                continue;
+            }
+
+            literal.append(text, index, open);
+            literals.add(literal.toString());
+            slots.add(parameter);
+            literal.setLength(0);
+            index = close + 1;
+        }
+        literal.append(text, index, text.length());
+        literals.add(literal.toString());
+
+        int[] parameterSlots = slots.stream().mapToInt(Integer::intValue).toArray();
+        return new MessageTemplate(literals.toArray(new String[0]), parameterSlots);
+    }
+
+    /**
+     * @return true if the template has no placeholders
+     */
+    public boolean isStatic() {
+        return this.text != null;
+    }
+
+    /**
+     * Renders the template.
+     * @param values parameter values, in the order of the compiled parameter names
+     * @return the rendered text
+     */
+    public String render(String... values) {
+        if (this.text != null) {
+            return this.text;
+        }
+
+        int length = this.length;
+        for (int slot : this.slots) {
+            length += values[slot].length();
+        }
+
+        StringBuilder out = new StringBuilder(length);
+        for (int i = 0; i < this.slots.length; i++) {
+            out.append(this.literals[i]).append(values[this.slots[i]]);
+        }
+        return out.append(this.literals[this.slots.length]).toString();
+    }
+
+    /**
+     * Creates a template with the given text in front.
+     * @param prefix text to prepend, without placeholders
+     * @return the prefixed template
+     */
+    public MessageTemplate prefixed(String prefix) {
+        Objects.requireNonNull(prefix, "prefix cannot be null");
+        String[] literals = this.literals.clone();
+        literals[0] = prefix + literals[0];
+        return new MessageTemplate(literals, this.slots);
+    }
+}
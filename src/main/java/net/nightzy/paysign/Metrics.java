@@ -0,0 +1,390 @@
+package net.nightzy.paysign;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms and counters of the PaySign hot paths.
+ * Recording never locks or allocates, so it is safe on the interact path and on
+ * payment workers. Exposed over JMX under the {@code net.nightzy.paysign} domain
+ * and through {@code /paysign metrics}.
+ */
+public class Metrics {
+
+    // Logger for JMX registration problems
+    static final Logger logger = Logger.getLogger(Metrics.class.getName());
+
+    // JMX domain of all PaySign MBeans
+    private static final String DOMAIN = "net.nightzy.paysign";
+
+    // ============================================================
+    // Histograms
+    // ============================================================
+
+    /** Parsing a sign into a PaySign */
+    public final LatencyHistogram parse = new LatencyHistogram("parse");
+
+    /** Economy balance check of the payer */
+    public final LatencyHistogram economyHas = new LatencyHistogram("economy_has");
+
+    /** Withdrawal from the payer */
+    public final LatencyHistogram economyWithdraw = new LatencyHistogram("economy_withdraw");
+
+    /** Deposit to the owner, or crediting the ledger when deposits are written behind */
+    public final LatencyHistogram economyDeposit = new LatencyHistogram("economy_deposit");
+
+    /** Activating a trigger */
+    public final LatencyHistogram triggerExecute = new LatencyHistogram("trigger_execute");
+
+    /** Resetting a trigger */
+    public final LatencyHistogram triggerFlush = new LatencyHistogram("trigger_flush");
+
+    /** Time a due trigger activation or reset waited for the tick budget */
+    public final LatencyHistogram triggerQueueDelay = new LatencyHistogram("trigger_queue_delay");
+
+    /** From the click until the redstone signal is on */
+    public final LatencyHistogram clickToPulse = new LatencyHistogram("click_to_pulse");
+
+    // ============================================================
+    // Counters
+    // ============================================================
+
+    private final Map<Payment.Status, LongAdder> payments = new EnumMap<>(Payment.Status.class);
+    private final LongAdder rollbacks = new LongAdder();
+    private final AtomicInteger activeTriggers = new AtomicInteger();
+    private final Map<String, Revenue> revenue = new ConcurrentHashMap<>();
+
+    // Backlog sampled by the server thread once per tick
+    private volatile int scheduledTriggers;
+    private volatile int queuedTriggers;
+    private volatile int pendingDepositAccounts;
+
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    public Metrics() {
+        for (Payment.Status status : Payment.Status.values()) {
+            this.payments.put(status, new LongAdder());
+        }
+    }
+
+    // ============================================================
+    // Recording
+    // ============================================================
+
+    /**
+     * Counts the outcome of a payment.
+     * @param status outcome of the payment
+     */
+    public void payment(Payment.Status status) {
+        this.payments.get(status).increment();
+    }
+
+    /**
+     * Adds the amount of a successful payment to the revenue of a world.
+     * @param worldName world the payment was made in
+     * @param amount amount paid
+     */
+    public void revenue(String worldName, Money amount) {
+        this.revenue.computeIfAbsent(worldName, world -> new Revenue(amount.getScale()))
+                .units.add(amount.getMinorUnits());
+    }
+
+    /**
+     * Counts a payment whose withdrawal was rolled back after a failed deposit.
+     */
+    public void rollback() {
+        this.rollbacks.increment();
+    }
+
+    /**
+     * Counts a trigger that has been activated.
+     */
+    public void triggerActivated() {
+        this.activeTriggers.incrementAndGet();
+    }
+
+    /**
+     * Counts a trigger that has been reset.
+     */
+    public void triggerReset() {
+        this.activeTriggers.decrementAndGet();
+    }
+
+    /**
+     * Samples the pending work. Server thread only.
+     * @param scheduledTriggers triggers waiting for activation or reset
+     * @param queuedTriggers due triggers carried over to the next tick
+     * @param pendingDepositAccounts owner accounts with revenue not deposited yet
+     */
+    public void backlog(int scheduledTriggers, int queuedTriggers, int pendingDepositAccounts) {
+        this.scheduledTriggers = scheduledTriggers;
+        this.queuedTriggers = queuedTriggers;
+        this.pendingDepositAccounts = pendingDepositAccounts;
+    }
+
+    // ============================================================
+    // Reading
+    // ============================================================
+
+    /**
+     * @return all latency histograms
+     */
+    public List<LatencyHistogram> histograms() {
+        return Collections.unmodifiableList(Arrays.asList(this.parse, this.economyHas, this.economyWithdraw,
+                this.economyDeposit, this.triggerExecute, this.triggerFlush, this.triggerQueueDelay, this.clickToPulse));
+    }
+
+    /**
+     * @param status payment outcome
+     * @return number of payments with the given outcome
+     */
+    public long payments(Payment.Status status) {
+        return this.payments.get(status).sum();
+    }
+
+    /**
+     * @return number of successful payments, including free ones
+     */
+    public long successfulPayments() {
+        return this.payments(Payment.Status.PAID) + this.payments(Payment.Status.FREE);
+    }
+
+    /**
+     * @return number of rolled back payments
+     */
+    public long rollbacks() {
+        return this.rollbacks.sum();
+    }
+
+    /**
+     * @return number of currently active triggers
+     */
+    public int activeTriggers() {
+        return this.activeTriggers.get();
+    }
+
+    /**
+     * @return revenue per world, sorted by world name
+     */
+    public Map<String, Money> revenue() {
+        Map<String, Money> revenue = new TreeMap<>();
+        this.revenue.forEach((world, sum) -> revenue.put(world, Money.ofMinor(sum.units.sum(), sum.scale)));
+        return revenue;
+    }
+
+    /**
+     * @return triggers waiting for activation or reset, as of the last tick
+     */
+    public int scheduledTriggers() {
+        return this.scheduledTriggers;
+    }
+
+    /**
+     * @return due triggers carried over to the next tick, as of the last tick
+     */
+    public int queuedTriggers() {
+        return this.queuedTriggers;
+    }
+
+    /**
+     * @return owner accounts with revenue not deposited yet, as of the last tick
+     */
+    public int pendingDepositAccounts() {
+        return this.pendingDepositAccounts;
+    }
+
+    // ============================================================
+    // JMX
+    // ============================================================
+
+    /**
+     * Registers the MBeans on the platform MBean server. Failures are logged.
+     */
+    public synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            this.register(server, new ObjectName(DOMAIN + ":type=Counters"), new Counters());
+            for (LatencyHistogram histogram : this.histograms()) {
+                this.register(server, new ObjectName(DOMAIN + ":type=Latency,name=" + histogram.getName()),
+                        new Latency(histogram));
+            }
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Could not register metrics MBeans.", e);
+        }
+    }
+
+    /**
+     * Removes the registered MBeans.
+     */
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : this.registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                logger.log(Level.FINE, "Could not unregister " + name, e);
+            }
+        }
+        this.registered.clear();
+    }
+
+    private void register(MBeanServer server, ObjectName name, Object mbean) throws JMException {
+        // A previous instance may not have been unregistered after a plugin reload
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(mbean, name);
+        this.registered.add(name);
+    }
+
+    /**
+     * Payment and trigger counters.
+     */
+    public interface CountersMXBean {
+
+        long getSuccessfulPayments();
+
+        long getFailedPayments();
+
+        Map<String, Long> getPaymentsByStatus();
+
+        long getRollbacks();
+
+        int getActiveTriggers();
+    }
+
+    /**
+     * Latency of a single operation, in microseconds.
+     */
+    public interface LatencyMXBean {
+
+        long getCount();
+
+        double getMeanMicros();
+
+        double getP50Micros();
+
+        double getP90Micros();
+
+        double getP99Micros();
+
+        double getP999Micros();
+
+        double getMaxMicros();
+    }
+
+    private final class Counters implements CountersMXBean {
+
+        @Override
+        public long getSuccessfulPayments() {
+            return Metrics.this.successfulPayments();
+        }
+
+        @Override
+        public long getFailedPayments() {
+            long failed = 0;
+            for (Payment.Status status : Payment.Status.values()) {
+                failed += Metrics.this.payments(status);
+            }
+            return failed - Metrics.this.successfulPayments();
+        }
+
+        @Override
+        public Map<String, Long> getPaymentsByStatus() {
+            Map<String, Long> payments = new TreeMap<>();
+            for (Payment.Status status : Payment.Status.values()) {
+                payments.put(status.name(), Metrics.this.payments(status));
+            }
+            return payments;
+        }
+
+        @Override
+        public long getRollbacks() {
+            return Metrics.this.rollbacks();
+        }
+
+        @Override
+        public int getActiveTriggers() {
+            return Metrics.this.activeTriggers();
+        }
+    }
+
+    private static final class Latency implements LatencyMXBean {
+
+        private static final double NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
+        private final LatencyHistogram histogram;
+
+        private Latency(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return this.histogram.snapshot().getCount();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return this.histogram.snapshot().getMean() / NANOS_PER_MICRO;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return this.histogram.snapshot().getPercentile(50) / NANOS_PER_MICRO;
+        }
+
+        @Override
+        public double getP90Micros() {
+            return this.histogram.snapshot().getPercentile(90) / NANOS_PER_MICRO;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return this.histogram.snapshot().getPercentile(99) / NANOS_PER_MICRO;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return this.histogram.snapshot().getPercentile(99.9) / NANOS_PER_MICRO;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return this.histogram.snapshot().getMax() / NANOS_PER_MICRO;
+        }
+    }
+
+    // ============================================================
+    // Revenue
+    // ============================================================
+
+    /**
+     * Revenue of one world in minor units.
+     */
+    private static final class Revenue {
+
+        private final int scale;
+        private final LongAdder units = new LongAdder();
+
+        private Revenue(int scale) {
+            this.scale = scale;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package net.nightzy.paysign;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * Exact amount of money, held as a whole number of minor units with a fixed number of decimal places.
+ * <p>
+ * Prices are parsed into this form once, and revenue is summed up in minor units, so amounts
+ * do not drift however many payments are aggregated. An amount is converted to a
+ * {@code double} only when it is passed to the economy provider. All amounts of a running
+ * plugin share the configured scale.
+ */
+public final class Money implements Comparable<Money> {
+
+    /** Decimal places used unless configured otherwise */
+    public static final int DEFAULT_SCALE = 2;
+
+    /** Most decimal places supported */
+    public static final int MAX_SCALE = 9;
+
+    // Minor units per whole unit, by scale
+    private static final long[] UNITS = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    private final long units;
+    private final int scale;
+
+    private Money(long units, int scale) {
+        this.units = units;
+        this.scale = scale;
+    }
+
+    // ============================================================
+    // Factories
+    // ============================================================
+
+    /**
+     * Creates an amount from minor units.
+     * @param units amount in minor units, e.g. cents
+     * @param scale decimal places of the amount
+     * @return the amount
+     */
+    public static Money ofMinor(long units, int scale) {
+        checkScale(scale);
+        return new Money(units, scale);
+    }
+
+    /**
+     * @return an amount of zero
+     */
+    public static Money zero(int scale) {
+        return ofMinor(0, scale);
+    }
+
+    /**
+     * Converts an amount given by the economy provider or the configuration,
+     * rounding half up to the given scale.
+     * @param amount the amount
+     * @param scale decimal places of the result
+     * @return the amount
+     */
+    public static Money fromDouble(double amount, int scale) {
+        checkScale(scale);
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Amount is not finite: " + amount);
+        }
+        return new Money(Math.round(amount * UNITS[scale]), scale);
+    }
+
+    /**
+     * Parses a plain decimal amount such as {@code 12}, {@code -3.5} or {@code .25}, ignoring
+     * surrounding whitespace. Trailing zeros beyond the scale are accepted, other digits are not.
+     * @param input the amount
+     * @param scale decimal places of the result
+     * @return the amount
+     * @throws NumberFormatException if the input is not a decimal amount, has more decimal places
+     * than the scale or is too large
+     */
+    public static Money parse(String input, int scale) {
+        Objects.requireNonNull(input, "input cannot be null");
+        checkScale(scale);
+        String text = input.trim();
+
+        int index = 0;
+        boolean negative = false;
+        if (!text.isEmpty() && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            index = 1;
+        }
+
+        long units = 0;
+        int decimals = -1; // -1 until the decimal point
+        boolean digits = false;
+        try {
+            for (; index < text.length(); index++) {
+                char c = text.charAt(index);
+                if (c == '.' && decimals < 0) {
+                    decimals = 0;
+                    continue;
+                }
+                if (c < '0' || c > '9') {
+                    throw new NumberFormatException("For input string: \"" + text + "\"");
+                }
+
+                digits = true;
+                if (decimals >= 0 && ++decimals > scale) {
+                    if (c != '0') {
+                        throw new NumberFormatException(text + " has more than " + scale + " decimal places");
+                    }
+                    continue;
+                }
+                units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+            }
+            if (!digits) {
+                throw new NumberFormatException("For input string: \"" + text + "\"");
+            }
+
+            units = Math.multiplyExact(units, UNITS[scale - Math.min(Math.max(decimals, 0), scale)]);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException(text + " is too large");
+        }
+        return new Money(negative ? -units : units, scale);
+    }
+
+    /**
+     * Parses an amount written by older versions, which accepted any Java floating point number,
+     * e.g. {@code 1.005} or {@code 2.5e2}. Rounds half up to the given scale.
+     * @param input the amount
+     * @param scale decimal places of the result
+     * @return the amount
+     * @throws NumberFormatException if the input is not a finite number or is too large
+     */
+    public static Money parseLegacy(String input, int scale) {
+        Objects.requireNonNull(input, "input cannot be null");
+        checkScale(scale);
+        String text = input.trim();
+
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            double value = Double.parseDouble(text); // e.g. "5d" or hexadecimal
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw new NumberFormatException("For input string: \"" + text + "\"");
+            }
+            amount = BigDecimal.valueOf(value);
+        }
+
+        try {
+            return new Money(amount.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact(), scale);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException(text + " is too large");
+        }
+    }
+
+    // ============================================================
+    // Getters
+    // ============================================================
+
+    /**
+     * @return the amount in minor units
+     */
+    public long getMinorUnits() {
+        return this.units;
+    }
+
+    /**
+     * @return decimal places of the amount
+     */
+    public int getScale() {
+        return this.scale;
+    }
+
+    public boolean isZero() {
+        return this.units == 0;
+    }
+
+    /**
+     * @return -1, 0 or 1 as the amount is negative, zero or positive
+     */
+    public int signum() {
+        return Long.signum(this.units);
+    }
+
+    /**
+     * @return true if the amount has no fractional part
+     */
+    public boolean isWhole() {
+        return this.units % UNITS[this.scale] == 0;
+    }
+
+    // ============================================================
+    // Arithmetic
+    // ============================================================
+
+    /**
+     * @return the amount without its fractional part, rounded toward zero
+     */
+    public Money truncate() {
+        return this.isWhole() ? this : new Money(this.units - this.units % UNITS[this.scale], this.scale);
+    }
+
+    /**
+     * Adds an amount of the same scale.
+     * @throws ArithmeticException if the sum overflows
+     */
+    public Money plus(Money other) {
+        Objects.requireNonNull(other, "other cannot be null");
+        if (other.scale != this.scale) {
+            throw new IllegalArgumentException("Cannot add amounts of scale " + this.scale + " and " + other.scale);
+        }
+        return new Money(Math.addExact(this.units, other.units), this.scale);
+    }
+
+    /**
+     * Converts the amount to another scale, rounding half up when decimal places are dropped.
+     * @param scale decimal places of the result
+     * @return the amount
+     * @throws ArithmeticException if the result overflows
+     */
+    public Money rescale(int scale) {
+        checkScale(scale);
+        if (scale == this.scale) {
+            return this;
+        }
+        if (scale > this.scale) {
+            return new Money(Math.multiplyExact(this.units, UNITS[scale - this.scale]), scale);
+        }
+
+        long divisor = UNITS[this.scale - scale];
+        long units = this.units / divisor;
+        long remainder = Math.abs(this.units % divisor);
+        if (remainder * 2 >= divisor) {
+            units += Long.signum(this.units);
+        }
+        return new Money(units, scale);
+    }
+
+    /**
+     * Converts the amount for the economy provider.
+     * @return the nearest double
+     */
+    public double toDouble() {
+        return this.units / (double) UNITS[this.scale];
+    }
+
+    // ============================================================
+    // Object methods
+    // ============================================================
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(this.units, other.rescale(this.scale).units);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        Money other = (Money) o;
+        return this.units == other.units && this.scale == other.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(this.units) + this.scale;
+    }
+
+    /**
+     * @return the amount as a plain decimal with all decimal places, e.g. {@code 12.50}
+     */
+    @Override
+    public String toString() {
+        if (this.scale == 0) {
+            return Long.toString(this.units);
+        }
+
+        long whole = Math.abs(this.units / UNITS[this.scale]);
+        long fraction = Math.abs(this.units % UNITS[this.scale]);
+        StringBuilder out = new StringBuilder(24);
+        if (this.units < 0) {
+            out.append('-');
+        }
+        out.append(whole).append('.');
+        String digits = Long.toString(fraction);
+        for (int i = digits.length(); i < this.scale; i++) {
+            out.append('0');
+        }
+        return out.append(digits).toString();
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    private static void checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Scale must be between 0 and " + MAX_SCALE + ": " + scale);
+        }
+    }
+}
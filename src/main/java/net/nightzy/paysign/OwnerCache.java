@@ -0,0 +1,167 @@
+package net.nightzy.paysign;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.block.Sign;
+import org.bukkit.entity.Player;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Resolves sign owners to UUIDs once and remembers them.
+ * <p>
+ * The UUID of an owner is stored in the persistent data of the sign together with the
+ * owner name it was resolved from, so it stays valid only as long as the sign names the
+ * same owner. Name lookups are kept in a bounded LRU cache.
+ * Safe to use from any thread, {@link #resolve(Server, String)} may block on an uncached
+ * offline owner and should be called off the server thread.
+ */
+public class OwnerCache {
+
+    // Logger for owner resolution messages
+    static final Logger logger = Logger.getLogger(OwnerCache.class.getName());
+
+    private final NamespacedKey ownerKey;
+    private final NamespacedKey ownerNameKey;
+
+    // Owner UUIDs by lower case owner name, in access order; guarded by itself
+    private final Map<String, UUID> owners;
+
+    /**
+     * Creates an owner cache.
+     * @param plugin plugin owning the persistent data keys
+     * @param capacity maximum number of cached owner names
+     */
+    public OwnerCache(Plugin plugin, int capacity) {
+        Objects.requireNonNull(plugin, "plugin cannot be null");
+        this.ownerKey = new NamespacedKey(plugin, "owner");
+        this.ownerNameKey = new NamespacedKey(plugin, "owner-name");
+        this.owners = new LinkedHashMap<String, UUID>(Math.min(capacity, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UUID> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    // ============================================================
+    // Lookup
+    // ============================================================
+
+    /**
+     * Gets the cached UUID of an owner.
+     * @param ownerName name of the owner
+     * @return the UUID, or empty if the owner has not been resolved yet
+     */
+    public Optional<UUID> cached(String ownerName) {
+        Objects.requireNonNull(ownerName, "ownerName cannot be null");
+        synchronized (this.owners) {
+            return Optional.ofNullable(this.owners.get(key(ownerName)));
+        }
+    }
+
+    /**
+     * Resolves an owner name to an account. Online owners are matched by exact name,
+     * offline owners are looked up by the server, which may block.
+     * @param server the running server
+     * @param ownerName name of the owner
+     * @return the owner's account
+     */
+    public OfflinePlayer resolve(Server server, String ownerName) {
+        Objects.requireNonNull(server, "server cannot be null");
+        Optional<UUID> cached = this.cached(ownerName);
+        if (cached.isPresent()) {
+            return server.getOfflinePlayer(cached.get());
+        }
+
+        Player online = server.getPlayerExact(ownerName);
+        @SuppressWarnings("deprecation")
+        OfflinePlayer owner = online != null ? online : server.getOfflinePlayer(ownerName);
+        logger.fine("Resolved PaySign owner " + ownerName + " to " + owner.getUniqueId());
+        this.put(ownerName, owner.getUniqueId());
+        return owner;
+    }
+
+    /**
+     * Remembers the UUID of an owner.
+     * @param ownerName name of the owner
+     * @param owner UUID of the owner
+     */
+    public void put(String ownerName, UUID owner) {
+        Objects.requireNonNull(ownerName, "ownerName cannot be null");
+        Objects.requireNonNull(owner, "owner cannot be null");
+        synchronized (this.owners) {
+            this.owners.put(key(ownerName), owner);
+        }
+    }
+
+    // ============================================================
+    // Persistent data
+    // ============================================================
+
+    /**
+     * Reads the owner UUID stored in a sign and caches it.
+     * @param sign the sign
+     * @param ownerName owner name on the sign
+     * @return the UUID, or empty if none is stored or it was stored for another owner
+     */
+    public Optional<UUID> read(Sign sign, String ownerName) {
+        Objects.requireNonNull(sign, "sign cannot be null");
+        Objects.requireNonNull(ownerName, "ownerName cannot be null");
+
+        PersistentDataContainer data = sign.getPersistentDataContainer();
+        String storedName = data.get(this.ownerNameKey, PersistentDataType.STRING);
+        String storedOwner = data.get(this.ownerKey, PersistentDataType.STRING);
+        if (storedName == null || storedOwner == null || !storedName.equalsIgnoreCase(ownerName)) {
+            return Optional.empty();
+        }
+
+        UUID owner;
+        try {
+            owner = UUID.fromString(storedOwner);
+        } catch (IllegalArgumentException e) {
+            logger.warning("Invalid PaySign owner " + storedOwner + " stored at " + sign.getLocation());
+            return Optional.empty();
+        }
+        this.put(ownerName, owner);
+        return Optional.of(owner);
+    }
+
+    /**
+     * Stores the owner UUID in a sign. The sign must be a current snapshot of the block,
+     * it is written back without physics.
+     * @param sign the sign
+     * @param ownerName owner name on the sign
+     * @param owner UUID of the owner
+     * @return true if the sign was written
+     */
+    public boolean write(Sign sign, String ownerName, UUID owner) {
+        Objects.requireNonNull(sign, "sign cannot be null");
+        Objects.requireNonNull(ownerName, "ownerName cannot be null");
+        Objects.requireNonNull(owner, "owner cannot be null");
+
+        PersistentDataContainer data = sign.getPersistentDataContainer();
+        data.set(this.ownerNameKey, PersistentDataType.STRING, ownerName);
+        data.set(this.ownerKey, PersistentDataType.STRING, owner.toString());
+        this.put(ownerName, owner);
+        return sign.update(false, false);
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    private static String key(String ownerName) {
+        return ownerName.toLowerCase(Locale.ROOT);
+    }
+}
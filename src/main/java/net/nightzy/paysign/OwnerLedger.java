@@ -0,0 +1,234 @@
+package net.nightzy.paysign;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.OfflinePlayer;
+
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+
+/**
+ * Write-behind ledger of owner revenue.
+ * Deposits to sign owners are accumulated per (owner UUID, world) account in memory and
+ * written to the economy in batches: periodically, on shutdown, or as soon as an
+ * account reaches the flush threshold. Balances are summed up exactly in minor units of the
+ * threshold's scale and converted for the economy only when they are deposited. Every credit
+ * and deposit is recorded in the {@link PaymentJournal}, so revenue that was not deposited
+ * survives a crash. Without write-behind, revenue that cannot be deposited right away is
+ * credited as well and deposited by the next flush.
+ * Safe to use from any thread.
+ */
+public class OwnerLedger {
+
+    // Logger for ledger messages
+    static final Logger logger = Logger.getLogger(OwnerLedger.class.getName());
+
+    private final PaymentJournal journal;
+    private final boolean writeBehind;
+    private final int scale;
+    private final long flushThreshold;
+
+    // Revenue that has not been deposited yet
+    private final Map<Account, Balance> balances = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an owner ledger.
+     * @param journal journal recording credits and deposits
+     * @param writeBehind whether deposits are aggregated, if false every deposit is written through
+     * @param flushThreshold balance at which an account is flushed immediately, its scale is used for all balances
+     */
+    public OwnerLedger(PaymentJournal journal, boolean writeBehind, Money flushThreshold) {
+        this.journal = Objects.requireNonNull(journal, "journal cannot be null");
+        Objects.requireNonNull(flushThreshold, "flushThreshold cannot be null");
+        this.writeBehind = writeBehind;
+        this.scale = flushThreshold.getScale();
+        this.flushThreshold = flushThreshold.getMinorUnits();
+    }
+
+    // ============================================================
+    // Deposits
+    // ============================================================
+
+    /**
+     * Deposits revenue to a sign owner.
+     * With write-behind enabled, or if the deposit fails, the amount is only credited to the ledger.
+     *
+     * @param economy the Vault economy provider
+     * @param transaction id of the journaled payment
+     * @param owner the sign owner
+     * @param ownerName name of the sign owner, as journaled
+     * @param worldName name of the world the revenue was made in
+     * @param amount amount to deposit
+     */
+    public void deposit(Economy economy, long transaction, OfflinePlayer owner, String ownerName, String worldName,
+                        Money amount) {
+        Objects.requireNonNull(economy, "economy cannot be null");
+        Objects.requireNonNull(owner, "owner cannot be null");
+        Objects.requireNonNull(ownerName, "ownerName cannot be null");
+        Objects.requireNonNull(worldName, "worldName cannot be null");
+        Objects.requireNonNull(amount, "amount cannot be null");
+
+        Account account = new Account(owner, ownerName, worldName);
+        if (!this.writeBehind) {
+            try {
+                EconomyResponse response = economy.depositPlayer(owner, worldName, amount.toDouble());
+                if (response.transactionSuccess()) {
+                    this.journal.completed(transaction);
+                    return;
+                }
+                logger.warning("Could not deposit " + amount + " to " + account + ": " + response.errorMessage +
+                               ", retrying on next flush.");
+            } catch (EconomyTimeoutException e) {
+                // Settled by the late response, credited unless it succeeded
+                logger.warning("Economy provider did not deposit " + amount + " to " + account + " in time.");
+                e.onResponse(response -> {
+                    if (response != null && response.transactionSuccess()) {
+                        this.journal.completed(transaction);
+                    } else {
+                        this.journal.credited(transaction);
+                        this.credit(account, amount.rescale(this.scale).getMinorUnits());
+                    }
+                });
+                return;
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Economy provider failed to deposit " + amount + " to " + account +
+                                          ", retrying on next flush.", e);
+            }
+        }
+
+        this.journal.credited(transaction);
+        long balance = this.credit(account, amount.rescale(this.scale).getMinorUnits());
+        if (this.writeBehind && balance >= this.flushThreshold) {
+            this.flush(economy, account);
+        }
+    }
+
+    /**
+     * Writes all pending revenue to the economy.
+     * Accounts whose deposit fails are kept for the next flush.
+     * @param economy the Vault economy provider
+     */
+    public void flushAll(Economy economy) {
+        Objects.requireNonNull(economy, "economy cannot be null");
+        for (Account account : this.balances.keySet()) {
+            this.flush(economy, account);
+        }
+    }
+
+    /**
+     * @return number of accounts with pending revenue
+     */
+    public int pendingAccounts() {
+        return this.balances.size();
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    /**
+     * Adds minor units to the balance of an account.
+     * @return the balance after the credit
+     */
+    private long credit(Account account, long units) {
+        return this.balances.compute(account, (key, balance) -> {
+            if (balance == null) {
+                balance = new Balance();
+            }
+            balance.units += units;
+            return balance;
+        }).units;
+    }
+
+    private void flush(Economy economy, Account account) {
+        Balance balance = this.balances.remove(account);
+        if (balance == null || balance.units <= 0) {
+            return;
+        }
+
+        Money amount = Money.ofMinor(balance.units, this.scale);
+        long settle = this.journal.settling(account.ownerId, account.ownerName, account.worldName, amount);
+        EconomyResponse response;
+        try {
+            response = economy.depositPlayer(account.owner, account.worldName, amount.toDouble());
+        } catch (EconomyTimeoutException e) {
+            logger.warning("Economy provider did not deposit " + amount + " to " + account + " in time.");
+            e.onResponse(late -> {
+                if (late != null && late.transactionSuccess()) {
+                    this.journal.settled(settle);
+                } else {
+                    this.journal.settleFailed(settle);
+                    this.credit(account, amount.getMinorUnits());
+                }
+            });
+            return;
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Economy provider failed to deposit " + amount + " to " + account, e);
+            this.journal.settleFailed(settle);
+            this.credit(account, amount.getMinorUnits());
+            return;
+        }
+
+        if (!response.transactionSuccess()) {
+            logger.warning("Could not deposit " + amount + " to " + account + ": " + response.errorMessage);
+            this.journal.settleFailed(settle);
+            this.credit(account, amount.getMinorUnits()); // retry on next flush
+            return;
+        }
+        this.journal.settled(settle);
+    }
+
+    // ============================================================
+    // Account key and balance
+    // ============================================================
+
+    /**
+     * Undeposited revenue of an account in minor units.
+     * Only changed inside the atomic updates of the balance map.
+     */
+    private static final class Balance {
+
+        private volatile long units;
+    }
+
+    /**
+     * Economy account of a sign owner in a world, identified by the owner's UUID.
+     */
+    private static final class Account {
+
+        private final OfflinePlayer owner;
+        private final UUID ownerId;
+        private final String ownerName;
+        private final String worldName;
+
+        private Account(OfflinePlayer owner, String ownerName, String worldName) {
+            this.owner = owner;
+            this.ownerId = owner.getUniqueId();
+            this.ownerName = ownerName;
+            this.worldName = worldName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Account)) return false;
+            Account other = (Account) o;
+            return this.ownerId.equals(other.ownerId) && this.worldName.equals(other.worldName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.ownerId.hashCode() + this.worldName.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.ownerName + " in " + this.worldName;
+        }
+    }
+}
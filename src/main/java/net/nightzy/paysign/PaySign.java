@@ -3,10 +3,13 @@ package net.nightzy.paysign;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.Server;
 import org.bukkit.Tag;
 import org.bukkit.block.Block;
@@ -40,17 +43,23 @@ public class PaySign {
 
     private final Sign sign;           // Sign block instance
     private final String playerName;   // Owner of the sign
-    private final double price;        // Price to use the sign
+    private final UUID ownerId;        // Resolved owner, null until resolved
+    private final Money price;         // Price to use the sign
     private final int delay;           // Optional delay before reset (ticks)
 
     // ============================================================
     // Constructor
     // ============================================================
 
-    public PaySign(Sign sign, String playerName, double price, int delay) {
+    public PaySign(Sign sign, String playerName, Money price, int delay) {
+        this(sign, playerName, null, price, delay);
+    }
+
+    public PaySign(Sign sign, String playerName, UUID ownerId, Money price, int delay) {
         this.sign = Objects.requireNonNull(sign, "sign cannot be null");
         this.playerName = Objects.requireNonNull(playerName, "playerName cannot be null");
-        this.price = price;
+        this.ownerId = ownerId;
+        this.price = Objects.requireNonNull(price, "price cannot be null");
         this.delay = delay;
     }
 
@@ -66,23 +75,48 @@ public class PaySign {
         return this.playerName;
     }
 
+    /**
+     * Returns the UUID of the owner, if it has been resolved.
+     */
+    public Optional<UUID> getOwnerId() {
+        return Optional.ofNullable(this.ownerId);
+    }
+
+    /**
+     * Returns a copy of this sign with the resolved owner UUID.
+     */
+    public PaySign withOwnerId(UUID ownerId) {
+        Objects.requireNonNull(ownerId, "ownerId cannot be null");
+        return new PaySign(this.sign, this.playerName, ownerId, this.price, this.delay);
+    }
+
+    /**
+     * Returns a copy of this sign bound to another snapshot of the same sign block.
+     */
+    public PaySign withSign(Sign sign) {
+        Objects.requireNonNull(sign, "sign cannot be null");
+        return new PaySign(sign, this.playerName, this.ownerId, this.price, this.delay);
+    }
+
     /**
      * Returns the owner of this sign if they are online.
      */
     public Optional<Player> getOwner(Server server) {
         Objects.requireNonNull(server, "server cannot be null");
-        return Optional.ofNullable(server.getPlayer(this.playerName));
+        return Optional.ofNullable(this.ownerId != null
+                ? server.getPlayer(this.ownerId)
+                : server.getPlayerExact(this.playerName));
     }
 
-    public double getPrice() {
+    public Money getPrice() {
         return this.price;
     }
 
     /**
      * Returns the price depending on whether decimals are allowed.
      */
-    public double getPrice(boolean allowDecimals) {
-        return allowDecimals ? this.price : (int) this.price;
+    public Money getPrice(boolean allowDecimals) {
+        return allowDecimals ? this.price : this.price.truncate();
     }
 
     /**
@@ -97,65 +131,230 @@ public class PaySign {
     // ============================================================
 
     /**
-     * Handles payment for using the PaySign.
+     * Handles payment for using the PaySign: charges the payer and delivers the price to the owner.
+     * Only performs economy calls, so it is safe to call off the server thread.
      *
-     * @param player the player who pays
-     * @param messageRenderer message helper for localized text
+     * @param payer session of the player who pays
+     * @param owner the resolved owner of this sign
      * @param economy the Vault economy provider
+     * @param ledger ledger receiving the owner revenue
+     * @param journal journal recording every economy step
      * @param allowDecimals whether decimals in price are allowed
-     * @return true if payment was successful, false otherwise
+     * @param metrics metrics receiving the economy latencies
+     * @return outcome of the payment
      */
-    public boolean pay(Player player, MessageRenderer messageRenderer, Economy economy, boolean allowDecimals) {
-        Objects.requireNonNull(player, "player cannot be null");
-        Objects.requireNonNull(messageRenderer, "messageRenderer cannot be null");
+    public Payment pay(PlayerSession payer, OfflinePlayer owner, Economy economy, OwnerLedger ledger,
+                       PaymentJournal journal, boolean allowDecimals, Metrics metrics) {
+        Payment payment = this.charge(payer, owner, economy, journal, allowDecimals, metrics);
+        if (payment.getStatus() == Payment.Status.PAID) {
+            this.deliver(payer, owner, payment, economy, ledger, metrics);
+        }
+        return payment;
+    }
+
+    /**
+     * Charges the payer for using the PaySign. A paid payment stays open in the journal until
+     * it is delivered with {@link #deliver} or refunded with {@link #refund}.
+     * Only performs economy calls, so it is safe to call off the server thread.
+     *
+     * @param payer session of the player who pays
+     * @param owner the resolved owner of this sign
+     * @param economy the Vault economy provider
+     * @param journal journal recording every economy step
+     * @param allowDecimals whether decimals in price are allowed
+     * @param metrics metrics receiving the economy latencies
+     * @return outcome of the charge
+     * @throws EconomyTimeoutException if an economy call misses its deadline; nothing has been charged
+     */
+    public Payment charge(PlayerSession payer, OfflinePlayer owner, Economy economy, PaymentJournal journal,
+                          boolean allowDecimals, Metrics metrics) {
+        Objects.requireNonNull(payer, "payer cannot be null");
+        Objects.requireNonNull(owner, "owner cannot be null");
         Objects.requireNonNull(economy, "economy cannot be null");
+        Objects.requireNonNull(journal, "journal cannot be null");
+        Objects.requireNonNull(metrics, "metrics cannot be null");
 
-        String worldName = player.getWorld().getName();
-        double price = this.getPrice(allowDecimals);
+        Money price = this.getPrice(allowDecimals);
 
         // Free sign
-        if (Double.compare(price, 0) == 0) {
+        if (price.isZero()) {
             logger.finer("The sign is free of charge.");
-            return true;
+            return Payment.free();
         }
 
+        // Vault takes doubles, the price is converted once for all economy calls
+        double amount = price.toDouble();
+        OfflinePlayer account = payer.getAccount();
+        String worldName = payer.getWorldName();
+
         // Check if player can afford
-        if (!economy.has(player, worldName, price)) {
+        long start = System.nanoTime();
+        boolean affordable = economy.has(account, worldName, amount);
+        metrics.economyHas.recordSince(start);
+        if (!affordable) {
             logger.fine("The player is too poor to use this sign.");
-            player.sendMessage(messageRenderer.tooPoor());
-            return false;
+            return Payment.tooPoor();
         }
 
         // Withdraw from player
-        EconomyResponse withdraw = economy.withdrawPlayer(player, worldName, price);
+        long transaction = journal.begin(payer.getUniqueId(), owner.getUniqueId(), this.playerName, worldName, price);
+        start = System.nanoTime();
+        EconomyResponse withdraw;
+        try {
+            withdraw = economy.withdrawPlayer(account, worldName, amount);
+        } catch (EconomyTimeoutException e) {
+            // The payment fails now, a late withdrawal is refunded once it is known
+            e.onResponse(response -> {
+                if (response == null) {
+                    return; // unknown outcome, left open for manual verification on next start
+                }
+                if (!response.transactionSuccess()) {
+                    journal.aborted(transaction);
+                    return;
+                }
+                journal.withdrawn(transaction);
+                logger.warning("Refunding " + price + " withdrawn from " + account.getName() + " after the deadline.");
+                this.refund(payer, Payment.paid(transaction, price, price.toString()), economy, journal, metrics);
+            });
+            throw e;
+        } finally {
+            metrics.economyWithdraw.recordSince(start);
+        }
         if (!withdraw.transactionSuccess()) {
             logger.fine("Could not withdraw player balance.");
-            player.sendMessage(messageRenderer.error(withdraw.errorMessage));
-            return false;
+            journal.aborted(transaction);
+            return Payment.withdrawFailed(withdraw.errorMessage);
         }
+        journal.withdrawn(transaction);
+
+        logger.finer("Payer has been charged.");
+        String formatted;
+        try {
+            formatted = economy.format(amount);
+        } catch (EconomyTimeoutException e) {
+            formatted = price.toString(); // the payer has been charged, do not fail on the display text
+        }
+        return Payment.paid(transaction, price, formatted);
+    }
+
+    /**
+     * Delivers the price of a paid payment to the owner, possibly deferred by the ledger.
+     * Revenue that cannot be deposited is kept in the ledger and deposited later.
+     * Only performs economy calls, so it is safe to call off the server thread.
+     *
+     * @param payer session of the player who paid
+     * @param owner the resolved owner of this sign
+     * @param payment the paid payment
+     * @param economy the Vault economy provider
+     * @param ledger ledger receiving the owner revenue
+     * @param metrics metrics receiving the economy latencies
+     */
+    public void deliver(PlayerSession payer, OfflinePlayer owner, Payment payment, Economy economy,
+                        OwnerLedger ledger, Metrics metrics) {
+        Objects.requireNonNull(payer, "payer cannot be null");
+        Objects.requireNonNull(owner, "owner cannot be null");
+        Objects.requireNonNull(payment, "payment cannot be null");
+        Objects.requireNonNull(economy, "economy cannot be null");
+        Objects.requireNonNull(ledger, "ledger cannot be null");
+        Objects.requireNonNull(metrics, "metrics cannot be null");
+
+        long start = System.nanoTime();
+        try {
+            ledger.deposit(economy, payment.getTransaction(), owner, this.playerName, payer.getWorldName(),
+                    payment.getAmount());
+        } finally {
+            metrics.economyDeposit.recordSince(start);
+        }
+        logger.finer("Payment has been made.");
+    }
+
+    /**
+     * Refunds a paid payment that could not be used. A failed refund stays open in the journal
+     * and is retried on next start.
+     * Only performs economy calls, so it is safe to call off the server thread.
+     *
+     * @param payer session of the player who paid
+     * @param payment the paid payment
+     * @param economy the Vault economy provider
+     * @param journal journal recording every economy step
+     * @param metrics metrics counting the rollback
+     * @return the refunded payment
+     */
+    public Payment refund(PlayerSession payer, Payment payment, Economy economy, PaymentJournal journal,
+                          Metrics metrics) {
+        Objects.requireNonNull(payer, "payer cannot be null");
+        Objects.requireNonNull(payment, "payment cannot be null");
+        Objects.requireNonNull(economy, "economy cannot be null");
+        Objects.requireNonNull(journal, "journal cannot be null");
+        Objects.requireNonNull(metrics, "metrics cannot be null");
+
+        OfflinePlayer account = payer.getAccount();
+        try {
+            if (economy.depositPlayer(account, payer.getWorldName(), payment.getAmount().toDouble())
+                    .transactionSuccess()) {
+                journal.aborted(payment.getTransaction());
+                metrics.rollback();
+                return Payment.refunded(payment.getAmount(), payment.getFormattedAmount());
+            }
+        } catch (EconomyTimeoutException e) {
+            logger.warning("Economy provider did not refund " + account.getName() + " in time.");
+            e.onResponse(response -> {
+                if (response != null && response.transactionSuccess()) {
+                    journal.aborted(payment.getTransaction());
+                    metrics.rollback();
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Economy provider failed to refund " + account.getName(), e);
+        }
+        logger.severe("Could not refund " + account.getName() + ", the refund is retried on next start.");
+        return Payment.error("The refund of " + payment.getFormattedAmount() + " failed and is retried later.");
+    }
 
-        // Deposit to owner
-        EconomyResponse deposit = economy.depositPlayer(this.playerName, worldName, price);
-        if (!deposit.transactionSuccess()) {
-            logger.warning("Could not deposit " + this.playerName +
-                           " for PaySign at " + this.sign.getLocation());
-            economy.depositPlayer(player, worldName, price); // rollback
-            player.sendMessage(messageRenderer.cantDeposit());
-            return false;
+    /**
+     * Informs the payer and the owner about the outcome of a payment.
+     * Must be called from the server thread.
+     *
+     * @param player the player who paid
+     * @param payment outcome of the payment
+     * @param messageRenderer message helper for localized text
+     * @param incomeNotifier notifies the owner now or in the next income summary
+     */
+    public void notify(Player player, Payment payment, MessageRenderer messageRenderer, IncomeNotifier incomeNotifier) {
+        Objects.requireNonNull(player, "player cannot be null");
+        Objects.requireNonNull(payment, "payment cannot be null");
+        Objects.requireNonNull(messageRenderer, "messageRenderer cannot be null");
+        Objects.requireNonNull(incomeNotifier, "incomeNotifier cannot be null");
+
+        switch (payment.getStatus()) {
+            case FREE:
+                return;
+            case PAID:
+                break;
+            case TOO_POOR:
+                player.sendMessage(messageRenderer.tooPoor(player));
+                return;
+            case REFUNDED:
+                player.sendMessage(messageRenderer.refunded(player, payment.getFormattedAmount()));
+                return;
+            case REJECTED:
+                player.sendMessage(messageRenderer.paymentBusy(player));
+                return;
+            case TIMED_OUT:
+                player.sendMessage(messageRenderer.paymentTimedOut(player));
+                return;
+            default:
+                player.sendMessage(messageRenderer.error(player, payment.getErrorMessage()));
+                return;
         }
 
         // Notify payer
-        String formattedPrice = economy.format(withdraw.amount);
-        player.sendMessage(messageRenderer.paid(formattedPrice, this.playerName));
-        logger.info(player.getName() + " has paid " + formattedPrice +
-                    " for using " + this.playerName + "'s mechanism.");
+        if (player.isOnline()) {
+            player.sendMessage(messageRenderer.paid(player, payment.getFormattedAmount(), this.playerName));
+        }
 
         // Notify owner (if online)
-        this.getOwner(player.getServer()).ifPresent(owner -> {
-            owner.sendMessage(messageRenderer.notification(player.getName(), formattedPrice));
-        });
-
-        return true;
+        incomeNotifier.paid(this, player, payment);
     }
 
     // ============================================================
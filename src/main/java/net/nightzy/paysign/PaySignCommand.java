@@ -0,0 +1,97 @@
+package net.nightzy.paysign;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+/**
+ * Executor of the {@code /paysign} admin command.
+ * Dispatches {@code /paysign <subcommand> [args...]} to the registered subcommands.
+ */
+public class PaySignCommand implements TabExecutor {
+
+    // Permission required for all subcommands
+    static final String PERMISSION_ADMIN = "nightzypaysign.admin";
+
+    /**
+     * A single {@code /paysign} subcommand.
+     */
+    @FunctionalInterface
+    public interface Subcommand {
+
+        /**
+         * Executes the subcommand.
+         * @param sender sender of the command
+         * @param args arguments following the subcommand name
+         */
+        void execute(CommandSender sender, String[] args);
+    }
+
+    private final MessageRenderer messageRenderer;
+
+    // Registered subcommands by lower case name, sorted for usage and completion
+    private final Map<String, Subcommand> subcommands = new TreeMap<>();
+
+    public PaySignCommand(MessageRenderer messageRenderer) {
+        this.messageRenderer = Objects.requireNonNull(messageRenderer, "messageRenderer cannot be null");
+    }
+
+    /**
+     * Registers a subcommand.
+     * @param name name of the subcommand
+     * @param subcommand executes the subcommand
+     * @return this command
+     */
+    public PaySignCommand register(String name, Subcommand subcommand) {
+        Objects.requireNonNull(name, "name cannot be null");
+        Objects.requireNonNull(subcommand, "subcommand cannot be null");
+        this.subcommands.put(name.toLowerCase(Locale.ROOT), subcommand);
+        return this;
+    }
+
+    // ============================================================
+    // Command handling
+    // ============================================================
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (!sender.hasPermission(PERMISSION_ADMIN)) {
+            sender.sendMessage(this.messageRenderer.noPermissionToCommand(sender));
+            return true;
+        }
+
+        Subcommand subcommand = args.length > 0 ? this.subcommands.get(args[0].toLowerCase(Locale.ROOT)) : null;
+        if (subcommand == null) {
+            sender.sendMessage(this.messageRenderer.usage(sender, label, this.subcommands.keySet()));
+            return true;
+        }
+
+        subcommand.execute(sender, Arrays.copyOfRange(args, 1, args.length));
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length != 1 || !sender.hasPermission(PERMISSION_ADMIN)) {
+            return Collections.emptyList();
+        }
+
+        String prefix = args[0].toLowerCase(Locale.ROOT);
+        List<String> completions = new ArrayList<>();
+        for (String name : this.subcommands.keySet()) {
+            if (name.startsWith(prefix)) {
+                completions.add(name);
+            }
+        }
+        return completions;
+    }
+}
@@ -1,30 +1,46 @@
 package net.nightzy.paysign;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.bukkit.ChatColor;
 import org.bukkit.Server;
 import org.bukkit.Tag;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Sign;
-import org.bukkit.block.data.type.Switch;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
 import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.plugin.java.JavaPluginLoader;
 
 import net.milkbowl.vault.economy.Economy;
 
@@ -42,13 +58,66 @@ public final class PaySignPlugin extends JavaPlugin implements Listener {
     private static final String PERMISSION_CREATE_OTHER = PERMISSION_CREATE + ".other";
     private static final String PERMISSION_USE = "nightzypaysign.use";
 
-    // Keeps track of currently active triggers (fake button presses)
-    private final Deque<Trigger> activeTriggers = new ArrayDeque<>(512);
+    // Ticks between retries of owner deposits that failed, if deposits are not collected
+    private static final long DEPOSIT_RETRY_INTERVAL = 200;
 
-    private Configuration configuration;
+    // Parses clicked signs on a sign cache miss
+    private final Function<Sign, Optional<PaySign>> paySignLoader = this::loadPaySign;
+
+    // Latency histograms and counters, kept across enable cycles
+    private final Metrics metrics = new Metrics();
+
+    // Due trigger activations and resets, run within the budget of each tick
+    private final TickBudgetExecutor<Trigger> triggerExecutor =
+            new TickBudgetExecutor<>(this::onTriggerExpired, this.metrics.triggerQueueDelay);
+
+    // Pending trigger activations and resets (fake button presses), bucketed by expiry tick
+    private final TimingWheel<Trigger> triggerWheel = new TimingWheel<>(this.triggerExecutor::submit);
+
+    // Triggers scheduled on their region's thread, on region threaded servers only
+    private final Set<Trigger> regionTriggers = ConcurrentHashMap.newKeySet();
+
+    // Signs that received a physics update, checked for being broken on the next tick
+    private final Set<Block> updatedSigns = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger scheduledRegionTriggers = new AtomicInteger();
+
+    // Ticks driven so far, read by the click handlers of every region
+    private volatile long currentTick;
+
+    // Current configuration snapshot, replaced as a whole on reload
+    private volatile Configuration configuration;
+    private ProtectionIndex protectionIndex;
+    private PulseEngine pulseEngine;
+    private SignRegistry signRegistry;
+    private SignIndexer signIndexer;
+    private BulkEditor bulkEditor;
+    private SignCache signCache;
+    private ClickDebounce clickDebounce;
+    private PlayerSessions playerSessions;
     private MessageRenderer messageRenderer;
     private SignDataParser signDataParser;
-    private Economy economy;
+    private OwnerCache ownerCache;
+    private IncomeNotifier incomeNotifier;
+    private PaymentPipeline paymentPipeline;
+    private TaskScheduler taskScheduler;
+    private PaymentJournal paymentJournal;
+    private TriggerJournal triggerJournal;
+    private OwnerLedger ownerLedger;
+    private PrometheusExporter exporter;
+    private AuditLog auditLog;
+    private EconomyDeadline economyDeadline;
+    private volatile Economy economy;
+
+    public PaySignPlugin() {
+        super();
+    }
+
+    /**
+     * Creates the plugin outside of the server's plugin loader, e.g. in the load simulator.
+     */
+    public PaySignPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
 
     // ============================================================
     // Plugin lifecycle
@@ -60,23 +129,98 @@ public final class PaySignPlugin extends JavaPlugin implements Listener {
 
         Server server = getServer();
         PluginManager pluginManager = server.getPluginManager();
-        BukkitScheduler scheduler = server.getScheduler();
+        this.taskScheduler = TaskScheduler.create(this);
 
         // Load config and helpers
-        this.configuration = new Configuration(this::getConfig);
-        this.messageRenderer = new MessageRenderer() {
-            @Override
-            public String prefixed(String text) {
-                return ChatColor.GOLD.toString() + ChatColor.ITALIC + "[" + getName() + "] " + ChatColor.RESET + text;
-            }
-        };
-        this.signDataParser = new SignDataParser();
+        this.configuration = Configuration.load(this.getConfig());
+        this.messageRenderer = this.loadMessages();
+        this.signDataParser = new SignDataParser(this.configuration.moneyScale());
+        this.ownerCache = new OwnerCache(this, this.configuration.ownerCacheSize());
+        this.incomeNotifier = new IncomeNotifier(this.messageRenderer, this.configuration.incomeSummaryInterval());
+        this.protectionIndex = new ProtectionIndex();
+        this.pulseEngine = this.createPulseEngine(server);
+        this.signCache = new SignCache();
+        this.clickDebounce = new ClickDebounce();
+        this.playerSessions = new PlayerSessions(PERMISSION_USE, () -> this.configuration);
+        this.signRegistry = new SignRegistry(this.getDataFolder().toPath().resolve("registry"));
+        this.signIndexer = new SignIndexer(this.getDataFolder().toPath().resolve("registry"), server,
+                this.taskScheduler, this.signRegistry, this.signDataParser, this.ownerCache, this.signCache);
+        this.paymentPipeline = new PaymentPipeline(this, this.taskScheduler, this.ownerCache,
+                this.configuration.paymentThreads(),
+                this.configuration.paymentQueueSize(),
+                this.configuration.paymentTimeout(),
+                this.metrics);
+
+        this.economyDeadline = new EconomyDeadline(this.getName(), this.configuration.paymentTimeout());
+        this.paymentJournal = this.openJournal();
+        this.triggerJournal = this.openTriggerJournal(server);
+        this.auditLog = this.openAuditLog();
+
+        long depositFlushInterval = this.configuration.depositFlushInterval();
+        this.ownerLedger = new OwnerLedger(this.paymentJournal, depositFlushInterval > 0,
+                this.configuration.depositFlushThreshold());
 
         // Register event listeners
         pluginManager.registerEvents(this, this);
+        pluginManager.registerEvents(this.protectionIndex, this);
+        pluginManager.registerEvents(this.signRegistry, this);
+        pluginManager.registerEvents(this.signIndexer, this);
+        pluginManager.registerEvents(this.signCache, this);
+        pluginManager.registerEvents(this.clickDebounce, this);
+        pluginManager.registerEvents(this.playerSessions, this);
+        pluginManager.registerEvents(this.triggerJournal, this);
+        server.getWorlds().forEach(this.signRegistry::loadChunks);
+        server.getWorlds().forEach(this.signIndexer::queueLoaded);
+        this.triggerJournal.restoreLoaded(server.getWorlds(), this.taskScheduler);
+        server.getOnlinePlayers().forEach(this.playerSessions::open);
+
+        this.bulkEditor = new BulkEditor(this.getDataFolder().toPath().resolve("bulk"), server, this.taskScheduler,
+                this.signRegistry, this.signDataParser, this::rewriteSign, this.messageRenderer,
+                () -> this.configuration);
+
+        // Register the admin command
+        PaySignCommand command = new PaySignCommand(this.messageRenderer)
+                .register("reload", this::reloadConfiguration)
+                .register("metrics", (sender, args) ->
+                        sender.sendMessage(this.messageRenderer.metrics(sender, this.metrics)))
+                .register("index", (sender, args) ->
+                        sender.sendMessage(this.messageRenderer.indexerProgress(sender, this.signIndexer)))
+                .register("bulk", this.bulkEditor::execute);
+        PluginCommand pluginCommand = Objects.requireNonNull(this.getCommand("paysign"), "paysign command not defined");
+        pluginCommand.setExecutor(command);
+        pluginCommand.setTabCompleter(command);
+
+        // Expose metrics over JMX and optionally to Prometheus
+        this.metrics.registerMBeans();
+        if (this.configuration.exporterEnabled()) {
+            try {
+                this.exporter = PrometheusExporter.start(this.metrics,
+                        this.configuration.exporterAddress(), this.configuration.exporterPort());
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not start the metrics exporter.", e);
+            }
+        }
+
+        // Drive the trigger wheel with a single repeating task
+        this.taskScheduler.runGlobalTimer(this::tick, 1L, 1L);
+
+        // Deposit collected or failed owner revenue periodically (off the main thread)
+        long flushInterval = depositFlushInterval > 0 ? depositFlushInterval : DEPOSIT_RETRY_INTERVAL;
+        this.taskScheduler.runAsyncTimer(() -> {
+            Economy economy = this.economy;
+            if (economy != null) {
+                this.ownerLedger.flushAll(economy);
+            }
+        }, flushInterval, flushInterval);
+
+        // Send owner income summaries with a single repeating task
+        if (this.incomeNotifier.isBatched()) {
+            long interval = this.configuration.incomeSummaryInterval() * 20; // seconds to ticks
+            this.taskScheduler.runGlobalTimer(this::flushIncome, interval, interval);
+        }
 
         // Hook into Vault Economy (in the next tick to avoid init issues)
-        scheduler.runTask(this, () -> {
+        this.taskScheduler.runGlobal(() -> {
             logger.fine("Resolving Economy service provider...");
             RegisteredServiceProvider<Economy> economyProvider =
                     server.getServicesManager().getRegistration(Economy.class);
@@ -86,6 +230,10 @@ public final class PaySignPlugin extends JavaPlugin implements Listener {
                 Economy provider = economyProvider.getProvider();
 
                 logger.info("Hooked into economy plugin " + pluginName + ": " + provider.getClass().getName());
+                provider = this.economyDeadline.wrap(provider);
+
+                // Complete payments interrupted by a crash before accepting new ones
+                this.paymentJournal.replay(server, provider);
                 this.economy = provider;
             } else {
                 logger.severe("No economy provider found. Please install an economy plugin with Vault support.");
@@ -96,9 +244,40 @@ public final class PaySignPlugin extends JavaPlugin implements Listener {
 
     @Override
     public void onDisable() {
-        // Restore all active triggers
-        this.activeTriggers.forEach(Trigger::flush);
-        this.activeTriggers.clear();
+        // Let in-flight payments finish and deposit collected owner revenue
+        this.paymentPipeline.shutdown();
+        if (this.economy != null) {
+            this.ownerLedger.flushAll(this.economy);
+            if (this.ownerLedger.pendingAccounts() > 0) {
+                logger.severe("Could not deposit owner revenue of " + this.ownerLedger.pendingAccounts() + " accounts.");
+            }
+        }
+        this.paymentJournal.close();
+        this.auditLog.close();
+        this.flushIncome();
+
+        // Restore all active triggers in order, pending activations are dropped
+        this.taskScheduler.cancelAll();
+        this.triggerExecutor.drain(this::flushOnDisable);
+        this.triggerWheel.drain(this::flushOnDisable);
+        this.regionTriggers.forEach(this::flushOnDisable);
+        this.regionTriggers.clear();
+        this.updatedSigns.clear();
+        this.triggerJournal.close();
+        this.scheduledRegionTriggers.set(0);
+        this.protectionIndex.clear();
+        this.signCache.clear();
+        this.clickDebounce.clear();
+        this.playerSessions.clear();
+        this.bulkEditor.close();
+        this.signRegistry.close();
+        this.signIndexer.saveAll();
+        this.metrics.unregisterMBeans();
+        if (this.exporter != null) {
+            this.exporter.stop();
+            this.exporter = null;
+        }
+        this.economyDeadline.shutdown();
         this.economy = null;
     }
 
@@ -121,61 +300,96 @@ public final class PaySignPlugin extends JavaPlugin implements Listener {
         Block clickedBlock = event.getClickedBlock();
         if (clickedBlock == null || !Tag.SIGNS.isTagged(clickedBlock.getType())) return;
 
-        // Verify block state is actually a Sign
+        long clickedAt = System.nanoTime();
+
+        // Look up the parsed sign with a fresh snapshot, repeated clicks on an unchanged sign skip the parse
         BlockState state = clickedBlock.getState();
         if (!(state instanceof Sign)) return;
-        Sign sign = (Sign) state;
-
-        // Try parsing sign into a PaySign
-        PaySign paySign;
-        try {
-            Optional<PaySign> paySignMaybe = this.signDataParser.parse(sign);
-            if (!paySignMaybe.isPresent()) return;
-            paySign = paySignMaybe.get();
-        } catch (SignDataParser.ParseException ignored) {
-            logger.fine("Could not parse clicked sign data.");
-            return;
-        }
+        Optional<PaySign> paySignMaybe = this.signCache.get((Sign) state, this.paySignLoader);
+        if (!paySignMaybe.isPresent()) return;
+        PaySign paySign = paySignMaybe.get();
+        Sign sign = paySign.getSign();
 
         // Prevent item use (so it doesn't overlap with sign)
         event.setUseItemInHand(Event.Result.DENY);
 
-        // Check permissions
-        if (!player.hasPermission(PERMISSION_USE)) {
+        // Check permissions, resolved once per session
+        Configuration configuration = this.configuration;
+        PlayerSession session = this.playerSessions.get(player, configuration);
+        if (!session.canUse()) {
             logger.fine("Player is not permitted to use PaySign.");
-            player.sendMessage(this.messageRenderer.noPermissionToUse());
+            player.sendMessage(this.messageRenderer.noPermissionToUse(player));
             return;
         }
 
-        // Perform the payment
-        if (!paySign.pay(player, this.messageRenderer, this.economy, this.configuration.allowDecimals())) {
-            return; // payment failed
+        // Reject repeated clicks before any economy call, only a click that claimed the sign releases it
+        boolean claimedSign = configuration.debounceSigns();
+        if (!this.clickDebounce.tryAcquire(player, clickedBlock, this.currentTick,
+                configuration.debounceTicks(), claimedSign)) {
+            logger.finer("Debounced PaySign click.");
+            return;
         }
 
-        BukkitScheduler scheduler = getServer().getScheduler();
-        logger.info(player.getName() + " triggered PaySign at " + sign.getLocation());
+        // World and permission overrides are resolved once per session
+        Configuration.Settings settings = session.getSettings();
+
+        // Charge the payer off the main thread, trigger once it succeeded; the owner is paid afterwards
+        boolean submitted = this.paymentPipeline.submit(session, paySign, this.economy, this.ownerLedger,
+                this.paymentJournal, settings.allowDecimals(), payment -> {
+            if (!payment.isSuccessful()) {
+                this.metrics.payment(payment.getStatus());
+                paySign.notify(player, payment, this.messageRenderer, this.incomeNotifier);
+                if (claimedSign) {
+                    this.clickDebounce.release(clickedBlock);
+                }
+                return false; // payment failed or refunded
+            }
 
-        // Run trigger in next tick (to avoid interfering with interact event)
-        scheduler.runTask(this, () -> {
-            Trigger trigger = new Trigger(this, paySign);
-            this.activeTriggers.addLast(trigger);
+            // The sign may have been removed while the payment was processed, the payment is then refunded
+            Block signBlock = sign.getBlock();
+            if (!Tag.SIGNS.isTagged(signBlock.getType()) && !this.protectionIndex.isProtected(signBlock)) {
+                logger.warning("PaySign at " + sign.getLocation() + " was removed before it could be triggered.");
+                if (claimedSign) {
+                    this.clickDebounce.release(clickedBlock);
+                }
+                return false;
+            }
 
-            Switch fakeButton = trigger.execute();
+            this.metrics.payment(payment.getStatus());
+            if (payment.getStatus() == Payment.Status.PAID) {
+                this.metrics.revenue(session.getWorldName(), payment.getAmount());
+            }
+            paySign.notify(player, payment, this.messageRenderer, this.incomeNotifier);
+
+            this.auditLog.record(AuditLog.Action.PAYMENT, player.getUniqueId(), player.getName(),
+                    paySign.getPlayerName(), payment.getAmount(), signBlock.getWorld().getName(),
+                    signBlock.getX(), signBlock.getY(), signBlock.getZ());
+
+            // Store the owner resolved by the payment in signs created before owners were stored
+            if (!paySign.getOwnerId().isPresent()) {
+                this.ownerCache.cached(paySign.getPlayerName()).ifPresent(owner -> {
+                    this.ownerCache.write(sign, paySign.getPlayerName(), owner);
+                    this.signCache.invalidate(signBlock);
+                });
+            }
 
-            // Schedule flush (reset) after delay
-            scheduler.runTaskLater(this, () -> {
-                try {
-                    trigger.flush();
-                } finally {
-                    this.activeTriggers.remove(trigger);
-                }
-            }, paySign.getDelay().orElse(this.configuration.delay()));
+            // Run trigger in next tick (to avoid interfering with interact event)
+            int delay = paySign.getDelay().orElse(settings.delay());
+            this.scheduleTrigger(new Trigger(this.protectionIndex, this.pulseEngine, paySign, delay, clickedAt), 0);
+            return true;
         });
+
+        if (!submitted) {
+            if (claimedSign) {
+                this.clickDebounce.release(clickedBlock);
+            }
+            player.sendMessage(this.messageRenderer.paymentPending(player));
+        }
     }
 
     /**
      * Handles when a player creates/edits a sign.
-     * Validates PaySign format and player permissions.
+     * Validates PaySign format and player permissions, the sign is recorded once no other plugin cancels the edit.
      */
     @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
     public void onSign(SignChangeEvent event) {
@@ -189,50 +403,479 @@ public final class PaySignPlugin extends JavaPlugin implements Listener {
 
         // Try parsing PaySign data from new sign lines
         PaySign paySign;
+        long start = System.nanoTime();
         try {
             Optional<PaySign> paySignMaybe = this.signDataParser.parse(sign, event.getLines());
+            if (!paySignMaybe.isPresent()) return; // not a PaySign
+            paySign = paySignMaybe.get();
+        } catch (SignDataParser.ParseException e) {
+            logger.fine("Could not parse new sign data.");
+            this.cancel(event, player.hasPermission(PERMISSION_CREATE)
+                    ? this.messageRenderer.error(player, e.getText())
+                    : this.messageRenderer.noPermissionToCreate(player));
+            return;
+        } finally {
+            this.metrics.parse.recordSince(start);
+        }
+
+        // Check permissions and settings
+        String denied = this.checkCreate(player, paySign, block.getWorld().getName());
+        if (denied != null) {
+            this.cancel(event, denied);
+            return;
+        }
+
+        event.setLine(0, PaySign.NAMESPACE_COLOR + PaySign.NAMESPACE);
+    }
+
+    /**
+     * Records a sign edit that no plugin has cancelled.
+     * Created PaySigns are registered and audited, other signs are removed from the registry.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSignChanged(SignChangeEvent event) {
+        Player player = event.getPlayer();
+        Block block = event.getBlock();
+
+        BlockState state = block.getState();
+        if (!(state instanceof Sign)) return;
+
+        // Later handlers may have changed the lines, so parse what will be applied
+        PaySign paySign;
+        try {
+            Optional<PaySign> paySignMaybe = this.signDataParser.parse((Sign) state, event.getLines());
             if (!paySignMaybe.isPresent()) {
+                this.signRegistry.remove(block);
                 return; // not a PaySign
             }
             paySign = paySignMaybe.get();
         } catch (SignDataParser.ParseException e) {
-            logger.fine("Could not parse new sign data.");
-            this.cancel(event, player.hasPermission(PERMISSION_CREATE)
-                    ? this.messageRenderer.error(e.getText())
-                    : this.messageRenderer.noPermissionToCreate());
+            this.signRegistry.remove(block);
             return;
         }
 
+        this.auditLog.record(AuditLog.Action.CREATE, player.getUniqueId(), player.getName(),
+                paySign.getPlayerName(), paySign.getPrice(), block.getWorld().getName(),
+                block.getX(), block.getY(), block.getZ());
+        this.signRegistry.put(block, paySign);
+        player.sendMessage(this.messageRenderer.createdSuccessfully(player));
+
+        // Resolve the owner now, the sign can only store it once the new lines are applied
+        String ownerName = paySign.getPlayerName();
+        Optional<UUID> owner = ownerName.equalsIgnoreCase(player.getName())
+                ? Optional.of(player.getUniqueId())
+                : this.ownerCache.cached(ownerName);
+        if (!owner.isPresent()) {
+            Player online = this.getServer().getPlayerExact(ownerName);
+            owner = online != null ? Optional.of(online.getUniqueId()) : Optional.empty();
+        }
+        owner.ifPresent(uuid -> this.taskScheduler.runAt(block, () -> this.storeOwner(block, ownerName, uuid), 0));
+    }
+
+    /**
+     * Removes broken signs from the registry.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        Block block = event.getBlock();
+        if (Tag.SIGNS.isTagged(block.getType())) {
+            this.signRegistry.remove(block);
+        }
+    }
+
+    /**
+     * Collects signs that may drop because their supporting block is gone.
+     * The sign only breaks after the event, so it is checked on the next tick.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPhysics(BlockPhysicsEvent event) {
+        Block block = event.getBlock();
+        if (Tag.SIGNS.isTagged(block.getType()) && !this.protectionIndex.isProtected(block)) {
+            this.updatedSigns.add(block);
+        }
+    }
+
+    /**
+     * Removes exploded signs from the registry.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        this.removeSigns(event.blockList());
+    }
+
+    /**
+     * Removes exploded signs from the registry.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        this.removeSigns(event.blockList());
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    /**
+     * Checks whether the creator may create the PaySign in the given world.
+     * @param creator player or sender creating or rewriting the sign
+     * @param paySign the parsed PaySign
+     * @param worldName world of the sign
+     * @return message telling the creator why not, or null if the PaySign may be created
+     */
+    private String checkCreate(CommandSender creator, PaySign paySign, String worldName) {
         // Check create permissions
-        if (!player.hasPermission(PERMISSION_CREATE)) {
+        if (!creator.hasPermission(PERMISSION_CREATE)) {
             logger.fine("Player is not permitted to create PaySign.");
-            this.cancel(event, this.messageRenderer.noPermissionToCreate());
-            return;
+            return this.messageRenderer.noPermissionToCreate(creator);
         }
 
         // Check if player is allowed to create sign for another player
-        if (!paySign.getPlayerName().equalsIgnoreCase(player.getName())
-                && !player.hasPermission(PERMISSION_CREATE_OTHER)) {
+        if (!paySign.getPlayerName().equalsIgnoreCase(creator.getName())
+                && !creator.hasPermission(PERMISSION_CREATE_OTHER)) {
             logger.fine("Player is not permitted to create PaySign for others.");
-            this.cancel(event, this.messageRenderer.noPermissionToCreateOther());
-            return;
+            return this.messageRenderer.noPermissionToCreateOther(creator);
         }
 
         // Check if decimals are allowed
-        if (!this.configuration.allowDecimals() && paySign.getPrice() != paySign.getPrice(false)) {
+        Configuration.Settings settings = this.configuration.settings(creator, worldName);
+        if (!settings.allowDecimals() && !paySign.getPrice().isWhole()) {
             logger.fine("Decimal prices are disabled.");
-            this.cancel(event, this.messageRenderer.disabledDecimals());
+            return this.messageRenderer.disabledDecimals(creator);
+        }
+        return null;
+    }
+
+    /**
+     * Rewrites the lines of a sign for a bulk operation, validated like a sign created by the sender.
+     * Lines that are not a PaySign, e.g. of a disabled sign, remove the sign from the registry.
+     * Must be called from the thread owning the sign.
+     * @return true if the lines were written
+     */
+    private boolean rewriteSign(CommandSender sender, Sign sign, String[] lines) {
+        Block block = sign.getBlock();
+        Optional<PaySign> paySign;
+        try {
+            paySign = this.signDataParser.parse(sign, lines);
+        } catch (SignDataParser.ParseException e) {
+            logger.fine("Not rewriting sign at " + sign.getLocation() + ": " + e.getText());
+            return false;
+        }
+        if (paySign.isPresent() && this.checkCreate(sender, paySign.get(), block.getWorld().getName()) != null) {
+            return false;
+        }
+
+        for (int line = 0; line < lines.length; line++) {
+            sign.setLine(line, lines[line]);
+        }
+        if (!sign.update(false, false)) {
+            return false;
+        }
+        this.signCache.invalidate(block);
+
+        UUID senderId = sender instanceof Player ? ((Player) sender).getUniqueId() : null;
+        if (paySign.isPresent()) {
+            this.signRegistry.put(block, paySign.get());
+            this.auditLog.record(AuditLog.Action.EDIT, senderId, sender.getName(), paySign.get().getPlayerName(),
+                    paySign.get().getPrice(), block.getWorld().getName(), block.getX(), block.getY(), block.getZ());
+        } else {
+            this.signRegistry.remove(block);
+            this.auditLog.record(AuditLog.Action.EDIT, senderId, sender.getName(), null, null,
+                    block.getWorld().getName(), block.getX(), block.getY(), block.getZ());
+        }
+        return true;
+    }
+
+    /**
+     * Parses a sign into a PaySign.
+     * @return the PaySign, or empty if the sign is not a valid PaySign
+     */
+    private Optional<PaySign> loadPaySign(Sign sign) {
+        long start = System.nanoTime();
+        try {
+            return this.signDataParser.parse(sign).map(this::withStoredOwner);
+        } catch (SignDataParser.ParseException e) {
+            // Cached until the sign changes, so logged once per edit
+            logger.warning("Ignoring invalid PaySign at " + sign.getWorld().getName() + " " + sign.getX() + ", "
+                           + sign.getY() + ", " + sign.getZ() + ": " + e.getText());
+            return Optional.empty();
+        } finally {
+            this.metrics.parse.recordSince(start);
+        }
+    }
+
+    /**
+     * Adds the owner UUID stored in the sign, if any, to a parsed PaySign.
+     */
+    private PaySign withStoredOwner(PaySign paySign) {
+        return this.ownerCache.read(paySign.getSign(), paySign.getPlayerName())
+                .map(paySign::withOwnerId)
+                .orElse(paySign);
+    }
+
+    /**
+     * Stores the owner UUID in a newly created sign, unless the sign has changed since.
+     */
+    private void storeOwner(Block block, String ownerName, UUID owner) {
+        BlockState state = block.getState();
+        if (state instanceof Sign && ((Sign) state).getLine(1).equals(ownerName)) {
+            this.ownerCache.write((Sign) state, ownerName, owner);
+            this.signCache.invalidate(block);
+        }
+    }
+
+    /**
+     * Removes all signs among the given blocks from the registry.
+     */
+    private void removeSigns(List<Block> blocks) {
+        for (Block block : blocks) {
+            if (Tag.SIGNS.isTagged(block.getType())) {
+                this.signRegistry.remove(block);
+            }
+        }
+    }
+
+    /**
+     * Advances the trigger wheel, runs due triggers within the tick budget, rewrites signs of bulk operations,
+     * indexes signs and samples the backlog.
+     * Runs once per tick, on the global region thread of region threaded servers.
+     */
+    private void tick() {
+        Configuration configuration = this.configuration;
+        this.currentTick++;
+        this.triggerWheel.advance();
+        this.triggerExecutor.run(configuration.triggerBudgetOperations(),
+                TimeUnit.MICROSECONDS.toNanos(configuration.triggerBudgetMicros()));
+        this.bulkEditor.tick(TimeUnit.MICROSECONDS.toNanos(configuration.bulkMaxMicros()));
+        this.removeBrokenSigns();
+        if (configuration.indexerEnabled()) {
+            this.signIndexer.tick(TimeUnit.MICROSECONDS.toNanos(configuration.indexerMaxMicros()),
+                    configuration.indexerMinTps());
+        }
+        this.metrics.backlog(this.triggerWheel.size() + this.scheduledRegionTriggers.get(),
+                this.triggerExecutor.size(), this.ownerLedger.pendingAccounts());
+    }
+
+    /**
+     * Removes the signs collected from physics updates that are no longer signs.
+     * Signs replaced by an active trigger are protected and kept. On region threaded servers
+     * every sign is checked by a task on the thread owning it.
+     */
+    private void removeBrokenSigns() {
+        if (this.updatedSigns.isEmpty()) {
             return;
         }
 
-        logger.info(player.getName() + " created a PaySign at " + sign.getLocation());
-        event.setLine(0, PaySign.NAMESPACE_COLOR + PaySign.NAMESPACE);
-        player.sendMessage(this.messageRenderer.createdSuccessfully());
+        for (Iterator<Block> blocks = this.updatedSigns.iterator(); blocks.hasNext(); ) {
+            Block block = blocks.next();
+            blocks.remove();
+            if (this.taskScheduler.isRegionThreaded()) {
+                this.taskScheduler.runAt(block, () -> this.removeIfBroken(block), 0);
+            } else {
+                this.removeIfBroken(block);
+            }
+        }
     }
 
-    // ============================================================
-    // Helper methods
-    // ============================================================
+    private void removeIfBroken(Block block) {
+        if (!Tag.SIGNS.isTagged(block.getType()) && !this.protectionIndex.isProtected(block)) {
+            this.signRegistry.remove(block);
+            this.signCache.invalidate(block);
+        }
+    }
+
+    /**
+     * Schedules the activation or reset of a trigger.
+     * On classic servers the trigger goes through the trigger wheel and the tick budget. On region
+     * threaded servers it must run on the thread of the sign's region, so it is scheduled there directly.
+     */
+    private void scheduleTrigger(Trigger trigger, long delay) {
+        if (!this.taskScheduler.isRegionThreaded()) {
+            this.triggerWheel.schedule(trigger, delay);
+            return;
+        }
+
+        this.regionTriggers.add(trigger);
+        this.scheduledRegionTriggers.incrementAndGet();
+        this.taskScheduler.runAt(trigger.getPaySign().getSign().getBlock(), () -> {
+            this.scheduledRegionTriggers.decrementAndGet();
+            this.onTriggerExpired(trigger);
+            if (!trigger.isActive()) {
+                this.regionTriggers.remove(trigger);
+            }
+        }, delay);
+    }
+
+    /**
+     * Sends the collected owner income summaries.
+     */
+    private void flushIncome() {
+        Economy economy = this.economy;
+        if (economy != null) {
+            this.incomeNotifier.flush(this.getServer(), economy);
+        }
+    }
+
+    /**
+     * Restores an active trigger while the plugin is disabled.
+     */
+    private void flushOnDisable(Trigger trigger) {
+        if (trigger.isActive()) {
+            try {
+                trigger.flush();
+                this.triggerJournal.remove(trigger);
+                this.metrics.triggerReset();
+            } catch (RuntimeException e) {
+                // Region threaded servers may refuse block changes outside of the owning region
+                logger.log(Level.WARNING, "Could not reset PaySign at " +
+                           trigger.getPaySign().getSign().getLocation(), e);
+            }
+        }
+    }
+
+    /**
+     * Called by the trigger executor when a trigger is due and fits in the tick budget,
+     * or on the region thread of the sign on region threaded servers.
+     * Executes pending triggers and schedules their reset, flushes active ones.
+     */
+    private void onTriggerExpired(Trigger trigger) {
+        long start = System.nanoTime();
+        if (trigger.isActive()) {
+            trigger.flush();
+            this.triggerJournal.remove(trigger);
+            this.metrics.triggerFlush.recordSince(start);
+            this.metrics.triggerReset();
+            this.clickDebounce.release(trigger.getPaySign().getSign().getBlock());
+            return;
+        }
+
+        // Journal the sign before it is replaced, so it can be restored after a crash
+        this.triggerJournal.add(trigger, this.currentTick + trigger.getDelay());
+        Block block = trigger.getPaySign().getSign().getBlock();
+        try {
+            trigger.execute();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not execute PaySign at " + trigger.getPaySign().getSign().getLocation(), e);
+
+            // The trigger has restored the sign and released its blocks, the entry of a sign that
+            // could not be restored is kept for the next start
+            if (Tag.SIGNS.isTagged(block.getType())) {
+                this.triggerJournal.remove(trigger);
+            }
+            this.clickDebounce.release(block);
+            return;
+        }
+        long end = System.nanoTime();
+        this.metrics.triggerExecute.record(end - start);
+        this.metrics.clickToPulse.record(end - trigger.getClickedAt());
+        this.metrics.triggerActivated();
+
+        // Schedule flush (reset) after delay
+        this.scheduleTrigger(trigger, trigger.getDelay());
+    }
+
+    /**
+     * Reloads the configuration: the file is parsed off the main thread
+     * and the new snapshot is swapped in on the main thread.
+     */
+    private void reloadConfiguration(CommandSender sender, String[] args) {
+        File file = new File(this.getDataFolder(), "config.yml");
+        TaskScheduler scheduler = this.taskScheduler;
+
+        scheduler.runAsync(() -> {
+            YamlConfiguration config = new YamlConfiguration();
+            try {
+                config.load(file);
+            } catch (IOException | InvalidConfigurationException e) {
+                logger.log(Level.WARNING, "Could not reload the configuration.", e);
+                String reason = String.valueOf(e.getMessage());
+                scheduler.runGlobal(() -> sender.sendMessage(this.messageRenderer.reloadFailed(sender, reason)));
+                return;
+            }
+
+            Configuration snapshot = Configuration.load(config);
+            scheduler.runGlobal(() -> {
+                Configuration previous = this.configuration;
+                this.configuration = snapshot;
+                logger.info(sender.getName() + " reloaded the configuration.");
+                sender.sendMessage(this.messageRenderer.reloaded(sender, previous.requiresRestart(snapshot)));
+            });
+        });
+    }
+
+    /**
+     * Opens the payment journal, falling back to no journal if it cannot be opened.
+     */
+    private PaymentJournal openJournal() {
+        if (!this.configuration.journal()) {
+            return PaymentJournal.disabled();
+        }
+        try {
+            return PaymentJournal.open(this.getDataFolder().toPath().resolve("journal"),
+                    this.configuration.moneyScale());
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not open payment journal, payments are not journaled.", e);
+            return PaymentJournal.disabled();
+        }
+    }
+
+    /**
+     * Opens the trigger journal, falling back to no journal if it cannot be opened.
+     */
+    private TriggerJournal openTriggerJournal(Server server) {
+        try {
+            return TriggerJournal.open(this.getDataFolder().toPath().resolve("journal").resolve("triggers.journal"),
+                    server, this.ownerCache);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not open trigger journal, active PaySigns are not journaled.", e);
+            return TriggerJournal.disabled();
+        }
+    }
+
+    /**
+     * Saves the built-in messages as an example for translations and loads the messages of all locales.
+     */
+    private MessageRenderer loadMessages() {
+        String resource = "messages/" + MessageRenderer.BUILT_IN_LOCALE + ".yml";
+        if (!new File(this.getDataFolder(), resource).exists()) {
+            this.saveResource(resource, false);
+        }
+        return MessageRenderer.load(this.getDataFolder().toPath().resolve("messages"), this.getName(),
+                this.configuration.locale());
+    }
+
+    /**
+     * Creates the configured pulse engine, falling back to the barrier swap if the
+     * server does not support direct neighbour updates.
+     */
+    private PulseEngine createPulseEngine(Server server) {
+        if (PulseEngine.DIRECT.equals(this.configuration.pulseEngine())) {
+            Optional<DirectPulseEngine> engine = DirectPulseEngine.create(server);
+            if (engine.isPresent()) {
+                return engine.get();
+            }
+            logger.warning("The direct pulse engine is not supported by this server, using " +
+                           PulseEngine.BARRIER_SWAP + ".");
+        }
+        return new BarrierSwapPulseEngine();
+    }
+
+    /**
+     * Starts the audit log, falling back to no audit log if it cannot be opened.
+     */
+    private AuditLog openAuditLog() {
+        if (!this.configuration.auditLog()) {
+            return AuditLog.disabled();
+        }
+        try {
+            return AuditLog.open(this.getDataFolder().toPath().resolve("audit"),
+                    this.configuration.auditBufferSize(),
+                    this.configuration.auditMaxFileSize() * 1024L * 1024L,
+                    this.configuration.auditMaxFiles());
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not open audit log, creations and payments are not audited.", e);
+            return AuditLog.disabled();
+        }
+    }
 
     /**
      * Cancels sign creation and breaks the block.
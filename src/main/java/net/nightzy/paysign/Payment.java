@@ -0,0 +1,141 @@
+package net.nightzy.paysign;
+
+import java.util.Objects;
+
+/**
+ * Outcome of a {@link PaySign} payment.
+ * Produced by the economy calls (possibly off the server thread) and
+ * rendered to the players on the server thread. A paid payment carries the id of its
+ * journaled transaction until the price is delivered to the owner or refunded.
+ */
+public final class Payment {
+
+    /**
+     * Possible payment outcomes.
+     */
+    public enum Status {
+        /** The sign is free of charge */
+        FREE,
+        /** The price has been withdrawn from the payer and is owed to the owner */
+        PAID,
+        /** The payer cannot afford the price */
+        TOO_POOR,
+        /** The price could not be withdrawn from the payer */
+        WITHDRAW_FAILED,
+        /** The sign was removed before it could be triggered and the price has been refunded */
+        REFUNDED,
+        /** The payment worker pool is saturated */
+        REJECTED,
+        /** The payment waited too long for a worker */
+        TIMED_OUT,
+        /** The economy provider threw an exception */
+        ERROR
+    }
+
+    private static final Payment FREE = new Payment(Status.FREE, 0, null, null, null);
+    private static final Payment TOO_POOR = new Payment(Status.TOO_POOR, 0, null, null, null);
+    private static final Payment REJECTED = new Payment(Status.REJECTED, 0, null, null, null);
+    private static final Payment TIMED_OUT = new Payment(Status.TIMED_OUT, 0, null, null, null);
+
+    private final Status status;
+    private final long transaction;
+    private final Money amount;
+    private final String formattedAmount;
+    private final String errorMessage;
+
+    private Payment(Status status, long transaction, Money amount, String formattedAmount, String errorMessage) {
+        this.status = Objects.requireNonNull(status, "status cannot be null");
+        this.transaction = transaction;
+        this.amount = amount;
+        this.formattedAmount = formattedAmount;
+        this.errorMessage = errorMessage;
+    }
+
+    // ============================================================
+    // Factories
+    // ============================================================
+
+    public static Payment free() {
+        return FREE;
+    }
+
+    public static Payment paid(long transaction, Money amount, String formattedAmount) {
+        Objects.requireNonNull(amount, "amount cannot be null");
+        Objects.requireNonNull(formattedAmount, "formattedAmount cannot be null");
+        return new Payment(Status.PAID, transaction, amount, formattedAmount, null);
+    }
+
+    public static Payment tooPoor() {
+        return TOO_POOR;
+    }
+
+    public static Payment withdrawFailed(String errorMessage) {
+        return new Payment(Status.WITHDRAW_FAILED, 0, null, null, String.valueOf(errorMessage));
+    }
+
+    public static Payment refunded(Money amount, String formattedAmount) {
+        Objects.requireNonNull(amount, "amount cannot be null");
+        Objects.requireNonNull(formattedAmount, "formattedAmount cannot be null");
+        return new Payment(Status.REFUNDED, 0, amount, formattedAmount, null);
+    }
+
+    public static Payment rejected() {
+        return REJECTED;
+    }
+
+    public static Payment timedOut() {
+        return TIMED_OUT;
+    }
+
+    public static Payment error(String errorMessage) {
+        return new Payment(Status.ERROR, 0, null, null, String.valueOf(errorMessage));
+    }
+
+    // ============================================================
+    // Getters
+    // ============================================================
+
+    public Status getStatus() {
+        return this.status;
+    }
+
+    /**
+     * @return true if the sign may be triggered
+     */
+    public boolean isSuccessful() {
+        return this.status == Status.FREE || this.status == Status.PAID;
+    }
+
+    /**
+     * @return id of the journaled transaction, 0 unless {@link Status#PAID} with the journal enabled
+     */
+    public long getTransaction() {
+        return this.transaction;
+    }
+
+    /**
+     * @return amount withdrawn from the payer, null unless {@link Status#PAID} or {@link Status#REFUNDED}
+     */
+    public Money getAmount() {
+        return this.amount;
+    }
+
+    /**
+     * @return amount formatted by the economy provider, null unless {@link Status#PAID} or {@link Status#REFUNDED}
+     */
+    public String getFormattedAmount() {
+        return this.formattedAmount;
+    }
+
+    /**
+     * @return error message of the economy provider, null if not applicable
+     */
+    public String getErrorMessage() {
+        return this.errorMessage;
+    }
+
+    @Override
+    public String toString() {
+        return "Payment{status=" + this.status + ", amount=" + this.amount + "}";
+    }
+}
@@ -0,0 +1,744 @@
+package net.nightzy.paysign;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+
+/**
+ * Append-only, memory-mapped journal of payments and owner deposits.
+ * <p>
+ * Every economy step of a payment is recorded as a fixed-size binary record, before and
+ * after it is performed. On startup the journal is replayed: payments that were withdrawn
+ * but never delivered are refunded, and owner revenue that was credited to the
+ * {@link OwnerLedger} but never deposited is deposited. A step that was in flight when the
+ * server died is reported instead of replayed, since it cannot be known whether it happened.
+ * <p>
+ * Two journal files are used alternately. When the active one is full, the still open
+ * entries are compacted into the other one, which becomes active once its header is written.
+ * Records are written to the page cache only, which survives a crash of the server process.
+ * <p>
+ * Amounts are recorded in minor units of the money scale stored in the header, and owner
+ * revenue is keyed by the owner's UUID. Files of another scale are converted on open.
+ */
+public class PaymentJournal implements Closeable {
+
+    // Logger for journal messages
+    static final Logger logger = Logger.getLogger(PaymentJournal.class.getName());
+
+    // ============================================================
+    // Record types
+    // ============================================================
+
+    /** Payment started, the payer is about to be charged */
+    static final byte BEGIN = 1;
+    /** The payer has been charged */
+    static final byte WITHDRAWN = 2;
+    /** The owner has been paid directly, payment closed */
+    static final byte COMPLETED = 3;
+    /** The owner has been credited in the ledger, payment closed */
+    static final byte CREDITED = 4;
+    /** Nothing was charged or the payer has been refunded, payment closed */
+    static final byte ABORTED = 5;
+    /** Ledger revenue is about to be deposited to the owner */
+    static final byte SETTLING = 6;
+    /** Ledger revenue has been deposited to the owner */
+    static final byte SETTLED = 7;
+    /** Ledger revenue could not be deposited and is owed again */
+    static final byte SETTLE_FAILED = 8;
+
+    // ============================================================
+    // File layout
+    // ============================================================
+
+    private static final String[] FILE_NAMES = {"payments-a.journal", "payments-b.journal"};
+
+    private static final int RECORD_SIZE = 256;
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    // Header (slot 0)
+    private static final long MAGIC = 0x5041595349474E4AL; // "PAYSIGNJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_MAGIC = 8;
+    private static final int HEADER_VERSION = 16;
+    private static final int HEADER_CAPACITY = 20;
+    private static final int HEADER_SCALE = 24;
+
+    // Record (slots 1..capacity)
+    private static final int CRC = 0;
+    private static final int EPOCH = 4;
+    private static final int TYPE = 8;
+    private static final int ID = 16;
+    private static final int PAYER_MSB = 24;
+    private static final int PAYER_LSB = 32;
+    private static final int AMOUNT = 40;
+    private static final int OWNER = 48;
+    private static final int OWNER_MAX = 47;
+    private static final int WORLD = 96;
+    private static final int WORLD_MAX = 143;
+    private static final int OWNER_MSB = 240;
+    private static final int OWNER_LSB = 248;
+
+    // ============================================================
+    // Fields
+    // ============================================================
+
+    private final Path directory;
+    private final int scale;
+    private final byte[] scratch = new byte[RECORD_SIZE];
+    private final ByteBuffer scratchBuffer = ByteBuffer.wrap(this.scratch);
+    private final CRC32 crc = new CRC32();
+
+    private MappedByteBuffer buffer;
+    private int active;
+    private int epoch;
+    private int capacity;
+    private int position;
+    private long nextId = 1;
+
+    // Money scale of the file being loaded
+    private int fileScale;
+
+    // Open payments, owner revenue credited but not deposited, and deposits in flight;
+    // credits are keyed by owner UUID and world
+    private final Map<Long, Entry> transactions = new HashMap<>();
+    private final Map<String, Entry> credits = new HashMap<>();
+    private final Map<Long, Entry> settles = new HashMap<>();
+
+    private PaymentJournal(Path directory, int scale) {
+        this.directory = directory;
+        this.scale = scale;
+        this.fileScale = scale;
+    }
+
+    // ============================================================
+    // Factories
+    // ============================================================
+
+    /**
+     * Opens the journal in the given directory and loads its open entries.
+     * @param directory directory of the journal files
+     * @param scale money scale of the recorded amounts
+     * @return opened journal
+     * @throws IOException if the journal cannot be read or created
+     */
+    public static PaymentJournal open(Path directory, int scale) throws IOException {
+        Objects.requireNonNull(directory, "directory cannot be null");
+        Money.zero(scale); // validates the scale
+        Files.createDirectories(directory);
+
+        PaymentJournal journal = new PaymentJournal(directory, scale);
+        journal.load();
+        return journal;
+    }
+
+    /**
+     * @return a journal that records nothing
+     */
+    public static PaymentJournal disabled() {
+        return new PaymentJournal(null, Money.DEFAULT_SCALE);
+    }
+
+    // ============================================================
+    // Payment steps
+    // ============================================================
+
+    /**
+     * Records that a payment is about to charge the payer.
+     * @param payer UUID of the payer
+     * @param ownerId UUID of the sign owner
+     * @param owner name of the sign owner
+     * @param worldName name of the world the payment is made in
+     * @param amount price of the payment
+     * @return id of the payment
+     */
+    public synchronized long begin(UUID payer, UUID ownerId, String owner, String worldName, Money amount) {
+        if (this.buffer == null) {
+            return 0;
+        }
+        Objects.requireNonNull(ownerId, "ownerId cannot be null");
+        long id = this.nextId++;
+        this.record(new Entry(BEGIN, id, payer, ownerId, owner, worldName, this.units(amount)));
+        return id;
+    }
+
+    /**
+     * Records that the payer has been charged.
+     */
+    public synchronized void withdrawn(long id) {
+        this.transition(id, WITHDRAWN);
+    }
+
+    /**
+     * Records that the owner has been paid directly.
+     */
+    public synchronized void completed(long id) {
+        this.transition(id, COMPLETED);
+    }
+
+    /**
+     * Records that the owner has been credited in the ledger.
+     */
+    public synchronized void credited(long id) {
+        this.transition(id, CREDITED);
+    }
+
+    /**
+     * Records that nothing was charged or the payer has been refunded.
+     */
+    public synchronized void aborted(long id) {
+        this.transition(id, ABORTED);
+    }
+
+    // ============================================================
+    // Ledger deposits
+    // ============================================================
+
+    /**
+     * Records that ledger revenue is about to be deposited to the owner.
+     * @param ownerId UUID of the owner
+     * @param owner name of the owner
+     * @param worldName name of the world the revenue was made in
+     * @param amount amount to deposit
+     * @return id of the deposit
+     */
+    public synchronized long settling(UUID ownerId, String owner, String worldName, Money amount) {
+        if (this.buffer == null) {
+            return 0;
+        }
+        Objects.requireNonNull(ownerId, "ownerId cannot be null");
+        long id = this.nextId++;
+        this.record(new Entry(SETTLING, id, null, ownerId, owner, worldName, this.units(amount)));
+        return id;
+    }
+
+    /**
+     * Records that ledger revenue has been deposited.
+     */
+    public synchronized void settled(long id) {
+        Entry entry = this.settles.get(id);
+        if (entry != null) {
+            this.record(entry.with(SETTLED));
+        }
+    }
+
+    /**
+     * Records that ledger revenue could not be deposited.
+     */
+    public synchronized void settleFailed(long id) {
+        Entry entry = this.settles.get(id);
+        if (entry != null) {
+            this.record(entry.with(SETTLE_FAILED));
+        }
+    }
+
+    // ============================================================
+    // Recovery
+    // ============================================================
+
+    /**
+     * Completes or reverses entries left open by a previous run.
+     * @param server server used to resolve payers and owners
+     * @param economy the Vault economy provider
+     */
+    public synchronized void replay(Server server, Economy economy) {
+        Objects.requireNonNull(server, "server cannot be null");
+        Objects.requireNonNull(economy, "economy cannot be null");
+        if (this.buffer == null) {
+            return;
+        }
+
+        // Payments interrupted before or after charging the payer
+        for (Entry transaction : new ArrayList<>(this.transactions.values())) {
+            Money amount = Money.ofMinor(transaction.amount, this.scale);
+            if (transaction.type == BEGIN) {
+                logger.warning("Payment #" + transaction.id + " of " + amount + " by " + transaction.payer +
+                               " to " + transaction.owner + " in " + transaction.worldName +
+                               " was interrupted while charging the payer, please verify it manually.");
+                this.record(transaction.with(ABORTED));
+                continue;
+            }
+
+            OfflinePlayer payer = server.getOfflinePlayer(transaction.payer);
+            try {
+                if (economy.depositPlayer(payer, transaction.worldName, amount.toDouble()).transactionSuccess()) {
+                    logger.info("Refunded " + amount + " to " + transaction.payer +
+                                " for interrupted payment #" + transaction.id + ".");
+                    this.record(transaction.with(ABORTED));
+                } else {
+                    logger.warning("Could not refund interrupted payment #" + transaction.id + ", retrying on next start.");
+                }
+            } catch (EconomyTimeoutException e) {
+                logger.warning("Economy provider did not refund payment #" + transaction.id + " in time.");
+                e.onResponse(response -> {
+                    if (response != null && response.transactionSuccess()) {
+                        this.aborted(transaction.id);
+                    }
+                });
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Economy provider failed to refund payment #" + transaction.id, e);
+            }
+        }
+
+        // Deposits interrupted while in flight
+        for (Entry settle : new ArrayList<>(this.settles.values())) {
+            logger.warning("Deposit #" + settle.id + " of " + Money.ofMinor(settle.amount, this.scale) + " to " +
+                           settle.owner + " in " +
+                           settle.worldName + " was interrupted, please verify it manually.");
+            this.record(settle.with(SETTLED));
+        }
+
+        // Ledger revenue that was never deposited
+        for (Entry credit : new ArrayList<>(this.credits.values())) {
+            String owner = credit.owner;
+            String worldName = credit.worldName;
+            Money amount = Money.ofMinor(credit.amount, this.scale);
+            if (amount.signum() <= 0) {
+                continue;
+            }
+
+            long id = this.settling(credit, amount);
+            try {
+                EconomyResponse response = economy.depositPlayer(server.getOfflinePlayer(credit.ownerId), worldName,
+                        amount.toDouble());
+                if (response.transactionSuccess()) {
+                    logger.info("Deposited " + amount + " of collected revenue to " + owner + ".");
+                    this.settled(id);
+                } else {
+                    logger.warning("Could not deposit collected revenue to " + owner + ", retrying on next start.");
+                    this.settleFailed(id);
+                }
+            } catch (EconomyTimeoutException e) {
+                logger.warning("Economy provider did not deposit collected revenue to " + owner + " in time.");
+                e.onResponse(response -> {
+                    if (response != null && response.transactionSuccess()) {
+                        this.settled(id);
+                    } else {
+                        this.settleFailed(id);
+                    }
+                });
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Economy provider failed to deposit collected revenue to " + owner, e);
+                this.settleFailed(id);
+            }
+        }
+
+        try {
+            this.compact();
+        } catch (IOException e) {
+            this.fail(e);
+        }
+    }
+
+    /**
+     * Flushes the journal and stops recording.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.buffer != null) {
+            this.buffer.force();
+            this.buffer = null;
+        }
+    }
+
+    // ============================================================
+    // State
+    // ============================================================
+
+    /**
+     * Records a deposit of revenue credited to the given entry's owner.
+     * @return id of the deposit
+     */
+    private long settling(Entry credit, Money amount) {
+        long id = this.nextId++;
+        this.record(new Entry(SETTLING, id, null, credit.ownerId, credit.owner, credit.worldName, this.units(amount)));
+        return id;
+    }
+
+    private void transition(long id, byte type) {
+        Entry entry = this.transactions.get(id);
+        if (entry != null) {
+            this.record(entry.with(type));
+        }
+    }
+
+    /**
+     * Applies the entry to the in-memory state and appends it to the journal.
+     */
+    private void record(Entry entry) {
+        if (this.buffer == null) {
+            return;
+        }
+
+        this.apply(entry);
+        try {
+            if (this.position > this.capacity) {
+                this.compact(); // the compacted state already contains the entry
+            } else {
+                this.write(this.buffer, this.position++, this.epoch, entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.fail(e);
+        }
+    }
+
+    /**
+     * Applies a journal entry to the in-memory state.
+     */
+    private void apply(Entry entry) {
+        switch (entry.type) {
+            case BEGIN:
+            case WITHDRAWN:
+                this.transactions.put(entry.id, entry);
+                break;
+            case COMPLETED:
+            case ABORTED:
+                this.transactions.remove(entry.id);
+                break;
+            case CREDITED:
+                this.transactions.remove(entry.id);
+                this.credit(entry, entry.amount);
+                break;
+            case SETTLING:
+                this.settles.put(entry.id, entry);
+                this.credit(entry, -entry.amount);
+                break;
+            case SETTLED:
+                this.settles.remove(entry.id);
+                break;
+            case SETTLE_FAILED:
+                this.settles.remove(entry.id);
+                this.credit(entry, entry.amount);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown journal record type: " + entry.type);
+        }
+        this.nextId = Math.max(this.nextId, entry.id + 1);
+    }
+
+    private void credit(Entry entry, long amount) {
+        String key = this.creditKey(entry);
+        Entry credit = this.credits.get(key);
+        if (credit == null) {
+            credit = new Entry(CREDITED, 0, null, entry.ownerId, entry.owner, entry.worldName, 0);
+            this.credits.put(key, credit);
+        }
+        credit.amount += amount;
+        if (credit.amount == 0) {
+            this.credits.remove(key);
+        }
+    }
+
+    /**
+     * @return key of the owner account the entry is credited to
+     */
+    private String creditKey(Entry entry) {
+        return entry.ownerId.toString() + '\n' + entry.worldName;
+    }
+
+    private void fail(Exception e) {
+        logger.log(Level.SEVERE, "Payment journal failed, payments are no longer journaled.", e);
+        this.buffer = null;
+    }
+
+    // ============================================================
+    // File handling
+    // ============================================================
+
+    /**
+     * Maps the newest journal file and loads its open entries.
+     */
+    private void load() throws IOException {
+        int newest = -1;
+        int newestEpoch = 0;
+        int newestCapacity = DEFAULT_CAPACITY;
+
+        for (int file = 0; file < FILE_NAMES.length; file++) {
+            ByteBuffer header = this.readHeader(this.directory.resolve(FILE_NAMES[file]));
+            if (header != null && header.getInt(EPOCH) > newestEpoch) {
+                newest = file;
+                newestEpoch = header.getInt(EPOCH);
+                newestCapacity = header.getInt(HEADER_CAPACITY);
+                this.fileScale = header.getInt(HEADER_SCALE);
+            }
+        }
+
+        if (newest < 0) {
+            // Fresh journal
+            this.active = 0;
+            this.epoch = 1;
+            this.capacity = DEFAULT_CAPACITY;
+            this.buffer = this.map(this.active, this.capacity);
+            this.writeHeader(this.buffer, this.epoch, this.capacity);
+            this.position = 1;
+            return;
+        }
+
+        this.active = newest;
+        this.epoch = newestEpoch;
+        this.capacity = newestCapacity;
+        this.buffer = this.map(this.active, this.capacity);
+
+        // Read records until the first one that is torn or left over from an older epoch
+        this.position = 1;
+        while (this.position <= this.capacity) {
+            Entry entry = this.read(this.position);
+            if (entry == null) {
+                break;
+            }
+            this.apply(entry);
+            this.position++;
+        }
+
+        logger.fine("Loaded " + (this.position - 1) + " journal records, " + this.transactions.size() +
+                    " open payments, " + this.credits.size() + " owed accounts.");
+
+        // Rewrite the open entries in the current scale
+        if (this.fileScale != this.scale) {
+            logger.info("Converting payment journal to money scale " + this.scale + ".");
+            this.compact();
+            this.fileScale = this.scale;
+        }
+    }
+
+    /**
+     * Writes all open entries into the other journal file and makes it the active one.
+     */
+    private void compact() throws IOException {
+        int target = 1 - this.active;
+        int nextEpoch = this.epoch + 1;
+        int entries = this.transactions.size() + this.credits.size() + this.settles.size();
+        int nextCapacity = Math.max(this.capacity, entries * 2);
+
+        // Credits already have the deposits in flight subtracted, which their SETTLING records
+        // subtract again on load, so those amounts are added back to the compacted credits
+        Map<String, Entry> compacted = new HashMap<>();
+        for (Map.Entry<String, Entry> credit : this.credits.entrySet()) {
+            Entry entry = credit.getValue();
+            compacted.put(credit.getKey(), new Entry(CREDITED, 0, null, entry.ownerId, entry.owner, entry.worldName,
+                    entry.amount));
+        }
+        for (Entry settle : this.settles.values()) {
+            Entry credit = compacted.get(this.creditKey(settle));
+            if (credit == null) {
+                credit = new Entry(CREDITED, 0, null, settle.ownerId, settle.owner, settle.worldName, 0);
+                compacted.put(this.creditKey(settle), credit);
+            }
+            credit.amount += settle.amount;
+        }
+
+        MappedByteBuffer next = this.map(target, nextCapacity);
+        int slot = 1;
+        for (Entry transaction : this.transactions.values()) {
+            this.write(next, slot++, nextEpoch, transaction);
+        }
+        for (Entry credit : compacted.values()) {
+            if (credit.amount != 0) {
+                this.write(next, slot++, nextEpoch, new Entry(CREDITED, this.nextId++, null,
+                        credit.ownerId, credit.owner, credit.worldName, credit.amount));
+            }
+        }
+        for (Entry settle : this.settles.values()) {
+            this.write(next, slot++, nextEpoch, settle);
+        }
+        next.force();
+
+        // The new file becomes valid once its header carries the newer epoch
+        this.writeHeader(next, nextEpoch, nextCapacity);
+        next.force();
+
+        this.buffer = next;
+        this.active = target;
+        this.epoch = nextEpoch;
+        this.capacity = nextCapacity;
+        this.position = slot;
+    }
+
+    private MappedByteBuffer map(int file, int capacity) throws IOException {
+        Path path = this.directory.resolve(FILE_NAMES[file]);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) (capacity + 1) * RECORD_SIZE);
+        }
+    }
+
+    private ByteBuffer readHeader(Path path) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) < RECORD_SIZE) {
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the full header
+            }
+        }
+
+        int scale = header.getInt(HEADER_SCALE);
+        if (header.getLong(HEADER_MAGIC) != MAGIC || header.getInt(HEADER_VERSION) != VERSION
+                || scale < 0 || scale > Money.MAX_SCALE
+                || header.getInt(CRC) != this.checksum(header.array())) {
+            logger.warning("Ignoring invalid journal header in " + path);
+            return null;
+        }
+        return header;
+    }
+
+    private void writeHeader(MappedByteBuffer target, int epoch, int capacity) {
+        Arrays.fill(this.scratch, (byte) 0);
+        this.scratchBuffer.putInt(EPOCH, epoch);
+        this.scratchBuffer.putLong(HEADER_MAGIC, MAGIC);
+        this.scratchBuffer.putInt(HEADER_VERSION, VERSION);
+        this.scratchBuffer.putInt(HEADER_CAPACITY, capacity);
+        this.scratchBuffer.putInt(HEADER_SCALE, this.scale);
+        this.scratchBuffer.putInt(CRC, this.checksum(this.scratch));
+
+        ((Buffer) target).position(0);
+        target.put(this.scratch);
+    }
+
+    private void write(MappedByteBuffer target, int slot, int epoch, Entry entry) {
+        Arrays.fill(this.scratch, (byte) 0);
+        this.scratchBuffer.putInt(EPOCH, epoch);
+        this.scratchBuffer.put(TYPE, entry.type);
+        this.scratchBuffer.putLong(ID, entry.id);
+        if (entry.payer != null) {
+            this.scratchBuffer.putLong(PAYER_MSB, entry.payer.getMostSignificantBits());
+            this.scratchBuffer.putLong(PAYER_LSB, entry.payer.getLeastSignificantBits());
+        }
+        this.scratchBuffer.putLong(OWNER_MSB, entry.ownerId.getMostSignificantBits());
+        this.scratchBuffer.putLong(OWNER_LSB, entry.ownerId.getLeastSignificantBits());
+        this.scratchBuffer.putLong(AMOUNT, entry.amount);
+        this.putString(OWNER, OWNER_MAX, entry.owner);
+        this.putString(WORLD, WORLD_MAX, entry.worldName);
+        this.scratchBuffer.putInt(CRC, this.checksum(this.scratch));
+
+        ((Buffer) target).position(slot * RECORD_SIZE);
+        target.put(this.scratch);
+    }
+
+    /**
+     * Reads the record in the given slot of the active file.
+     * @return the entry, or null if the slot does not hold a valid record of the current epoch
+     */
+    private Entry read(int slot) {
+        ((Buffer) this.buffer).position(slot * RECORD_SIZE);
+        this.buffer.get(this.scratch);
+
+        if (this.scratchBuffer.getInt(EPOCH) != this.epoch
+                || this.scratchBuffer.getInt(CRC) != this.checksum(this.scratch)) {
+            return null;
+        }
+
+        byte type = this.scratchBuffer.get(TYPE);
+        if (type < BEGIN || type > SETTLE_FAILED) {
+            return null;
+        }
+
+        return new Entry(type,
+                this.scratchBuffer.getLong(ID),
+                this.getUUID(PAYER_MSB, PAYER_LSB),
+                this.getUUID(OWNER_MSB, OWNER_LSB),
+                this.getString(OWNER),
+                this.getString(WORLD),
+                this.readAmount());
+    }
+
+    /**
+     * Reads the amount of the record in the scratch buffer in minor units of the current scale.
+     */
+    private long readAmount() {
+        long units = this.scratchBuffer.getLong(AMOUNT);
+        return this.fileScale == this.scale
+                ? units
+                : Money.ofMinor(units, this.fileScale).rescale(this.scale).getMinorUnits();
+    }
+
+    /**
+     * Converts an amount to minor units of the journal's scale.
+     */
+    private long units(Money amount) {
+        Objects.requireNonNull(amount, "amount cannot be null");
+        return amount.rescale(this.scale).getMinorUnits();
+    }
+
+    private int checksum(byte[] record) {
+        this.crc.reset();
+        this.crc.update(record, EPOCH, RECORD_SIZE - EPOCH);
+        return (int) this.crc.getValue();
+    }
+
+    private void putString(int offset, int maxLength, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxLength) {
+            logger.warning("Journal value is too long and will be truncated: " + value);
+        }
+        int length = Math.min(bytes.length, maxLength);
+        this.scratch[offset] = (byte) length;
+        System.arraycopy(bytes, 0, this.scratch, offset + 1, length);
+    }
+
+    private String getString(int offset) {
+        int length = this.scratch[offset] & 0xFF;
+        return new String(this.scratch, offset + 1, length, StandardCharsets.UTF_8);
+    }
+
+    private UUID getUUID(int msbOffset, int lsbOffset) {
+        long msb = this.scratchBuffer.getLong(msbOffset);
+        long lsb = this.scratchBuffer.getLong(lsbOffset);
+        return msb == 0 && lsb == 0 ? null : new UUID(msb, lsb);
+    }
+
+    // ============================================================
+    // Journal entry
+    // ============================================================
+
+    /**
+     * In-memory form of a journal record.
+     */
+    private static final class Entry {
+
+        private final byte type;
+        private final long id;
+        private final UUID payer;
+        private final UUID ownerId;
+        private final String owner;
+        private final String worldName;
+        private long amount; // minor units
+
+        private Entry(byte type, long id, UUID payer, UUID ownerId, String owner, String worldName, long amount) {
+            this.type = type;
+            this.id = id;
+            this.payer = payer;
+            this.ownerId = Objects.requireNonNull(ownerId, "ownerId cannot be null");
+            this.owner = Objects.requireNonNull(owner, "owner cannot be null");
+            this.worldName = Objects.requireNonNull(worldName, "worldName cannot be null");
+            this.amount = amount;
+        }
+
+        private Entry with(byte type) {
+            return new Entry(type, this.id, this.payer, this.ownerId, this.owner, this.worldName, this.amount);
+        }
+    }
+}
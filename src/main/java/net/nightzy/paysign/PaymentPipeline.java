@@ -0,0 +1,384 @@
+package net.nightzy.paysign;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.plugin.Plugin;
+
+import net.milkbowl.vault.economy.Economy;
+
+/**
+ * Runs {@link PaySign} payments on a bounded worker pool so that economy calls
+ * never block the server thread. Results are handed back to the thread owning the sign,
+ * the server thread or, on region threaded servers, the thread of the sign's region.
+ * <p>
+ * Payments of the same player are processed one at a time in click order,
+ * and a second payment for a sign the player is already paying for is rejected.
+ * <p>
+ * A payment charges the payer first. The charged payment is handed to the callback on the
+ * thread owning the sign, which uses it or declines it, e.g. because the sign is gone. Only
+ * then the price is delivered to the owner, or refunded to the payer if it was declined or
+ * could not be handed back at all because the plugin is being disabled.
+ */
+public class PaymentPipeline {
+
+    // Logger for payment pipeline messages
+    static final Logger logger = Logger.getLogger(PaymentPipeline.class.getName());
+
+    // How long to wait for in-flight payments on shutdown
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final TaskScheduler scheduler;
+    private final OwnerCache ownerCache;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutNanos;
+    private final Metrics metrics;
+
+    // Pending payments per player, the head is the one being processed; guarded by itself
+    private final Map<UUID, Deque<Job>> queues = new HashMap<>();
+    // Finished payments handed back but not completed yet, whoever removes one settles it
+    private final Map<Job, Payment> handedOff = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a payment pipeline.
+     * @param plugin plugin owning the workers
+     * @param scheduler scheduler used to hand results back to the thread owning the sign
+     * @param ownerCache resolves the owners of signs without a stored owner UUID
+     * @param threads number of worker threads
+     * @param queueSize maximum number of payments waiting for a worker
+     * @param timeoutMillis maximum time a payment may wait for a worker
+     * @param metrics metrics receiving the economy latencies
+     */
+    public PaymentPipeline(Plugin plugin, TaskScheduler scheduler, OwnerCache ownerCache, int threads, int queueSize,
+                           long timeoutMillis, Metrics metrics) {
+        Objects.requireNonNull(plugin, "plugin cannot be null");
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler cannot be null");
+        this.ownerCache = Objects.requireNonNull(ownerCache, "ownerCache cannot be null");
+        this.metrics = Objects.requireNonNull(metrics, "metrics cannot be null");
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new WorkerFactory(plugin.getName()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // ============================================================
+    // Submission
+    // ============================================================
+
+    /**
+     * Submits a payment. Must be called from the thread owning the sign.
+     * The callback is always invoked on the thread owning the sign, possibly in a later tick.
+     * It returns whether a successful payment has been used; a paid payment it declines is
+     * refunded, and the callback is invoked again with the refund.
+     *
+     * @param session session of the player who pays
+     * @param paySign the sign being paid for
+     * @param economy the Vault economy provider
+     * @param ledger ledger receiving the owner revenue
+     * @param journal journal recording every economy step
+     * @param allowDecimals whether decimals in price are allowed
+     * @param callback receives the payment outcome, returns true if the payment has been used
+     * @return false if the player already has a pending payment for this sign
+     */
+    public boolean submit(PlayerSession session, PaySign paySign, Economy economy, OwnerLedger ledger,
+                          PaymentJournal journal, boolean allowDecimals, Predicate<Payment> callback) {
+        Objects.requireNonNull(session, "session cannot be null");
+        Objects.requireNonNull(paySign, "paySign cannot be null");
+        Objects.requireNonNull(economy, "economy cannot be null");
+        Objects.requireNonNull(ledger, "ledger cannot be null");
+        Objects.requireNonNull(journal, "journal cannot be null");
+        Objects.requireNonNull(callback, "callback cannot be null");
+
+        // Free signs need no economy calls
+        if (paySign.getPrice(allowDecimals).isZero()) {
+            logger.finer("The sign is free of charge.");
+            callback.test(Payment.free());
+            return true;
+        }
+
+        Job job = new Job(session, paySign, economy, ledger, journal, allowDecimals, callback);
+        synchronized (this.queues) {
+            Deque<Job> queue = this.queues.computeIfAbsent(session.getUniqueId(), uuid -> new ArrayDeque<>(2));
+            for (Job pending : queue) {
+                if (pending.paySign.getSign().getLocation().equals(paySign.getSign().getLocation())) {
+                    logger.fine("The player already has a pending payment for this sign.");
+                    return false;
+                }
+            }
+
+            queue.addLast(job);
+            if (queue.size() == 1) {
+                this.dispatch(job);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of players with pending payments
+     */
+    public int pendingPlayers() {
+        synchronized (this.queues) {
+            return this.queues.size();
+        }
+    }
+
+    /**
+     * Stops accepting payments and waits for in-flight payments to finish.
+     * Paid payments handed back but not completed yet are refunded, since their
+     * completions are cancelled with the plugin's tasks. Payments charged from now on
+     * cannot be handed back and are refunded.
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warning("Payment workers did not finish in time, " +
+                               this.executor.shutdownNow().size() + " payments were not processed, " +
+                               "charged ones are refunded on next start.");
+            }
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this.queues) {
+            this.queues.clear();
+        }
+
+        for (Job job : this.handedOff.keySet()) {
+            Payment payment = this.handedOff.remove(job);
+            if (payment != null && payment.getStatus() == Payment.Status.PAID) {
+                logger.warning("Refunding payment of " + job.player.getName() + " that was not completed before shutdown.");
+                job.refund(payment);
+            }
+        }
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    /**
+     * Hands a job to the worker pool. Must hold the queues lock.
+     */
+    private void dispatch(Job job) {
+        job.dispatchedAt = System.nanoTime();
+        try {
+            this.executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            logger.warning("Payment workers are saturated, rejecting payment of " + job.player.getName());
+            this.handOff(job, Payment.rejected());
+        }
+    }
+
+    /**
+     * Runs the delivery or refund of a charged payment on the worker pool.
+     * If the pool does not accept it, it is run by the calling thread, since the payer has been charged.
+     */
+    private void settle(Runnable settlement) {
+        try {
+            this.executor.execute(settlement);
+        } catch (RejectedExecutionException e) {
+            settlement.run();
+        }
+    }
+
+    /**
+     * Hands a finished job back to the thread owning its sign.
+     * A charged payment that cannot be handed back is refunded.
+     */
+    private void handOff(Job job, Payment payment) {
+        this.handedOff.put(job, payment);
+        try {
+            this.scheduler.runAt(job.paySign.getSign().getBlock(), () -> this.complete(job), 0);
+        } catch (IllegalPluginAccessException e) {
+            logger.warning("Payment of " + job.player.getName() + " finished after shutdown: " + payment +
+                           " for PaySign at " + job.paySign.getSign().getLocation());
+            if (this.handedOff.remove(job) != null && payment.getStatus() == Payment.Status.PAID) {
+                job.refund(payment);
+            }
+        }
+    }
+
+    /**
+     * Completes a job and dispatches the next payment of the same player.
+     * Runs on the thread owning the sign, the callback is invoked outside of the queues lock.
+     * A paid payment is delivered to the owner if the callback used it, otherwise it is refunded.
+     * Does nothing if the payment has already been refunded on shutdown.
+     */
+    private void complete(Job job) {
+        Payment payment = this.handedOff.remove(job);
+        if (payment == null) {
+            return;
+        }
+
+        UUID uuid = job.session.getUniqueId();
+        synchronized (this.queues) {
+            Deque<Job> queue = this.queues.get(uuid);
+            if (queue != null) {
+                queue.remove(job);
+                if (queue.isEmpty()) {
+                    this.queues.remove(uuid);
+                } else {
+                    this.dispatch(queue.peekFirst());
+                }
+            }
+        }
+
+        boolean used;
+        try {
+            used = job.callback.test(payment);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Could not use payment of " + job.player.getName(), e);
+            used = false;
+        }
+        if (payment.getStatus() == Payment.Status.PAID) {
+            if (used) {
+                this.settle(() -> job.deliver(payment));
+            } else {
+                this.settle(() -> {
+                    Payment refund = job.refund(payment);
+                    try {
+                        this.scheduler.runAt(job.paySign.getSign().getBlock(), () -> job.callback.test(refund), 0);
+                    } catch (IllegalPluginAccessException e) {
+                        logger.fine("Refund of " + job.player.getName() + " finished after shutdown: " + refund);
+                    }
+                });
+            }
+        }
+    }
+
+    // ============================================================
+    // Job & worker factory
+    // ============================================================
+
+    /**
+     * A single payment waiting for or being processed by a worker.
+     */
+    private final class Job implements Runnable {
+
+        private final PlayerSession session;
+        private final Player player;
+        private final PaySign paySign;
+        private final Economy economy;
+        private final OwnerLedger ledger;
+        private final PaymentJournal journal;
+        private final boolean allowDecimals;
+        private final Predicate<Payment> callback;
+
+        private volatile long dispatchedAt;
+        private volatile OfflinePlayer owner; // resolved while charging
+
+        private Job(PlayerSession session, PaySign paySign, Economy economy, OwnerLedger ledger,
+                    PaymentJournal journal, boolean allowDecimals, Predicate<Payment> callback) {
+            this.session = session;
+            this.player = session.getPlayer();
+            this.paySign = paySign;
+            this.economy = economy;
+            this.ledger = ledger;
+            this.journal = journal;
+            this.allowDecimals = allowDecimals;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            Payment payment;
+            if (System.nanoTime() - this.dispatchedAt > PaymentPipeline.this.timeoutNanos) {
+                // Do not touch the economy, the player has waited too long
+                logger.warning("Payment of " + this.player.getName() + " timed out waiting for a worker.");
+                payment = Payment.timedOut();
+            } else {
+                try {
+                    this.owner = this.owner();
+                    payment = this.paySign.charge(this.session, this.owner, this.economy, this.journal,
+                            this.allowDecimals, PaymentPipeline.this.metrics);
+                } catch (EconomyTimeoutException e) {
+                    logger.warning("Economy provider did not answer in time during payment of " +
+                                   this.player.getName() + ".");
+                    payment = Payment.timedOut();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "Economy provider failed during payment of " + this.player.getName(), e);
+                    payment = Payment.error(e.getMessage());
+                }
+            }
+            PaymentPipeline.this.handOff(this, payment);
+        }
+
+        /**
+         * Delivers a used payment to the owner.
+         */
+        private void deliver(Payment payment) {
+            try {
+                this.paySign.deliver(this.session, this.owner, payment, this.economy, this.ledger,
+                        PaymentPipeline.this.metrics);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Could not deliver payment of " + this.player.getName() +
+                                         ", it is refunded on next start.", e);
+            }
+        }
+
+        /**
+         * Refunds a payment that has not been used.
+         * @return outcome of the refund
+         */
+        private Payment refund(Payment payment) {
+            try {
+                return this.paySign.refund(this.session, payment, this.economy, this.journal,
+                        PaymentPipeline.this.metrics);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Could not refund payment of " + this.player.getName() +
+                                         ", it is refunded on next start.", e);
+                return Payment.error(e.getMessage());
+            }
+        }
+
+        /**
+         * Resolves the owner of the sign, by its stored UUID if the sign has one.
+         */
+        private OfflinePlayer owner() {
+            Optional<UUID> ownerId = this.paySign.getOwnerId();
+            return ownerId.isPresent()
+                    ? this.player.getServer().getOfflinePlayer(ownerId.get())
+                    : PaymentPipeline.this.ownerCache.resolve(this.player.getServer(), this.paySign.getPlayerName());
+        }
+    }
+
+    /**
+     * Creates named daemon worker threads.
+     */
+    private static final class WorkerFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private WorkerFactory(String pluginName) {
+            this.prefix = pluginName + " Payment Worker #";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, this.prefix + this.counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
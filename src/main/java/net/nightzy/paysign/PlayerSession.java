@@ -0,0 +1,107 @@
+package net.nightzy.paysign;
+
+import java.util.Objects;
+import java.util.UUID;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+
+/**
+ * What a PaySign click needs to know about a player, resolved once and reused by repeated clicks:
+ * the use permission, the sign settings of the player's world and overrides, and the economy
+ * account with its world.
+ * <p>
+ * A session belongs to one configuration snapshot and is replaced by {@link PlayerSessions}
+ * when the configuration is reloaded, the player changes worlds or their permissions are
+ * recalculated. Immutable apart from being marked stale, so it may be read by the payment workers.
+ */
+public final class PlayerSession {
+
+    private final Player player;
+    private final UUID uniqueId;
+    private final Configuration configuration;
+    private final String worldName;
+    private final boolean canUse;
+    private final Configuration.Settings settings;
+
+    // Set when a cached value may no longer be valid
+    private volatile boolean stale;
+
+    /**
+     * Resolves a session. Must be called from the thread owning the player.
+     * @param player the player
+     * @param configuration configuration snapshot to resolve the settings with
+     * @param usePermission permission required to use PaySigns
+     */
+    public PlayerSession(Player player, Configuration configuration, String usePermission) {
+        this.player = Objects.requireNonNull(player, "player cannot be null");
+        this.configuration = Objects.requireNonNull(configuration, "configuration cannot be null");
+        Objects.requireNonNull(usePermission, "usePermission cannot be null");
+
+        this.uniqueId = player.getUniqueId();
+        this.worldName = player.getWorld().getName();
+        this.canUse = player.hasPermission(usePermission);
+        this.settings = configuration.settings(player, this.worldName);
+    }
+
+    // ============================================================
+    // Getters
+    // ============================================================
+
+    public Player getPlayer() {
+        return this.player;
+    }
+
+    public UUID getUniqueId() {
+        return this.uniqueId;
+    }
+
+    /**
+     * @return account of the player passed to the economy provider
+     */
+    public OfflinePlayer getAccount() {
+        return this.player;
+    }
+
+    /**
+     * @return name of the world the player's balance is kept for
+     */
+    public String getWorldName() {
+        return this.worldName;
+    }
+
+    /**
+     * @return true if the player may use PaySigns
+     */
+    public boolean canUse() {
+        return this.canUse;
+    }
+
+    /**
+     * @return sign settings of the player's world and permission overrides
+     */
+    public Configuration.Settings getSettings() {
+        return this.settings;
+    }
+
+    // ============================================================
+    // Validity
+    // ============================================================
+
+    /**
+     * Determines whether the session still describes the player under the given configuration.
+     * @param player the player, a rejoined player has a new instance
+     * @param configuration the current configuration snapshot
+     * @return true if the cached values may be used
+     */
+    public boolean isValid(Player player, Configuration configuration) {
+        return !this.stale && this.player == player && this.configuration == configuration;
+    }
+
+    /**
+     * Marks the session as stale, so it is resolved again on the next click.
+     */
+    void invalidate() {
+        this.stale = true;
+    }
+}
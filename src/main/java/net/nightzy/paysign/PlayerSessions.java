@@ -0,0 +1,123 @@
+package net.nightzy.paysign;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * {@link PlayerSession}s of the online players.
+ * <p>
+ * A session is created when a player joins and dropped when they quit. It is marked stale
+ * when the player changes worlds or their permissions are recalculated, which the server
+ * follows by resending the command tree, and resolved again on the next click.
+ * Sessions of an older configuration snapshot are replaced the same way.
+ * Safe to use from any thread.
+ */
+public class PlayerSessions implements Listener {
+
+    private final String usePermission;
+    private final Supplier<Configuration> configuration;
+
+    // Sessions of online players by UUID
+    private final Map<UUID, PlayerSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the session registry.
+     * @param usePermission permission required to use PaySigns
+     * @param configuration supplies the current configuration snapshot
+     */
+    public PlayerSessions(String usePermission, Supplier<Configuration> configuration) {
+        this.usePermission = Objects.requireNonNull(usePermission, "usePermission cannot be null");
+        this.configuration = Objects.requireNonNull(configuration, "configuration cannot be null");
+    }
+
+    // ============================================================
+    // Sessions
+    // ============================================================
+
+    /**
+     * Gets the session of a player, resolving it again if it is stale.
+     * Must be called from the thread owning the player.
+     * @param player the player
+     * @param configuration the current configuration snapshot
+     * @return a valid session
+     */
+    public PlayerSession get(Player player, Configuration configuration) {
+        Objects.requireNonNull(player, "player cannot be null");
+        Objects.requireNonNull(configuration, "configuration cannot be null");
+
+        PlayerSession session = this.sessions.get(player.getUniqueId());
+        if (session == null || !session.isValid(player, configuration)) {
+            session = new PlayerSession(player, configuration, this.usePermission);
+            this.sessions.put(player.getUniqueId(), session);
+        }
+        return session;
+    }
+
+    /**
+     * Creates the session of a player who is already online, e.g. when the plugin is enabled.
+     * @param player the player
+     */
+    public void open(Player player) {
+        Objects.requireNonNull(player, "player cannot be null");
+        this.sessions.put(player.getUniqueId(),
+                new PlayerSession(player, this.configuration.get(), this.usePermission));
+    }
+
+    /**
+     * Marks the session of a player as stale.
+     * @param player the player
+     */
+    public void invalidate(Player player) {
+        Objects.requireNonNull(player, "player cannot be null");
+        PlayerSession session = this.sessions.get(player.getUniqueId());
+        if (session != null) {
+            session.invalidate();
+        }
+    }
+
+    /**
+     * Drops all sessions.
+     */
+    public void clear() {
+        this.sessions.clear();
+    }
+
+    // ============================================================
+    // Event handlers
+    // ============================================================
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        this.open(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        this.sessions.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        this.invalidate(event.getPlayer());
+    }
+
+    /**
+     * Sent after the permissions or the operator status of a player have been recalculated.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerCommandSend(PlayerCommandSendEvent event) {
+        this.invalidate(event.getPlayer());
+    }
+}
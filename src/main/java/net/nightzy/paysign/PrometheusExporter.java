@@ -0,0 +1,189 @@
+package net.nightzy.paysign;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the {@link Metrics} in the Prometheus text format on {@code /metrics}.
+ * Uses the HTTP server of the JDK with a single daemon thread; the exposition is rendered
+ * on that thread from metric snapshots, so scraping never runs on the server thread.
+ * <p>
+ * Payments per second are derived from the {@code paysign_payments_total} counter,
+ * e.g. {@code rate(paysign_payments_total[1m])}.
+ */
+public class PrometheusExporter {
+
+    // Logger for exporter messages
+    static final Logger logger = Logger.getLogger(PrometheusExporter.class.getName());
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // How long to wait for running scrapes on shutdown
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    // Upper bounds of the exported latency buckets, in seconds
+    private static final double[] BUCKETS = {
+            0.000_01, 0.000_025, 0.000_05, 0.000_1, 0.000_25, 0.000_5,
+            0.001, 0.002_5, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5
+    };
+
+    private final Metrics metrics;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private PrometheusExporter(Metrics metrics, HttpServer server) {
+        this.metrics = metrics;
+        this.server = server;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PaySign Metrics Exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/metrics", this::handle);
+    }
+
+    /**
+     * Starts an exporter.
+     * @param metrics metrics to export
+     * @param address address to bind to, usually a loopback address
+     * @param port port to bind to
+     * @return the running exporter
+     * @throws IOException if the address cannot be bound
+     */
+    public static PrometheusExporter start(Metrics metrics, String address, int port) throws IOException {
+        Objects.requireNonNull(metrics, "metrics cannot be null");
+        Objects.requireNonNull(address, "address cannot be null");
+
+        PrometheusExporter exporter = new PrometheusExporter(metrics,
+                HttpServer.create(new InetSocketAddress(address, port), 0));
+        exporter.server.start();
+        logger.info("Serving metrics on http://" + address + ":" + port + "/metrics");
+        return exporter;
+    }
+
+    /**
+     * Stops serving metrics.
+     */
+    public void stop() {
+        this.server.stop(STOP_DELAY_SECONDS);
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(STOP_DELAY_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ============================================================
+    // Exposition
+    // ============================================================
+
+    /**
+     * Renders the exposition of all metrics.
+     * @return the exposition in the Prometheus text format
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder(8192);
+
+        header(out, "paysign_payments_total", "counter", "Payments by outcome.");
+        for (Payment.Status status : Payment.Status.values()) {
+            out.append("paysign_payments_total{status=\"").append(status.name().toLowerCase(Locale.ROOT))
+               .append("\"} ").append(this.metrics.payments(status)).append('\n');
+        }
+
+        header(out, "paysign_rollbacks_total", "counter", "Withdrawals refunded after a failed deposit.");
+        sample(out, "paysign_rollbacks_total", this.metrics.rollbacks());
+
+        header(out, "paysign_revenue_total", "counter", "Amount paid for PaySigns by world.");
+        for (Map.Entry<String, Money> entry : this.metrics.revenue().entrySet()) {
+            out.append("paysign_revenue_total{world=\"").append(escape(entry.getKey())).append("\"} ")
+               .append(entry.getValue()).append('\n');
+        }
+
+        header(out, "paysign_active_triggers", "gauge", "Triggers whose redstone signal is on.");
+        sample(out, "paysign_active_triggers", this.metrics.activeTriggers());
+
+        header(out, "paysign_scheduled_triggers", "gauge", "Triggers waiting for activation or reset.");
+        sample(out, "paysign_scheduled_triggers", this.metrics.scheduledTriggers());
+
+        header(out, "paysign_queued_triggers", "gauge", "Due triggers carried over to the next tick.");
+        sample(out, "paysign_queued_triggers", this.metrics.queuedTriggers());
+
+        header(out, "paysign_pending_deposit_accounts", "gauge", "Owner accounts with revenue not deposited yet.");
+        sample(out, "paysign_pending_deposit_accounts", this.metrics.pendingDepositAccounts());
+
+        header(out, "paysign_latency_seconds", "histogram", "Latency of PaySign operations.");
+        for (LatencyHistogram histogram : this.metrics.histograms()) {
+            this.histogram(out, histogram.getName(), histogram.snapshot());
+        }
+        return out.toString();
+    }
+
+    private void histogram(StringBuilder out, String operation, LatencyHistogram.Snapshot snapshot) {
+        for (double bound : BUCKETS) {
+            long count = snapshot.getCountAtOrBelow((long) (bound * TimeUnit.SECONDS.toNanos(1)));
+            out.append("paysign_latency_seconds_bucket{operation=\"").append(operation)
+               .append("\",le=\"").append(bound).append("\"} ").append(count).append('\n');
+        }
+        out.append("paysign_latency_seconds_bucket{operation=\"").append(operation)
+           .append("\",le=\"+Inf\"} ").append(snapshot.getCount()).append('\n');
+        out.append("paysign_latency_seconds_sum{operation=\"").append(operation).append("\"} ")
+           .append(snapshot.getSum() / (double) TimeUnit.SECONDS.toNanos(1)).append('\n');
+        out.append("paysign_latency_seconds_count{operation=\"").append(operation).append("\"} ")
+           .append(snapshot.getCount()).append('\n');
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = this.render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not render metrics.", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, long value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Escapes a label value.
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,205 @@
+package net.nightzy.paysign;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+
+/**
+ * Index of block positions protected by active {@link Trigger}s.
+ * A single permanent listener that cancels events which could destroy or modify
+ * the fake button or its base block. Each lookup is one primitive hash lookup,
+ * regardless of how many triggers are active.
+ * <p>
+ * Safe to use from any thread. The index is sharded by region, so on region threaded
+ * servers the threads of different regions rarely contend for the same shard lock.
+ */
+public class ProtectionIndex implements Listener {
+
+    // Number of shards, a power of two
+    private static final int SHARDS = 64;
+
+    // Protected block keys per shard and world, mapped to the number of triggers protecting them
+    private final Shard[] shards = new Shard[SHARDS];
+
+    // Total number of protected positions across all worlds
+    private final AtomicInteger protectedCount = new AtomicInteger();
+
+    public ProtectionIndex() {
+        for (int i = 0; i < SHARDS; i++) {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    // ============================================================
+    // Index management
+    // ============================================================
+
+    /**
+     * Protects the given block until it is released.
+     * A block protected by several triggers stays protected until all of them release it.
+     * @param block block to protect
+     */
+    public void protect(Block block) {
+        Objects.requireNonNull(block, "block cannot be null");
+        Shard shard = this.shard(block);
+        synchronized (shard) {
+            LongIntMap blocks = shard.worlds.computeIfAbsent(block.getWorld().getUID(), uid -> new LongIntMap(64));
+            if (blocks.addTo(BlockKeys.pack(block), 1) == 1) {
+                this.protectedCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Releases one protection of the given block.
+     * @param block block to release
+     */
+    public void release(Block block) {
+        Objects.requireNonNull(block, "block cannot be null");
+        Shard shard = this.shard(block);
+        synchronized (shard) {
+            LongIntMap blocks = shard.worlds.get(block.getWorld().getUID());
+            if (blocks == null) {
+                return;
+            }
+
+            long key = BlockKeys.pack(block);
+            if (!blocks.containsKey(key)) {
+                return;
+            }
+            if (blocks.addTo(key, -1) <= 0) {
+                blocks.remove(key, 0);
+                this.protectedCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Tests whether the given block is currently protected.
+     * @param block block to check
+     * @return true if an active trigger protects this block
+     */
+    public boolean isProtected(Block block) {
+        if (this.protectedCount.get() == 0) {
+            return false;
+        }
+        Shard shard = this.shard(block);
+        synchronized (shard) {
+            LongIntMap blocks = shard.worlds.get(block.getWorld().getUID());
+            return blocks != null && blocks.containsKey(BlockKeys.pack(block));
+        }
+    }
+
+    /**
+     * @return number of protected block positions
+     */
+    public int size() {
+        return this.protectedCount.get();
+    }
+
+    /**
+     * Removes all protections.
+     */
+    public void clear() {
+        for (Shard shard : this.shards) {
+            synchronized (shard) {
+                shard.worlds.clear();
+            }
+        }
+        this.protectedCount.set(0);
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    private Shard shard(Block block) {
+        return this.shards[BlockKeys.regionShard(block.getX() >> 4, block.getZ() >> 4, SHARDS)];
+    }
+
+    private boolean anyProtected(List<Block> blocks) {
+        if (this.protectedCount.get() == 0) {
+            return false;
+        }
+        for (Block block : blocks) {
+            if (this.isProtected(block)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeProtected(List<Block> blocks) {
+        if (this.protectedCount.get() != 0) {
+            blocks.removeIf(this::isProtected);
+        }
+    }
+
+    /**
+     * Protected blocks of the regions mapped to one shard.
+     */
+    private static final class Shard {
+
+        private final Map<UUID, LongIntMap> worlds = new HashMap<>();
+    }
+
+    // ========================================================================
+    // Event Handlers – These protect the fake button & sign from being destroyed
+    // ========================================================================
+
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void cancelBlockBreak(BlockBreakEvent event) {
+        if (isProtected(event.getBlock())) event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void cancelBlockBurn(BlockBurnEvent event) {
+        if (isProtected(event.getBlock())) event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void cancelBlockExplode(BlockExplodeEvent event) {
+        removeProtected(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void cancelBlockFade(BlockFadeEvent event) {
+        if (isProtected(event.getBlock())) event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void cancelEntityChangeBlock(EntityChangeBlockEvent event) {
+        if (isProtected(event.getBlock())) event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void cancelEntityExplode(EntityExplodeEvent event) {
+        removeProtected(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void cancelPhysics(BlockPhysicsEvent event) {
+        if (isProtected(event.getBlock())) event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void cancelPistonExtend(BlockPistonExtendEvent event) {
+        if (anyProtected(event.getBlocks())) event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void cancelPistonRetract(BlockPistonRetractEvent event) {
+        if (anyProtected(event.getBlocks())) event.setCancelled(true);
+    }
+}
@@ -0,0 +1,34 @@
+package net.nightzy.paysign;
+
+import org.bukkit.block.Block;
+import org.bukkit.block.Sign;
+import org.bukkit.block.data.type.Switch;
+
+/**
+ * Turns the redstone signal of a {@link Trigger} on and off.
+ * The engine performs the block writes and makes sure redstone next to the base
+ * block notices the change. Must be used from the server thread only.
+ */
+public interface PulseEngine {
+
+    /** Name of the {@link BarrierSwapPulseEngine} in the configuration */
+    String BARRIER_SWAP = "barrier-swap";
+
+    /** Name of the {@link DirectPulseEngine} in the configuration */
+    String DIRECT = "direct";
+
+    /**
+     * Replaces the sign with the powered fake button.
+     * @param sign the sign, restored by {@link #powerOff(Sign, Block)}
+     * @param baseBlock block the sign is attached to
+     * @param button powered button facing like the sign
+     */
+    void powerOn(Sign sign, Block baseBlock, Switch button);
+
+    /**
+     * Restores the sign.
+     * @param sign the sign to restore
+     * @param baseBlock block the sign is attached to
+     */
+    void powerOff(Sign sign, Block baseBlock);
+}
@@ -0,0 +1,158 @@
+package net.nightzy.paysign;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.block.Block;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Task scheduler of region threaded servers (Folia).
+ * The region, global region and async schedulers are not part of the Spigot API,
+ * so they are resolved once through reflection.
+ */
+public class RegionTaskScheduler implements TaskScheduler {
+
+    // Present on region threaded servers only
+    private static final String REGIONIZED_SERVER = "io.papermc.paper.threadedregions.RegionizedServer";
+    private static final String SCHEDULER_PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+
+    // Milliseconds per tick, used for the async scheduler which is not tick based
+    private static final long TICK_MILLIS = 50;
+
+    private final Plugin plugin;
+    private final Object regionScheduler;
+    private final Object globalScheduler;
+    private final Object asyncScheduler;
+    private final Method regionRun;
+    private final Method regionRunDelayed;
+    private final Method globalRun;
+    private final Method globalRunAtFixedRate;
+    private final Method globalCancelTasks;
+    private final Method asyncRunNow;
+    private final Method asyncRunAtFixedRate;
+    private final Method asyncCancelTasks;
+
+    /**
+     * Resolves the schedulers of the running server.
+     * @param plugin plugin owning the tasks
+     * @throws ReflectiveOperationException if the server has no region schedulers
+     */
+    public RegionTaskScheduler(Plugin plugin) throws ReflectiveOperationException {
+        this.plugin = Objects.requireNonNull(plugin, "plugin cannot be null");
+        Server server = plugin.getServer();
+
+        Class<?> region = Class.forName(SCHEDULER_PACKAGE + "RegionScheduler");
+        Class<?> global = Class.forName(SCHEDULER_PACKAGE + "GlobalRegionScheduler");
+        Class<?> async = Class.forName(SCHEDULER_PACKAGE + "AsyncScheduler");
+
+        this.regionScheduler = Server.class.getMethod("getRegionScheduler").invoke(server);
+        this.globalScheduler = Server.class.getMethod("getGlobalRegionScheduler").invoke(server);
+        this.asyncScheduler = Server.class.getMethod("getAsyncScheduler").invoke(server);
+
+        this.regionRun = region.getMethod("run", Plugin.class, Location.class, Consumer.class);
+        this.regionRunDelayed = region.getMethod("runDelayed", Plugin.class, Location.class, Consumer.class,
+                long.class);
+        this.globalRun = global.getMethod("run", Plugin.class, Consumer.class);
+        this.globalRunAtFixedRate = global.getMethod("runAtFixedRate", Plugin.class, Consumer.class,
+                long.class, long.class);
+        this.globalCancelTasks = global.getMethod("cancelTasks", Plugin.class);
+        this.asyncRunNow = async.getMethod("runNow", Plugin.class, Consumer.class);
+        this.asyncRunAtFixedRate = async.getMethod("runAtFixedRate", Plugin.class, Consumer.class,
+                long.class, long.class, TimeUnit.class);
+        this.asyncCancelTasks = async.getMethod("cancelTasks", Plugin.class);
+    }
+
+    /**
+     * @return true if the running server is region threaded
+     */
+    public static boolean isSupported() {
+        try {
+            Class.forName(REGIONIZED_SERVER);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isRegionThreaded() {
+        return true;
+    }
+
+    @Override
+    public void runGlobal(Runnable task) {
+        invoke(this.globalRun, this.globalScheduler, this.plugin, consumer(task));
+    }
+
+    @Override
+    public void runGlobalTimer(Runnable task, long delay, long period) {
+        invoke(this.globalRunAtFixedRate, this.globalScheduler, this.plugin, consumer(task),
+                Math.max(1, delay), Math.max(1, period));
+    }
+
+    @Override
+    public void runAt(Block block, Runnable task, long delay) {
+        Location location = block.getLocation();
+        if (delay < 1) {
+            invoke(this.regionRun, this.regionScheduler, this.plugin, location, consumer(task));
+        } else {
+            invoke(this.regionRunDelayed, this.regionScheduler, this.plugin, location, consumer(task), delay);
+        }
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        invoke(this.asyncRunNow, this.asyncScheduler, this.plugin, consumer(task));
+    }
+
+    @Override
+    public void runAsyncTimer(Runnable task, long delay, long period) {
+        invoke(this.asyncRunAtFixedRate, this.asyncScheduler, this.plugin, consumer(task),
+                Math.max(1, delay) * TICK_MILLIS, Math.max(1, period) * TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void cancelAll() {
+        // Region tasks are cancelled by the server when the plugin is disabled
+        invoke(this.globalCancelTasks, this.globalScheduler, this.plugin);
+        invoke(this.asyncCancelTasks, this.asyncScheduler, this.plugin);
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    /**
+     * Adapts a task to the {@code Consumer<ScheduledTask>} taken by the schedulers.
+     */
+    private static Consumer<Object> consumer(Runnable task) {
+        Objects.requireNonNull(task, "task cannot be null");
+        return scheduledTask -> task.run();
+    }
+
+    /**
+     * Invokes a scheduler method, rethrowing its exceptions unchanged.
+     */
+    private static void invoke(Method method, Object scheduler, Object... args) {
+        try {
+            method.invoke(scheduler, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Scheduler failed", cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Scheduler is not accessible", e);
+        }
+    }
+}
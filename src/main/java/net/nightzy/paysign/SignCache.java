@@ -0,0 +1,206 @@
+package net.nightzy.paysign;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.Sign;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Cache of parsed signs keyed by packed block position, partitioned by world and chunk.
+ * Stores the parsed {@link PaySign} or an empty result for signs that are not PaySigns,
+ * so repeated clicks skip the parse and the owner lookup.
+ * <p>
+ * Signs can also be changed without an event, e.g. by other plugins, explosions or pistons,
+ * so every entry remembers the type and lines it was parsed from and is only used for a
+ * snapshot of the sign that still matches them. A used PaySign is bound to that snapshot.
+ * Entries are also invalidated when the sign changes, a block is broken or placed at its
+ * position, or its chunk unloads.
+ * <p>
+ * Safe to use from any thread. The cache is sharded by region like the {@link ProtectionIndex},
+ * and signs are parsed outside of the shard locks.
+ */
+public class SignCache implements Listener {
+
+    // Number of shards, a power of two
+    private static final int SHARDS = 64;
+
+    // Cached parse results per shard, world and chunk
+    private final Shard[] shards = new Shard[SHARDS];
+
+    public SignCache() {
+        for (int i = 0; i < SHARDS; i++) {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    // ============================================================
+    // Cache access
+    // ============================================================
+
+    /**
+     * Gets the cached parse result of the given sign, loading it on a miss or if the sign
+     * has changed since it was cached.
+     * @param sign fresh snapshot of the sign
+     * @param loader parses the given sign, returns empty if it is not a PaySign
+     * @return the PaySign bound to the given snapshot, or empty if the sign is not a PaySign
+     */
+    public Optional<PaySign> get(Sign sign, Function<Sign, Optional<PaySign>> loader) {
+        Objects.requireNonNull(sign, "sign cannot be null");
+        Objects.requireNonNull(loader, "loader cannot be null");
+
+        Block block = sign.getBlock();
+        int chunkX = block.getX() >> 4;
+        int chunkZ = block.getZ() >> 4;
+        long chunkKey = BlockKeys.chunk(chunkX, chunkZ);
+        long key = BlockKeys.pack(block);
+        Material type = sign.getType();
+        String[] lines = sign.getLines();
+        Shard shard = this.shards[BlockKeys.regionShard(chunkX, chunkZ, SHARDS)];
+        synchronized (shard) {
+            Entry entry = shard.entries(block.getWorld().getUID(), chunkKey).get(key);
+            if (entry != null && entry.type == type && Arrays.equals(entry.lines, lines)) {
+                return entry.paySign.map(paySign -> paySign.withSign(sign));
+            }
+        }
+
+        // The block is owned by the calling thread, so no other thread loads the same entry
+        Optional<PaySign> paySign = Objects.requireNonNull(loader.apply(sign), "loader result cannot be null");
+        synchronized (shard) {
+            shard.entries(block.getWorld().getUID(), chunkKey).put(key, new Entry(type, lines, paySign));
+        }
+        return paySign;
+    }
+
+    /**
+     * Invalidates the cached parse result of the given block.
+     * @param block block whose entry is removed
+     */
+    public void invalidate(Block block) {
+        Objects.requireNonNull(block, "block cannot be null");
+
+        int chunkX = block.getX() >> 4;
+        int chunkZ = block.getZ() >> 4;
+        Shard shard = this.shards[BlockKeys.regionShard(chunkX, chunkZ, SHARDS)];
+        synchronized (shard) {
+            LongObjectMap<LongObjectMap<Entry>> chunks = shard.worlds.get(block.getWorld().getUID());
+            if (chunks == null) {
+                return;
+            }
+
+            LongObjectMap<Entry> entries = chunks.get(BlockKeys.chunk(chunkX, chunkZ));
+            if (entries != null) {
+                entries.remove(BlockKeys.pack(block));
+            }
+        }
+    }
+
+    /**
+     * Removes all cached entries.
+     */
+    public void clear() {
+        for (Shard shard : this.shards) {
+            synchronized (shard) {
+                shard.worlds.clear();
+            }
+        }
+    }
+
+    /**
+     * Parse result of a sign together with the type and lines it was parsed from.
+     */
+    private static final class Entry {
+
+        private final Material type;
+        private final String[] lines;
+        private final Optional<PaySign> paySign;
+
+        private Entry(Material type, String[] lines, Optional<PaySign> paySign) {
+            this.type = type;
+            this.lines = lines;
+            this.paySign = paySign;
+        }
+    }
+
+    /**
+     * Cached parse results of the regions mapped to one shard.
+     */
+    private static final class Shard {
+
+        private final Map<UUID, LongObjectMap<LongObjectMap<Entry>>> worlds = new HashMap<>();
+
+        /**
+         * Gets the entries of a chunk, creating them if absent. Must hold the shard lock.
+         */
+        private LongObjectMap<Entry> entries(UUID world, long chunkKey) {
+            LongObjectMap<LongObjectMap<Entry>> chunks = this.worlds.get(world);
+            if (chunks == null) {
+                chunks = new LongObjectMap<>(64);
+                this.worlds.put(world, chunks);
+            }
+
+            LongObjectMap<Entry> entries = chunks.get(chunkKey);
+            if (entries == null) {
+                entries = new LongObjectMap<>(4);
+                chunks.put(chunkKey, entries);
+            }
+            return entries;
+        }
+    }
+
+    // ============================================================
+    // Event handlers
+    // ============================================================
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSignChange(SignChangeEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        Shard shard = this.shards[BlockKeys.regionShard(chunk.getX(), chunk.getZ(), SHARDS)];
+        synchronized (shard) {
+            LongObjectMap<LongObjectMap<Entry>> chunks = shard.worlds.get(event.getWorld().getUID());
+            if (chunks != null) {
+                chunks.remove(BlockKeys.chunk(chunk.getX(), chunk.getZ()));
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        UUID uid = event.getWorld().getUID();
+        for (Shard shard : this.shards) {
+            synchronized (shard) {
+                shard.worlds.remove(uid);
+            }
+        }
+    }
+}
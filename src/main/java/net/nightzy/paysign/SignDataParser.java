@@ -2,6 +2,7 @@ package net.nightzy.paysign;
 
 import java.util.Objects;
 import java.util.Optional;
+import java.util.logging.Logger;
 
 import org.bukkit.ChatColor;
 import org.bukkit.block.Sign;
@@ -13,20 +14,59 @@ import com.google.common.base.Preconditions;
  * Ensures correct format: 
  *   Line 1: Identifier (namespace)
  *   Line 2: Player name
- *   Line 3: Price (numeric, >= 0)
+ *   Line 3: Price (decimal, >= 0, at most as many decimal places as the money scale)
  *   Line 4: Optional delay in seconds (positive integer)
+ * Prices of existing signs written by older versions are rounded to the money scale.
  */
 public class SignDataParser {
 
+    // Logger for parser messages
+    static final Logger logger = Logger.getLogger(SignDataParser.class.getName());
+
+    private final int scale;
+
     /**
-     * Parses a PaySign from the given Sign object.
+     * Creates a parser.
+     * @param scale decimal places of parsed prices, see {@link Money}
+     */
+    public SignDataParser(int scale) {
+        Preconditions.checkArgument(scale >= 0 && scale <= Money.MAX_SCALE, "Invalid money scale: " + scale);
+        this.scale = scale;
+    }
+
+    /**
+     * Parses a PaySign from the given existing Sign object.
+     * Prices that older versions accepted, such as {@code 1.005} or {@code 2.5e2}, are rounded half up to the
+     * money scale with a warning.
      * @param sign Bukkit Sign
      * @return Optional PaySign if parsing succeeded, otherwise empty
      * @throws ParseException if parsing fails due to invalid input
      */
     public Optional<PaySign> parse(Sign sign) throws ParseException {
         Objects.requireNonNull(sign, "sign cannot be null");
-        return parse(sign, sign.getLines());
+        String[] lines = sign.getLines();
+        try {
+            return parse(sign, lines);
+        } catch (ParseException e) {
+            if (e.getLine() != 2 || !(e.getCause() instanceof NumberFormatException)) {
+                throw e;
+            }
+
+            // Written by an older version, round the price
+            Money price;
+            try {
+                price = Money.parseLegacy(lines[2], this.scale);
+            } catch (NumberFormatException ignored) {
+                throw e;
+            }
+            logger.warning("Rounded legacy price " + lines[2] + " of the PaySign at " + sign.getWorld().getName()
+                           + " " + sign.getX() + ", " + sign.getY() + ", " + sign.getZ() + " to " + price
+                           + ", rewrite the sign to keep this price.");
+
+            String[] rounded = lines.clone();
+            rounded[2] = price.toString();
+            return parse(sign, rounded);
+        }
     }
 
     /**
@@ -65,14 +105,14 @@ public class SignDataParser {
             throw new ParseException(2, "No price given");
         }
 
-        double price;
+        Money price;
         try {
-            price = Double.parseDouble(lines[2]);
+            price = Money.parse(lines[2], this.scale);
         } catch (NumberFormatException e) {
             throw new ParseException(2, "Price is not a valid number", e);
         }
 
-        if (price < 0) {
+        if (price.signum() < 0) {
             throw new ParseException(2, "Price cannot be negative");
         }
 
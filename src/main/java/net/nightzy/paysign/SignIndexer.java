@@ -0,0 +1,494 @@
+package net.nightzy.paysign;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Chunk;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Sign;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.WorldSaveEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Background indexer recording PaySigns that were created before the {@link SignRegistry} existed.
+ * <p>
+ * Loaded chunks that have not been indexed yet are queued and their signs are scanned a few
+ * chunks per tick, within a time budget. Valid PaySigns are recorded in the registry and their
+ * owners are resolved and stored in the sign: from the sign, the owner cache or the online
+ * players on the spot, otherwise by a background lookup. The indexed chunks of each world are
+ * saved next to its registry file, so indexing resumes where it stopped after a restart.
+ * Indexing pauses while the server runs below the configured ticks per second.
+ * <p>
+ * On region threaded servers every chunk is scanned by a task on the thread owning it,
+ * one chunk per tick. Safe to use from any thread.
+ */
+public class SignIndexer implements Listener {
+
+    // Logger for indexer messages
+    static final Logger logger = Logger.getLogger(SignIndexer.class.getName());
+
+    // File layout
+    private static final int MAGIC = 0x50534958; // "PSIX"
+    private static final int VERSION = 1;
+    private static final String FILE_EXTENSION = ".indexed";
+
+    // Ticks per second of a server that keeps up
+    private static final double MAX_TPS = 20.0;
+
+    // Weight of the latest tick in the average tick duration, about one second of ticks
+    private static final double TICK_WEIGHT = 1.0 / 20;
+
+    // Owners resolved by one background lookup
+    private static final int OWNER_LOOKUP_BATCH = 64;
+
+    private final Path directory;
+    private final Server server;
+    private final TaskScheduler scheduler;
+    private final SignRegistry registry;
+    private final SignDataParser parser;
+    private final OwnerCache ownerCache;
+    private final SignCache signCache;
+
+    // Progress of every world by UUID, and the chunks waiting to be scanned
+    private final Map<UUID, WorldProgress> worlds = new HashMap<>();
+    private final Queue<QueuedChunk> queue = new ArrayDeque<>();
+
+    // Signs whose owner is looked up in the background
+    private final Queue<OwnerLookup> ownerLookups = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean lookingUp = new AtomicBoolean();
+
+    // Average tick duration, measured between calls of tick()
+    private long lastTick;
+    private double tickNanos;
+    private boolean paused;
+    private boolean scanning;
+
+    /**
+     * Creates an indexer.
+     * @param directory directory of the registry files, the progress files are stored next to them
+     * @param server the running server
+     * @param scheduler scheduler running scans and owner lookups
+     * @param registry registry receiving the found PaySigns
+     * @param parser parser recognizing PaySigns
+     * @param ownerCache cache resolving and storing the owners
+     * @param signCache cache of parsed signs, invalidated when an owner is stored
+     */
+    public SignIndexer(Path directory, Server server, TaskScheduler scheduler, SignRegistry registry,
+                       SignDataParser parser, OwnerCache ownerCache, SignCache signCache) {
+        this.directory = Objects.requireNonNull(directory, "directory cannot be null");
+        this.server = Objects.requireNonNull(server, "server cannot be null");
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler cannot be null");
+        this.registry = Objects.requireNonNull(registry, "registry cannot be null");
+        this.parser = Objects.requireNonNull(parser, "parser cannot be null");
+        this.ownerCache = Objects.requireNonNull(ownerCache, "ownerCache cannot be null");
+        this.signCache = Objects.requireNonNull(signCache, "signCache cannot be null");
+    }
+
+    // ============================================================
+    // Indexing
+    // ============================================================
+
+    /**
+     * Queues the loaded chunks of a world that have not been indexed yet, e.g. when the plugin is enabled.
+     * @param world the world
+     */
+    public synchronized void queueLoaded(World world) {
+        Objects.requireNonNull(world, "world cannot be null");
+        for (Chunk chunk : world.getLoadedChunks()) {
+            this.queue(world, chunk.getX(), chunk.getZ());
+        }
+    }
+
+    /**
+     * Scans queued chunks within the given budget. Runs once per tick, on the global region
+     * thread of region threaded servers.
+     * @param maxNanos maximum time to spend, at least one chunk is scanned
+     * @param minTps ticks per second below which indexing pauses
+     */
+    public synchronized void tick(long maxNanos, double minTps) {
+        long start = System.nanoTime();
+        if (this.lastTick != 0) {
+            long duration = start - this.lastTick;
+            this.tickNanos = this.tickNanos == 0
+                    ? duration
+                    : this.tickNanos + (duration - this.tickNanos) * TICK_WEIGHT;
+        }
+        this.lastTick = start;
+
+        this.lookUpOwners();
+        this.paused = this.tps() < minTps;
+        if (this.paused || this.scanning) {
+            return;
+        }
+
+        while (!this.queue.isEmpty()) {
+            QueuedChunk chunk = this.queue.poll();
+            WorldProgress progress = this.worlds.get(chunk.world);
+            World world = this.server.getWorld(chunk.world);
+            if (progress == null || world == null) {
+                continue;
+            }
+            progress.queued.remove(chunk.key, 0);
+            if (progress.indexed.containsKey(chunk.key)) {
+                continue;
+            }
+
+            if (this.scheduler.isRegionThreaded()) {
+                this.scanning = true;
+                this.scheduler.runAt(world.getBlockAt(chunk.x << 4, 0, chunk.z << 4), () -> {
+                    try {
+                        this.scan(world, chunk);
+                    } finally {
+                        synchronized (this) {
+                            this.scanning = false;
+                        }
+                    }
+                }, 0);
+                return;
+            }
+
+            this.scan(world, chunk);
+            if (System.nanoTime() - start >= maxNanos) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Saves the progress of all worlds with newly indexed chunks.
+     */
+    public synchronized void saveAll() {
+        this.worlds.values().forEach(WorldProgress::save);
+    }
+
+    // ============================================================
+    // Progress
+    // ============================================================
+
+    /**
+     * @return number of indexed chunks in all worlds
+     */
+    public synchronized long indexedChunks() {
+        long chunks = 0;
+        for (WorldProgress progress : this.worlds.values()) {
+            chunks += progress.indexed.size();
+        }
+        return chunks;
+    }
+
+    /**
+     * @return number of loaded chunks waiting to be indexed
+     */
+    public synchronized int queuedChunks() {
+        return this.queue.size();
+    }
+
+    /**
+     * @return number of PaySigns recorded by the indexer in all worlds
+     */
+    public synchronized long indexedSigns() {
+        long signs = 0;
+        for (WorldProgress progress : this.worlds.values()) {
+            signs += progress.signs;
+        }
+        return signs;
+    }
+
+    /**
+     * @return true if indexing is paused because the server is running behind
+     */
+    public synchronized boolean isPaused() {
+        return this.paused;
+    }
+
+    /**
+     * @return average ticks per second measured over about the last second
+     */
+    public synchronized double tps() {
+        return this.tickNanos > 0 ? Math.min(MAX_TPS, 1_000_000_000 / this.tickNanos) : MAX_TPS;
+    }
+
+    // ============================================================
+    // Event handlers
+    // ============================================================
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public synchronized void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        this.queue(event.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public synchronized void onWorldSave(WorldSaveEvent event) {
+        WorldProgress progress = this.worlds.get(event.getWorld().getUID());
+        if (progress != null) {
+            progress.save();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public synchronized void onWorldUnload(WorldUnloadEvent event) {
+        WorldProgress progress = this.worlds.remove(event.getWorld().getUID());
+        if (progress != null) {
+            progress.save();
+        }
+    }
+
+    // ============================================================
+    // Scanning
+    // ============================================================
+
+    private void queue(World world, int chunkX, int chunkZ) {
+        WorldProgress progress = this.progress(world);
+        long chunkKey = BlockKeys.chunk(chunkX, chunkZ);
+        if (!progress.indexed.containsKey(chunkKey) && !progress.queued.containsKey(chunkKey)) {
+            progress.queued.put(chunkKey, 1, 0);
+            this.queue.add(new QueuedChunk(world.getUID(), chunkX, chunkZ, chunkKey));
+        }
+    }
+
+    /**
+     * Records the PaySigns of a chunk and marks it as indexed. Must be called from the thread owning it.
+     * A chunk that has been unloaded in the meantime is queued again when it loads.
+     */
+    private void scan(World world, QueuedChunk queued) {
+        if (!world.isChunkLoaded(queued.x, queued.z)) {
+            return;
+        }
+
+        int signs = 0;
+        for (BlockState state : world.getChunkAt(queued.x, queued.z).getTileEntities()) {
+            if (state instanceof Sign && this.index((Sign) state)) {
+                signs++;
+            }
+        }
+
+        synchronized (this) {
+            WorldProgress progress = this.progress(world);
+            progress.indexed.put(queued.key, 1, 0);
+            progress.signs += signs;
+            progress.dirty = true;
+        }
+    }
+
+    /**
+     * Records a sign if it is a valid PaySign that is not in the registry yet.
+     * @return true if the sign was recorded
+     */
+    private boolean index(Sign sign) {
+        Optional<PaySign> parsed;
+        try {
+            parsed = this.parser.parse(sign);
+        } catch (SignDataParser.ParseException e) {
+            logger.fine("Not indexing invalid PaySign at " + sign.getLocation() + ": " + e.getText());
+            return false;
+        }
+
+        Block block = sign.getBlock();
+        if (!parsed.isPresent() || this.registry.get(block).isPresent()) {
+            return false;
+        }
+
+        PaySign paySign = parsed.get();
+        this.registry.put(block, paySign);
+
+        // Resolve the owner on the spot if possible, otherwise look it up in the background
+        String ownerName = paySign.getPlayerName();
+        if (!this.ownerCache.read(sign, ownerName).isPresent()) {
+            Optional<UUID> owner = this.ownerCache.cached(ownerName);
+            if (!owner.isPresent()) {
+                Player online = this.server.getPlayerExact(ownerName);
+                owner = online != null ? Optional.of(online.getUniqueId()) : Optional.empty();
+            }
+            if (owner.isPresent()) {
+                this.ownerCache.write(sign, ownerName, owner.get());
+                this.signCache.invalidate(block);
+            } else {
+                this.ownerLookups.add(new OwnerLookup(block, ownerName));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a background lookup of the queued owners unless one is running.
+     */
+    private void lookUpOwners() {
+        if (this.ownerLookups.isEmpty() || !this.lookingUp.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.scheduler.runAsync(() -> {
+            try {
+                for (int i = 0; i < OWNER_LOOKUP_BATCH; i++) {
+                    OwnerLookup lookup = this.ownerLookups.poll();
+                    if (lookup == null) {
+                        break;
+                    }
+                    UUID owner = this.ownerCache.resolve(this.server, lookup.ownerName).getUniqueId();
+                    this.scheduler.runAt(lookup.block, () -> this.storeOwner(lookup.block, lookup.ownerName, owner), 0);
+                }
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Could not resolve PaySign owners.", e);
+            } finally {
+                this.lookingUp.set(false);
+            }
+        });
+    }
+
+    /**
+     * Stores a looked up owner in the sign, unless the sign has changed since it was indexed.
+     */
+    private void storeOwner(Block block, String ownerName, UUID owner) {
+        BlockState state = block.getState();
+        if (state instanceof Sign && ((Sign) state).getLine(1).equals(ownerName)) {
+            this.ownerCache.write((Sign) state, ownerName, owner);
+            this.signCache.invalidate(block);
+        }
+    }
+
+    private WorldProgress progress(World world) {
+        return this.worlds.computeIfAbsent(world.getUID(), uid -> new WorldProgress(world.getName(),
+                this.directory.resolve(uid + FILE_EXTENSION)));
+    }
+
+    // ============================================================
+    // Queue entries
+    // ============================================================
+
+    /**
+     * A loaded chunk waiting to be scanned.
+     */
+    private static final class QueuedChunk {
+
+        private final UUID world;
+        private final int x;
+        private final int z;
+        private final long key;
+
+        private QueuedChunk(UUID world, int x, int z, long key) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+            this.key = key;
+        }
+    }
+
+    /**
+     * An indexed sign whose owner is looked up in the background.
+     */
+    private static final class OwnerLookup {
+
+        private final Block block;
+        private final String ownerName;
+
+        private OwnerLookup(Block block, String ownerName) {
+            this.block = block;
+            this.ownerName = ownerName;
+        }
+    }
+
+    // ============================================================
+    // Per-world progress
+    // ============================================================
+
+    /**
+     * Indexed chunks of a single world and its progress file.
+     * File layout: magic, version, number of recorded signs, chunk count, chunk keys.
+     */
+    private static final class WorldProgress {
+
+        private final String worldName;
+        private final Path file;
+        private final LongIntMap indexed = new LongIntMap(256);
+        private final LongIntMap queued = new LongIntMap(64);
+        private long signs;
+        private boolean dirty;
+
+        private WorldProgress(String worldName, Path file) {
+            this.worldName = worldName;
+            this.file = file;
+            this.read();
+        }
+
+        private void read() {
+            if (!Files.isRegularFile(this.file)) {
+                return;
+            }
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    logger.warning("Ignoring invalid sign indexer file " + this.file);
+                    return;
+                }
+                this.signs = in.readLong();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    this.indexed.put(in.readLong(), 1, 0);
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not read sign indexer progress of " + this.worldName, e);
+                this.indexed.clear();
+                this.signs = 0;
+            }
+        }
+
+        private void save() {
+            if (!this.dirty) {
+                return;
+            }
+
+            try {
+                Files.createDirectories(this.file.getParent());
+                Path temporary = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeLong(this.signs);
+                    out.writeInt(this.indexed.size());
+                    IOException[] failure = new IOException[1];
+                    this.indexed.forEach((chunkKey, value) -> {
+                        try {
+                            out.writeLong(chunkKey);
+                        } catch (IOException e) {
+                            failure[0] = e;
+                        }
+                    });
+                    if (failure[0] != null) {
+                        throw failure[0];
+                    }
+                }
+                Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                this.dirty = false;
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not save sign indexer progress of " + this.worldName, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,759 @@
+package net.nightzy.paysign;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldSaveEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Registry of all PaySigns, partitioned by chunk.
+ * <p>
+ * Each world is persisted in a compact binary file that starts with a directory of its
+ * chunks. Entries of a chunk are read when the chunk loads and released when it unloads,
+ * unless they have unsaved changes. Only the directory of a world is kept in memory
+ * for chunks that are not loaded.
+ * <p>
+ * Files are read and written by a single background thread. Chunk entries are read ahead
+ * when the chunk loads, an access before they arrive reads them directly. Saves take a
+ * snapshot of the changed chunks and write it behind; changes made meanwhile stay unsaved
+ * until the next save. Only the background thread replaces the files.
+ * <p>
+ * Safe to use from any thread, access is serialized on the registry. No file is written
+ * while the lock is held, so the lock is rarely contended.
+ */
+public class SignRegistry implements Listener {
+
+    // Logger for registry messages
+    static final Logger logger = Logger.getLogger(SignRegistry.class.getName());
+
+    // File layout
+    private static final int MAGIC = 0x50535247; // "PSRG"
+    private static final int VERSION = 1;
+    private static final String FILE_EXTENSION = ".dat";
+
+    // How long to wait for pending saves on close
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final Path directory;
+    private final Map<UUID, WorldIndex> worlds = new HashMap<>();
+
+    // Reads and writes the files
+    private final ExecutorService io = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PaySign Sign Registry I/O");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a sign registry.
+     * @param directory directory of the per-world registry files
+     */
+    public SignRegistry(Path directory) {
+        this.directory = Objects.requireNonNull(directory, "directory cannot be null");
+    }
+
+    // ============================================================
+    // Registry access
+    // ============================================================
+
+    /**
+     * Records a PaySign at the given block.
+     * @param block sign block
+     * @param paySign the PaySign on that block
+     */
+    public synchronized void put(Block block, PaySign paySign) {
+        Objects.requireNonNull(block, "block cannot be null");
+        Objects.requireNonNull(paySign, "paySign cannot be null");
+
+        Entry entry = new Entry(block.getX(), block.getY(), block.getZ(), paySign.getPlayerName(),
+                paySign.getPrice(), paySign.getDelay().orElse(0));
+        this.index(block.getWorld()).put(BlockKeys.pack(block), entry);
+    }
+
+    /**
+     * Removes the PaySign at the given block, if any.
+     * @param block sign block
+     */
+    public synchronized void remove(Block block) {
+        Objects.requireNonNull(block, "block cannot be null");
+        this.index(block.getWorld()).remove(BlockKeys.pack(block));
+    }
+
+    /**
+     * Gets the PaySign recorded at the given block.
+     * @param block sign block
+     * @return recorded entry, or empty if there is none
+     */
+    public synchronized Optional<Entry> get(Block block) {
+        Objects.requireNonNull(block, "block cannot be null");
+        return Optional.ofNullable(this.index(block.getWorld()).get(BlockKeys.pack(block)));
+    }
+
+    /**
+     * Passes every PaySign of the world to the consumers on the background thread. Entries of chunks
+     * that are not in memory are read from the file without holding the registry lock, so the calling
+     * thread never waits for the file. Meant for rare operations over the whole world.
+     * @param world world to enumerate
+     * @param loaded receives the entries of loaded chunks
+     * @param unloaded receives the entries of chunks that are not loaded
+     * @param done run on the background thread once every entry has been passed, or right away if the
+     * registry is closed
+     */
+    public void forEachAsync(World world, Consumer<Entry> loaded, Consumer<Entry> unloaded, Runnable done) {
+        Objects.requireNonNull(world, "world cannot be null");
+        Objects.requireNonNull(loaded, "loaded cannot be null");
+        Objects.requireNonNull(unloaded, "unloaded cannot be null");
+        Objects.requireNonNull(done, "done cannot be null");
+        try {
+            this.io.execute(() -> {
+                try {
+                    this.enumerate(world, loaded, unloaded);
+                } finally {
+                    done.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            done.run(); // closed
+        }
+    }
+
+    /**
+     * Loads the entries of chunks that are already loaded, e.g. after a reload.
+     */
+    public synchronized void loadChunks(World world) {
+        Objects.requireNonNull(world, "world cannot be null");
+        WorldIndex index = this.index(world);
+        for (Chunk chunk : world.getLoadedChunks()) {
+            this.load(index, BlockKeys.chunk(chunk.getX(), chunk.getZ()));
+        }
+    }
+
+    /**
+     * Saves all worlds with unsaved changes in the background.
+     */
+    public synchronized void saveAll() {
+        this.worlds.values().forEach(this::save);
+    }
+
+    /**
+     * Saves all worlds and waits for the pending reads and writes to finish.
+     */
+    public void close() {
+        this.saveAll();
+        this.io.shutdown();
+        try {
+            if (!this.io.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warning("Sign registry did not finish saving in time, recent changes may be lost.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ============================================================
+    // Event handlers
+    // ============================================================
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public synchronized void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        this.load(this.index(event.getWorld()), BlockKeys.chunk(chunk.getX(), chunk.getZ()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public synchronized void onChunkUnload(ChunkUnloadEvent event) {
+        WorldIndex index = this.worlds.get(event.getWorld().getUID());
+        if (index != null) {
+            Chunk chunk = event.getChunk();
+            index.unload(BlockKeys.chunk(chunk.getX(), chunk.getZ()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public synchronized void onWorldSave(WorldSaveEvent event) {
+        WorldIndex index = this.worlds.get(event.getWorld().getUID());
+        if (index != null) {
+            this.save(index);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public synchronized void onWorldUnload(WorldUnloadEvent event) {
+        WorldIndex index = this.worlds.remove(event.getWorld().getUID());
+        if (index != null) {
+            this.save(index);
+        }
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    private WorldIndex index(World world) {
+        return this.worlds.computeIfAbsent(world.getUID(), uid -> new WorldIndex(world,
+                this.directory.resolve(uid + FILE_EXTENSION)));
+    }
+
+    /**
+     * Marks a chunk as loaded and reads its entries ahead in the background. Must hold the registry lock.
+     */
+    private void load(WorldIndex index, long chunkKey) {
+        if (!index.load(chunkKey)) {
+            return;
+        }
+        try {
+            this.io.execute(() -> this.readAhead(index, chunkKey));
+        } catch (RejectedExecutionException e) {
+            // Closed, the entries are read when they are first accessed
+        }
+    }
+
+    /**
+     * Reads the entries of a loaded chunk on the background thread, unless they have been read meanwhile.
+     */
+    private void readAhead(WorldIndex index, long chunkKey) {
+        long[] section;
+        synchronized (this) {
+            if (!index.needsRead(chunkKey)) {
+                return;
+            }
+            section = index.sections.get(chunkKey);
+        }
+
+        LongObjectMap<Entry> entries = index.readBehind(section);
+        synchronized (this) {
+            if (index.needsRead(chunkKey)) {
+                index.chunks.put(chunkKey, entries);
+            }
+        }
+    }
+
+    /**
+     * Enumerates the entries of a world on the background thread.
+     */
+    private void enumerate(World world, Consumer<Entry> loaded, Consumer<Entry> unloaded) {
+        WorldIndex index;
+        List<Entry> inLoaded = new ArrayList<>();
+        List<Entry> inUnloaded = new ArrayList<>();
+        LongObjectMap<long[]> stored = new LongObjectMap<>(64);
+        synchronized (this) {
+            index = this.index(world);
+            index.chunks.forEach((chunkKey, entries) -> {
+                List<Entry> target = index.loaded.containsKey(chunkKey) ? inLoaded : inUnloaded;
+                entries.forEach((key, entry) -> target.add(entry));
+            });
+            index.sections.forEach((chunkKey, section) -> {
+                if (!index.chunks.containsKey(chunkKey)) {
+                    stored.put(chunkKey, section);
+                }
+            });
+        }
+        inLoaded.forEach(loaded);
+        inUnloaded.forEach(unloaded);
+
+        // Only this thread replaces the file, so the sections stay valid
+        stored.forEach((chunkKey, section) -> {
+            Consumer<Entry> consumer;
+            synchronized (this) {
+                consumer = index.loaded.containsKey(chunkKey) ? loaded : unloaded;
+            }
+            index.readBehind(section).forEach((key, entry) -> consumer.accept(entry));
+        });
+    }
+
+    /**
+     * Writes the changes of a world in the background. Must hold the registry lock.
+     */
+    private void save(WorldIndex index) {
+        if (index.dirty.isEmpty()) {
+            return;
+        }
+        try {
+            this.io.execute(() -> this.write(index));
+        } catch (RejectedExecutionException e) {
+            this.write(index); // closed, save on the calling thread
+        }
+    }
+
+    /**
+     * Writes a snapshot of a world to its file on the background thread.
+     */
+    private void write(WorldIndex index) {
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = index.snapshot();
+        }
+        if (snapshot == null) {
+            return;
+        }
+
+        Path temporary = index.writeBehind(snapshot);
+        if (temporary == null) {
+            return;
+        }
+        synchronized (this) {
+            index.commit(snapshot, temporary);
+        }
+    }
+
+    // ============================================================
+    // Registry entry
+    // ============================================================
+
+    /**
+     * A PaySign recorded in the registry.
+     */
+    public static final class Entry {
+
+        private final int x;
+        private final int y;
+        private final int z;
+        private final String owner;
+        private final Money price;
+        private final int delay;
+
+        public Entry(int x, int y, int z, String owner, Money price, int delay) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.owner = Objects.requireNonNull(owner, "owner cannot be null");
+            this.price = Objects.requireNonNull(price, "price cannot be null");
+            this.delay = delay;
+        }
+
+        public int getX() {
+            return this.x;
+        }
+
+        public int getY() {
+            return this.y;
+        }
+
+        public int getZ() {
+            return this.z;
+        }
+
+        public String getOwner() {
+            return this.owner;
+        }
+
+        public Money getPrice() {
+            return this.price;
+        }
+
+        /**
+         * @return redstone delay in ticks, 0 if the default delay is used
+         */
+        public int getDelay() {
+            return this.delay;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(this.x);
+            out.writeInt(this.y);
+            out.writeInt(this.z);
+            out.writeUTF(this.owner);
+            out.writeLong(this.price.getMinorUnits());
+            out.writeByte(this.price.getScale());
+            out.writeInt(this.delay);
+        }
+
+        private static Entry read(DataInputStream in) throws IOException {
+            int x = in.readInt();
+            int y = in.readInt();
+            int z = in.readInt();
+            String owner = in.readUTF();
+            Money price;
+            try {
+                price = Money.ofMinor(in.readLong(), in.readUnsignedByte());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid price of sign registry entry at " + x + ", " + y + ", " + z, e);
+            }
+            return new Entry(x, y, z, owner, price, in.readInt());
+        }
+    }
+
+    // ============================================================
+    // Per-world index
+    // ============================================================
+
+    /**
+     * Registry of a single world and its file.
+     * File layout: magic, version, chunk count, directory of (chunk key, offset, length),
+     * followed by one block per chunk holding its entry count and entries.
+     */
+    private static final class WorldIndex {
+
+        private final String worldName;
+        private final Path file;
+
+        // Location of every chunk block in the file
+        private final LongObjectMap<long[]> sections = new LongObjectMap<>(64);
+
+        // Entries of loaded chunks and of chunks with unsaved changes
+        private final LongObjectMap<LongObjectMap<Entry>> chunks = new LongObjectMap<>(64);
+        private final LongIntMap loaded = new LongIntMap(64);
+
+        // Generation of the last unsaved change per chunk
+        private final LongIntMap dirty = new LongIntMap(16);
+        private int generation;
+
+        // Channel of the calling threads, guarded by the registry lock, and of the background thread
+        private FileChannel channel;
+        private FileChannel ioChannel;
+
+        private WorldIndex(World world, Path file) {
+            this.worldName = world.getName();
+            this.file = file;
+            this.readDirectory();
+        }
+
+        private void put(long key, Entry entry) {
+            long chunkKey = BlockKeys.chunkOf(key);
+            this.entries(chunkKey).put(key, entry);
+            this.dirty.put(chunkKey, ++this.generation, 0);
+        }
+
+        private void remove(long key) {
+            long chunkKey = BlockKeys.chunkOf(key);
+            if (this.entries(chunkKey).remove(key) != null) {
+                this.dirty.put(chunkKey, ++this.generation, 0);
+            }
+        }
+
+        private Entry get(long key) {
+            long chunkKey = BlockKeys.chunkOf(key);
+            LongObjectMap<Entry> entries = this.needsRead(chunkKey)
+                    ? this.entries(chunkKey) // not read ahead yet
+                    : this.chunks.get(chunkKey);
+            return entries != null ? entries.get(key) : null;
+        }
+
+        /**
+         * Returns the entries of a chunk, reading them from the file if needed.
+         */
+        private LongObjectMap<Entry> entries(long chunkKey) {
+            LongObjectMap<Entry> entries = this.chunks.get(chunkKey);
+            if (entries == null) {
+                entries = this.read(chunkKey);
+                this.chunks.put(chunkKey, entries);
+            }
+            return entries;
+        }
+
+        /**
+         * Marks a chunk as loaded.
+         * @return true if its entries need to be read
+         */
+        private boolean load(long chunkKey) {
+            this.loaded.put(chunkKey, 1, 0);
+            return this.needsRead(chunkKey);
+        }
+
+        /**
+         * @return true if the chunk is loaded and its entries are in the file but not in memory
+         */
+        private boolean needsRead(long chunkKey) {
+            return this.loaded.containsKey(chunkKey) && this.sections.containsKey(chunkKey)
+                   && !this.chunks.containsKey(chunkKey);
+        }
+
+        private void unload(long chunkKey) {
+            this.loaded.remove(chunkKey, 0);
+            if (!this.dirty.containsKey(chunkKey)) {
+                this.chunks.remove(chunkKey);
+            }
+        }
+
+        // ------------------------------------------------------------
+        // Persistence
+        // ------------------------------------------------------------
+
+        private void readDirectory() {
+            if (!Files.isRegularFile(this.file)) {
+                return;
+            }
+
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(this.file))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    logger.warning("Ignoring invalid sign registry file " + this.file);
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long chunkKey = in.readLong();
+                    long offset = in.readLong();
+                    long length = in.readInt();
+                    this.sections.put(chunkKey, new long[]{offset, length});
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not read sign registry of " + this.worldName, e);
+                this.sections.clear();
+            }
+        }
+
+        /**
+         * Reads the entries of a chunk on the calling thread. Must hold the registry lock.
+         */
+        private LongObjectMap<Entry> read(long chunkKey) {
+            long[] section = this.sections.get(chunkKey);
+            if (section == null) {
+                return new LongObjectMap<>(4);
+            }
+
+            try {
+                if (this.channel == null) {
+                    this.channel = FileChannel.open(this.file, StandardOpenOption.READ);
+                }
+                return this.deserialize(readSection(this.channel, section));
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not read sign registry chunk of " + this.worldName, e);
+                return new LongObjectMap<>(4);
+            }
+        }
+
+        /**
+         * Reads the entries of a chunk section on the background thread.
+         */
+        private LongObjectMap<Entry> readBehind(long[] section) {
+            try {
+                return this.deserialize(readSection(this.ioChannel(), section));
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not read sign registry chunk of " + this.worldName, e);
+                return new LongObjectMap<>(4);
+            }
+        }
+
+        private LongObjectMap<Entry> deserialize(byte[] bytes) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            int count = in.readInt();
+            LongObjectMap<Entry> entries = new LongObjectMap<>(count);
+            for (int i = 0; i < count; i++) {
+                Entry entry = Entry.read(in);
+                entries.put(BlockKeys.pack(entry.x, entry.y, entry.z), entry);
+            }
+            return entries;
+        }
+
+        private static byte[] readSection(FileChannel channel, long[] section) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) section[1]);
+            long position = section[0];
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of sign registry file");
+                }
+                position += read;
+            }
+            return buffer.array();
+        }
+
+        private FileChannel ioChannel() throws IOException {
+            if (this.ioChannel == null) {
+                this.ioChannel = FileChannel.open(this.file, StandardOpenOption.READ);
+            }
+            return this.ioChannel;
+        }
+
+        /**
+         * Takes a snapshot of the unsaved changes. Must hold the registry lock.
+         * Chunks in memory are serialized, the others are copied from the old file when it is written.
+         * @return the snapshot, or null if there are no unsaved changes
+         */
+        private Snapshot snapshot() {
+            if (this.dirty.isEmpty()) {
+                return null;
+            }
+
+            Snapshot snapshot = new Snapshot();
+            this.sections.forEach((chunkKey, section) -> {
+                if (!this.chunks.containsKey(chunkKey)) {
+                    snapshot.copied.put(chunkKey, section);
+                }
+            });
+            this.chunks.forEach((chunkKey, entries) -> {
+                if (!entries.isEmpty()) {
+                    snapshot.serialized.put(chunkKey, serialize(entries));
+                }
+            });
+            this.dirty.forEach(snapshot.generations::put);
+            return snapshot;
+        }
+
+        /**
+         * Writes a snapshot to a temporary file on the background thread.
+         * @return the temporary file, or null if it could not be written
+         */
+        private Path writeBehind(Snapshot snapshot) {
+            try {
+                // Collect every chunk block
+                List<Long> keys = new ArrayList<>();
+                List<byte[]> blocks = new ArrayList<>();
+                IOException[] failure = new IOException[1];
+
+                snapshot.copied.forEach((chunkKey, section) -> {
+                    if (failure[0] != null) {
+                        return;
+                    }
+                    try {
+                        byte[] block = readSection(this.ioChannel(), section);
+                        keys.add(chunkKey);
+                        blocks.add(block);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                snapshot.serialized.forEach((chunkKey, block) -> {
+                    keys.add(chunkKey);
+                    blocks.add(block);
+                });
+
+                // Write directory and blocks to a temporary file
+                Files.createDirectories(this.file.getParent());
+                Path temporary = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+                long offset = 12L + keys.size() * 20L;
+
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(keys.size());
+                    for (int i = 0; i < keys.size(); i++) {
+                        long chunkKey = keys.get(i);
+                        int length = blocks.get(i).length;
+                        out.writeLong(chunkKey);
+                        out.writeLong(offset);
+                        out.writeInt(length);
+                        snapshot.written.put(chunkKey, new long[]{offset, length});
+                        offset += length;
+                    }
+                    for (byte[] block : blocks) {
+                        out.write(block);
+                    }
+                }
+
+                if (this.ioChannel != null) {
+                    this.ioChannel.close();
+                    this.ioChannel = null;
+                }
+                return temporary;
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not save sign registry of " + this.worldName, e);
+                return null;
+            }
+        }
+
+        /**
+         * Replaces the file with the written snapshot. Must hold the registry lock.
+         * Changes made after the snapshot stay unsaved.
+         */
+        private void commit(Snapshot snapshot, Path temporary) {
+            try {
+                this.closeChannel();
+                Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not save sign registry of " + this.worldName, e);
+                return;
+            }
+
+            this.sections.clear();
+            snapshot.written.forEach(this.sections::put);
+            snapshot.generations.forEach((chunkKey, generation) -> {
+                if (this.dirty.get(chunkKey, 0) == generation) {
+                    this.dirty.remove(chunkKey, 0);
+                }
+            });
+
+            // Release chunks that were only kept because of unsaved changes
+            List<Long> released = new ArrayList<>();
+            this.chunks.forEach((chunkKey, entries) -> {
+                if (!this.loaded.containsKey(chunkKey) && !this.dirty.containsKey(chunkKey)) {
+                    released.add(chunkKey);
+                }
+            });
+            released.forEach(this.chunks::remove);
+
+            logger.fine("Saved " + snapshot.written.size() + " sign registry chunks of " + this.worldName);
+        }
+
+        private static byte[] serialize(LongObjectMap<Entry> entries) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + entries.size() * 40);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(entries.size());
+                IOException[] failure = new IOException[1];
+                entries.forEach((key, entry) -> {
+                    try {
+                        entry.write(out);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not serialize sign registry chunk", e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private void closeChannel() throws IOException {
+            if (this.channel != null) {
+                this.channel.close();
+                this.channel = null;
+            }
+        }
+    }
+
+    /**
+     * Unsaved state of a world, taken under the registry lock and written by the background thread.
+     */
+    private static final class Snapshot {
+
+        // Chunk blocks to copy from the old file, and serialized chunks in memory
+        private final LongObjectMap<long[]> copied = new LongObjectMap<>(64);
+        private final LongObjectMap<byte[]> serialized = new LongObjectMap<>(64);
+
+        // Generations of the changes contained in the snapshot
+        private final LongIntMap generations = new LongIntMap(16);
+
+        // Location of every chunk block in the written file
+        private final LongObjectMap<long[]> written = new LongObjectMap<>(64);
+    }
+}
@@ -0,0 +1,71 @@
+package net.nightzy.paysign;
+
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.block.Block;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Schedules plugin tasks on the thread that owns the affected state.
+ * On classic servers every synchronous task runs on the server thread. On region
+ * threaded servers (Folia) block tasks run on the thread of the region owning the
+ * block's chunk, and global tasks on the global region thread.
+ * All delays and periods are in ticks; a delay below one tick runs in the next tick.
+ */
+public interface TaskScheduler {
+
+    /**
+     * Creates the scheduler matching the running server.
+     * @param plugin plugin owning the tasks
+     * @return a region scheduler on Folia, otherwise a Bukkit scheduler
+     */
+    static TaskScheduler create(Plugin plugin) {
+        Objects.requireNonNull(plugin, "plugin cannot be null");
+        if (RegionTaskScheduler.isSupported()) {
+            try {
+                return new RegionTaskScheduler(plugin);
+            } catch (ReflectiveOperationException e) {
+                Logger.getLogger(TaskScheduler.class.getName())
+                        .log(Level.SEVERE, "Could not use the region schedulers, using the Bukkit scheduler.", e);
+            }
+        }
+        return new BukkitTaskScheduler(plugin);
+    }
+
+    /**
+     * @return true if blocks in different regions are ticked by different threads
+     */
+    boolean isRegionThreaded();
+
+    /**
+     * Runs a task on the server thread, or the global region thread.
+     */
+    void runGlobal(Runnable task);
+
+    /**
+     * Runs a task repeatedly on the server thread, or the global region thread.
+     */
+    void runGlobalTimer(Runnable task, long delay, long period);
+
+    /**
+     * Runs a task after the given delay on the thread owning the block.
+     */
+    void runAt(Block block, Runnable task, long delay);
+
+    /**
+     * Runs a task off the server threads.
+     */
+    void runAsync(Runnable task);
+
+    /**
+     * Runs a task repeatedly off the server threads.
+     */
+    void runAsyncTimer(Runnable task, long delay, long period);
+
+    /**
+     * Cancels all tasks of the plugin.
+     */
+    void cancelAll();
+}
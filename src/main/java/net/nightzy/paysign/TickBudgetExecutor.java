@@ -0,0 +1,146 @@
+package net.nightzy.paysign;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * FIFO queue of work that is run with a budget per tick.
+ * Every tick the queued elements are handed to the handler in submission order until
+ * the operation or time budget of the tick is used up; the rest is carried over to the
+ * next tick. At least one element is run per tick, so the queue always makes progress.
+ * The time elements spent in the queue is recorded in a {@link LatencyHistogram}.
+ * Not thread-safe, must be used from the server thread only.
+ *
+ * @param <T> type of the queued elements
+ */
+public class TickBudgetExecutor<T> {
+
+    // Logger for handler failures
+    private static final Logger logger = Logger.getLogger(TickBudgetExecutor.class.getName());
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Consumer<? super T> handler;
+    private final LatencyHistogram queueDelay;
+
+    // Circular buffer of queued elements and their submission time
+    private Object[] elements = new Object[INITIAL_CAPACITY];
+    private long[] submittedAt = new long[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    /**
+     * Creates an executor.
+     * @param handler runs a queued element
+     * @param queueDelay receives the time elements spent in the queue
+     */
+    public TickBudgetExecutor(Consumer<? super T> handler, LatencyHistogram queueDelay) {
+        this.handler = Objects.requireNonNull(handler, "handler cannot be null");
+        this.queueDelay = Objects.requireNonNull(queueDelay, "queueDelay cannot be null");
+    }
+
+    // ============================================================
+    // Queueing
+    // ============================================================
+
+    /**
+     * Queues an element to be run in this or a later tick.
+     * @param element element to run
+     */
+    public void submit(T element) {
+        Objects.requireNonNull(element, "element cannot be null");
+        if (this.size == this.elements.length) {
+            this.grow();
+        }
+        int index = (this.head + this.size) & (this.elements.length - 1);
+        this.elements[index] = element;
+        this.submittedAt[index] = System.nanoTime();
+        this.size++;
+    }
+
+    /**
+     * Runs queued elements within the given budget.
+     * @param maxOperations maximum number of elements to run, 0 for no limit
+     * @param maxNanos maximum time to spend, 0 for no limit
+     * @return number of elements run
+     */
+    public int run(int maxOperations, long maxNanos) {
+        long start = System.nanoTime();
+        int operations = 0;
+        while (this.size > 0) {
+            if (operations > 0) {
+                if (maxOperations > 0 && operations >= maxOperations) {
+                    break;
+                }
+                if (maxNanos > 0 && System.nanoTime() - start >= maxNanos) {
+                    break;
+                }
+            }
+
+            T element = this.poll();
+            operations++;
+            try {
+                this.handler.accept(element);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Handler failed for " + element, e);
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Removes all queued elements and passes them to the consumer in submission order.
+     * @param consumer receives the queued elements
+     */
+    public void drain(Consumer<? super T> consumer) {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+        while (this.size > 0) {
+            consumer.accept(this.poll());
+        }
+    }
+
+    // ============================================================
+    // Queries
+    // ============================================================
+
+    /**
+     * @return number of queued elements
+     */
+    public int size() {
+        return this.size;
+    }
+
+    // ============================================================
+    // Internals
+    // ============================================================
+
+    @SuppressWarnings("unchecked")
+    private T poll() {
+        int index = this.head;
+        T element = (T) this.elements[index];
+        this.queueDelay.recordSince(this.submittedAt[index]);
+        this.elements[index] = null;
+        this.head = (index + 1) & (this.elements.length - 1);
+        this.size--;
+        return element;
+    }
+
+    /**
+     * Doubles the capacity, moving the queued elements to the start of the new buffer.
+     */
+    private void grow() {
+        int capacity = this.elements.length;
+        Object[] elements = new Object[capacity << 1];
+        long[] submittedAt = new long[capacity << 1];
+        int tail = capacity - this.head;
+        System.arraycopy(this.elements, this.head, elements, 0, tail);
+        System.arraycopy(this.elements, 0, elements, tail, this.head);
+        System.arraycopy(this.submittedAt, this.head, submittedAt, 0, tail);
+        System.arraycopy(this.submittedAt, 0, submittedAt, tail, this.head);
+        this.elements = elements;
+        this.submittedAt = submittedAt;
+        this.head = 0;
+    }
+}
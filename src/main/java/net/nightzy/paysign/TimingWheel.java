@@ -0,0 +1,254 @@
+package net.nightzy.paysign;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hierarchical timing wheel driven by a single repeating tick task.
+ * Elements are bucketed by their expiry tick; scheduling and cancelling are O(1),
+ * and expired elements are handed to the expiry handler in order of their deadline.
+ * Not thread-safe, must be used from the server thread only.
+ *
+ * @param <T> type of the scheduled elements
+ */
+public class TimingWheel<T> {
+
+    // Logger for expiry handler failures
+    private static final Logger logger = Logger.getLogger(TimingWheel.class.getName());
+
+    // Each level has 2^WHEEL_BITS slots; level N slot spans 2^(WHEEL_BITS * N) ticks
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    // Largest delay that fits in the wheel (~9.7 days), longer timeouts are re-placed on cascade
+    private static final long MAX_DELAY = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final Timeout<T>[][] wheel;
+    private final Consumer<? super T> expiryHandler;
+
+    private long currentTick;
+    private int size;
+
+    /**
+     * Creates a timing wheel.
+     * @param expiryHandler called with every element whose deadline has been reached
+     */
+    public TimingWheel(Consumer<? super T> expiryHandler) {
+        this.expiryHandler = Objects.requireNonNull(expiryHandler, "expiryHandler cannot be null");
+        this.wheel = newWheel();
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                this.wheel[level][slot] = Timeout.sentinel();
+            }
+        }
+    }
+
+    // ============================================================
+    // Scheduling
+    // ============================================================
+
+    /**
+     * Schedules an element to expire after the given delay.
+     * A delay below one tick expires on the next tick.
+     * @param element element to schedule
+     * @param delay delay in ticks
+     * @return handle that can be used to cancel the timeout
+     */
+    public Timeout<T> schedule(T element, long delay) {
+        Objects.requireNonNull(element, "element cannot be null");
+        Timeout<T> timeout = new Timeout<>(element, this.currentTick + Math.max(1, delay));
+        this.place(timeout);
+        this.size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a pending timeout.
+     * @param timeout handle returned by {@link #schedule(Object, long)}
+     * @return true if the timeout was pending and is now cancelled
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        Objects.requireNonNull(timeout, "timeout cannot be null");
+        if (!timeout.isPending()) {
+            return false;
+        }
+        timeout.unlink();
+        this.size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel by one tick and expires all elements due in this tick.
+     */
+    public void advance() {
+        long tick = ++this.currentTick;
+
+        // Cascade higher levels whose slot boundary has been reached
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = WHEEL_BITS * level;
+            if ((tick & ((1L << shift) - 1)) != 0) {
+                break;
+            }
+            this.cascade(this.wheel[level][(int) ((tick >>> shift) & WHEEL_MASK)]);
+        }
+
+        Timeout<T> bucket = this.wheel[0][(int) (tick & WHEEL_MASK)];
+        Timeout<T> timeout;
+        while ((timeout = bucket.next) != bucket) {
+            timeout.unlink();
+            if (timeout.deadline > tick) {
+                // Overflowed timeout that is still not due
+                this.place(timeout);
+                continue;
+            }
+            this.size--;
+            try {
+                this.expiryHandler.accept(timeout.element);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Expiry handler failed for " + timeout.element, e);
+            }
+        }
+    }
+
+    /**
+     * Removes all pending elements and passes them to the consumer in order of their deadline.
+     * @param consumer receives the pending elements
+     */
+    public void drain(Consumer<? super T> consumer) {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+
+        List<Timeout<T>> pending = new ArrayList<>(this.size);
+        for (Timeout<T>[] level : this.wheel) {
+            for (Timeout<T> bucket : level) {
+                Timeout<T> timeout;
+                while ((timeout = bucket.next) != bucket) {
+                    timeout.unlink();
+                    pending.add(timeout);
+                }
+            }
+        }
+        this.size = 0;
+
+        pending.sort(Comparator.comparingLong(timeout -> timeout.deadline));
+        pending.forEach(timeout -> consumer.accept(timeout.element));
+    }
+
+    // ============================================================
+    // Queries
+    // ============================================================
+
+    /**
+     * @return number of pending elements
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return number of ticks the wheel has advanced
+     */
+    public long currentTick() {
+        return this.currentTick;
+    }
+
+    // ============================================================
+    // Internals
+    // ============================================================
+
+    // Generic arrays cannot be created, the unchecked cast is confined here
+    @SuppressWarnings("unchecked")
+    private static <T> Timeout<T>[][] newWheel() {
+        return (Timeout<T>[][]) new Timeout<?>[LEVELS][WHEEL_SIZE];
+    }
+
+    private void place(Timeout<T> timeout) {
+        long delta = Math.min(Math.max(timeout.deadline - this.currentTick, 0), MAX_DELAY);
+        long slotTick = this.currentTick + delta;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+
+        int slot = (int) ((slotTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        timeout.linkBefore(this.wheel[level][slot]);
+    }
+
+    private void cascade(Timeout<T> bucket) {
+        Timeout<T> timeout;
+        while ((timeout = bucket.next) != bucket) {
+            timeout.unlink();
+            this.place(timeout);
+        }
+    }
+
+    // ============================================================
+    // Timeout handle
+    // ============================================================
+
+    /**
+     * Handle of a scheduled element, linked into a wheel bucket while pending.
+     */
+    public static final class Timeout<T> {
+
+        private final T element;
+        private final long deadline;
+
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T element, long deadline) {
+            this.element = element;
+            this.deadline = deadline;
+        }
+
+        private static <T> Timeout<T> sentinel() {
+            Timeout<T> sentinel = new Timeout<>(null, Long.MAX_VALUE);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        /**
+         * @return the scheduled element
+         */
+        public T getElement() {
+            return this.element;
+        }
+
+        /**
+         * @return tick at which the element expires
+         */
+        public long getDeadline() {
+            return this.deadline;
+        }
+
+        /**
+         * @return true if the element has neither expired nor been cancelled
+         */
+        public boolean isPending() {
+            return this.next != null;
+        }
+
+        private void linkBefore(Timeout<T> bucket) {
+            this.prev = bucket.prev;
+            this.next = bucket;
+            bucket.prev.next = this;
+            bucket.prev = this;
+        }
+
+        private void unlink() {
+            this.prev.next = this.next;
+            this.next.prev = this.prev;
+            this.prev = null;
+            this.next = null;
+        }
+    }
+}
@@ -11,24 +11,16 @@ import org.bukkit.SoundCategory;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.block.Sign;
-import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.type.Switch;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
-import org.bukkit.event.HandlerList;
-import org.bukkit.event.Listener;
-import org.bukkit.event.block.*;
-import org.bukkit.event.entity.EntityChangeBlockEvent;
-import org.bukkit.event.entity.EntityExplodeEvent;
-import org.bukkit.plugin.Plugin;
 
 /**
  * This class represents a trigger mechanism for {@link PaySign}s.
- * It simulates a button press by replacing the sign block data temporarily.
- * The trigger also listens to events that could destroy or modify the fake block
- * and cancels them to protect the PaySign.
+ * It simulates a button press by replacing the sign block data temporarily,
+ * the block writes and neighbour updates are performed by a {@link PulseEngine}.
+ * While active, the sign and its base block are registered in the {@link ProtectionIndex}
+ * so that events which could destroy or modify the fake block are cancelled.
  */
-public class Trigger implements Listener, Predicate<Block> {
+public class Trigger implements Predicate<Block> {
 
     // Logger for debug information
     private static final Logger logger = Logger.getLogger(Trigger.class.getName());
@@ -44,13 +36,28 @@ public class Trigger implements Listener, Predicate<Block> {
     private static final Sound SOUND_OFF = Sound.BLOCK_WOODEN_BUTTON_CLICK_OFF;
     private static final float SOUND_VOLUME = 0.3F;
 
-    private final Plugin plugin;
+    private final ProtectionIndex protectionIndex;
+    private final PulseEngine pulseEngine;
     private final PaySign paySign;
+    private final int delay;
+    private final long clickedAt;
     private Block baseBlock;
 
-    public Trigger(Plugin plugin, PaySign paySign) {
-        this.plugin = Objects.requireNonNull(plugin, "plugin cannot be null");
+    /**
+     * Creates a trigger.
+     * @param protectionIndex index protecting the fake button while active
+     * @param pulseEngine engine turning the redstone signal on and off
+     * @param paySign the PaySign to trigger
+     * @param delay ticks the fake button stays pressed
+     * @param clickedAt {@link System#nanoTime()} of the click that caused this trigger
+     */
+    public Trigger(ProtectionIndex protectionIndex, PulseEngine pulseEngine, PaySign paySign, int delay,
+                   long clickedAt) {
+        this.protectionIndex = Objects.requireNonNull(protectionIndex, "protectionIndex cannot be null");
+        this.pulseEngine = Objects.requireNonNull(pulseEngine, "pulseEngine cannot be null");
         this.paySign = Objects.requireNonNull(paySign, "paySign cannot be null");
+        this.delay = delay;
+        this.clickedAt = clickedAt;
     }
 
     /**
@@ -66,6 +73,13 @@ public class Trigger implements Listener, Predicate<Block> {
         return baseBlock != null && baseBlock.equals(block);
     }
 
+    /**
+     * @return true if the trigger has been executed and not flushed yet
+     */
+    public boolean isActive() {
+        return this.baseBlock != null;
+    }
+
     /**
      * @return the PaySign this trigger belongs to
      */
@@ -74,28 +88,55 @@ public class Trigger implements Listener, Predicate<Block> {
     }
 
     /**
-     * Executes the trigger: registers event listeners, creates a fake powered button
-     * on the sign block, plays the activation sound, and updates neighbor physics.
+     * @return ticks the fake button stays pressed
+     */
+    public int getDelay() {
+        return this.delay;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the click that caused this trigger
+     */
+    public long getClickedAt() {
+        return this.clickedAt;
+    }
+
+    /**
+     * Executes the trigger: protects the sign and its base block, powers a fake
+     * button on the sign block and plays the activation sound.
+     * If powering fails, the sign is restored and the blocks are released before the exception is rethrown.
      * @return the created fake button block data
      */
     public Switch execute() {
-        logger.finer("Registering events and executing trigger.");
-
-        // Register this class as an event listener
-        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        logger.finer("Protecting blocks and executing trigger.");
 
         // Store the base block under the sign
         baseBlock = paySign.getBaseBlock();
 
+        // Protect the sign and its base block
+        protectionIndex.protect(paySign.getSign().getBlock());
+        protectionIndex.protect(baseBlock);
+
         // Replace the sign temporarily with a fake button
-        Switch button = createFakeButton();
-        paySign.getSign().getBlock().setBlockData(button);
+        Switch button;
+        try {
+            button = createFakeButton();
+            pulseEngine.powerOn(paySign.getSign(), baseBlock, button);
+        } catch (RuntimeException e) {
+            try {
+                pulseEngine.powerOff(paySign.getSign(), baseBlock);
+            } catch (RuntimeException restoreFailure) {
+                e.addSuppressed(restoreFailure);
+            } finally {
+                protectionIndex.release(paySign.getSign().getBlock());
+                protectionIndex.release(baseBlock);
+                baseBlock = null;
+            }
+            throw e;
+        }
 
         // Play "button pressed" sound
         playSound(SOUND_ON, 0.6F);
-
-        // Trigger neighbor updates for physics
-        updateBaseBlockNeighbors();
         return button;
     }
 
@@ -130,97 +171,22 @@ public class Trigger implements Listener, Predicate<Block> {
     }
 
     /**
-     * Forces Minecraft to re-check block neighbors by temporarily replacing
-     * the base block with another block type and restoring it.
-     */
-    private void updateBaseBlockNeighbors() {
-        BlockData realBlockData = baseBlock.getBlockData();
-
-        // Choose a dummy material to trigger physics
-        Material dummy = realBlockData.getMaterial().equals(Material.BARRIER)
-                ? Material.STONE : Material.BARRIER;
-
-        // Set dummy block (no physics), then restore real block (with physics)
-        baseBlock.setBlockData(dummy.createBlockData(), false);
-        baseBlock.setBlockData(realBlockData, true);
-    }
-
-    /**
-     * Restores the sign, plays the deactivation sound, and unregisters this listener.
+     * Restores the sign, plays the deactivation sound, and releases the protected blocks.
      */
     public void flush() {
-        logger.fine("Flushing trigger: restoring sign and unregistering listener.");
+        logger.fine("Flushing trigger: restoring sign and releasing protection.");
         try {
             // Restore the original sign
-            paySign.getSign().update(true, true);
+            pulseEngine.powerOff(paySign.getSign(), baseBlock);
 
             // Play "button released" sound
             playSound(SOUND_OFF, 0.5F);
-
-            // Update block physics again
-            updateBaseBlockNeighbors();
         } finally {
-            HandlerList.unregisterAll(this);
-            baseBlock = null;
-        }
-    }
-
-    // ========================================================================
-    // Event Handlers – These protect the fake button & sign from being destroyed
-    // ========================================================================
-
-    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
-    public void cancelBlockBreak(BlockBreakEvent event) {
-        if (test(event.getBlock())) event.setCancelled(true);
-    }
-
-    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
-    public void cancelBlockBurn(BlockBurnEvent event) {
-        if (test(event.getBlock())) event.setCancelled(true);
-    }
-
-    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
-    public void cancelBlockExplode(BlockExplodeEvent event) {
-        event.blockList().removeIf(this);
-    }
-
-    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
-    public void cancelBlockFade(BlockFadeEvent event) {
-        if (test(event.getBlock())) event.setCancelled(true);
-    }
-
-    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
-    public void cancelEntityChangeBlock(EntityChangeBlockEvent event) {
-        if (test(event.getBlock())) event.setCancelled(true);
-    }
-
-    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
-    public void cancelEntityExplode(EntityExplodeEvent event) {
-        event.blockList().removeIf(this);
-    }
-
-    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
-    public void cancelPhysics(BlockPhysicsEvent event) {
-        if (test(event.getBlock())) event.setCancelled(true);
-    }
-
-    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
-    public void cancelPistonExtend(BlockPistonExtendEvent event) {
-        for (Block block : event.getBlocks()) {
-            if (test(block)) {
-                event.setCancelled(true);
-                break;
-            }
-        }
-    }
-
-    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
-    public void cancelPistonRetract(BlockPistonRetractEvent event) {
-        for (Block block : event.getBlocks()) {
-            if (test(block)) {
-                event.setCancelled(true);
-                break;
+            if (baseBlock != null) {
+                protectionIndex.release(paySign.getSign().getBlock());
+                protectionIndex.release(baseBlock);
             }
+            baseBlock = null;
         }
     }
 }
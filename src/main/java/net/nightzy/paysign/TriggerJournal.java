@@ -0,0 +1,573 @@
+package net.nightzy.paysign;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.bukkit.Chunk;
+import org.bukkit.DyeColor;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.Tag;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Sign;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+
+/**
+ * Memory-mapped journal of the active {@link Trigger}s.
+ * <p>
+ * While a trigger is active its sign block is replaced by a fake button, and only the sign
+ * snapshot held in memory can restore it. Each active trigger therefore occupies a fixed-size
+ * slot holding the position, block data, text, color and owner of the sign, and the tick its
+ * reset was due. The slot is written when the trigger executes and freed when it is flushed;
+ * both only touch the page cache, which survives a crash of the server process.
+ * <p>
+ * Slots left over by a crash are loaded on open and restored chunk by chunk: those of chunks
+ * that are already loaded by {@link #restoreLoaded(Collection, TaskScheduler)}, the others as
+ * their chunks load. A sign is only restored while its fake button is still in place.
+ */
+public class TriggerJournal implements Listener, Closeable {
+
+    // Logger for journal messages
+    static final Logger logger = Logger.getLogger(TriggerJournal.class.getName());
+
+    // ============================================================
+    // File layout
+    // ============================================================
+
+    private static final int RECORD_SIZE = 1024;
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // Slot states
+    private static final byte FREE = 0;
+    private static final byte ACTIVE = 1;
+
+    // Header (slot 0)
+    private static final long MAGIC = 0x5041595349474E54L; // "PAYSIGNT"
+    private static final int VERSION = 1;
+    private static final int HEADER_MAGIC = 8;
+    private static final int HEADER_VERSION = 16;
+    private static final int HEADER_CAPACITY = 20;
+
+    // Record (slots 1..capacity)
+    private static final int CRC = 0;
+    private static final int STATE = 4;
+    private static final int COLOR = 5;
+    private static final int X = 8;
+    private static final int Y = 12;
+    private static final int Z = 16;
+    private static final int EXPIRES_AT = 20;
+    private static final int WORLD_MSB = 32;
+    private static final int WORLD_LSB = 40;
+    private static final int OWNER_MSB = 48;
+    private static final int OWNER_LSB = 56;
+    private static final int OWNER_NAME = 64;
+    private static final int OWNER_NAME_MAX = 31;
+    private static final int BLOCK_DATA = 96;
+    private static final int BLOCK_DATA_MAX = 159;
+    private static final int LINES = 256;
+    private static final int LINE_SIZE = 192;
+    private static final int LINE_MAX = LINE_SIZE - 1;
+    private static final int LINE_COUNT = 4;
+
+    // ============================================================
+    // Fields
+    // ============================================================
+
+    private final Path file;
+    private final Server server;
+    private final OwnerCache ownerCache;
+    private final byte[] scratch = new byte[RECORD_SIZE];
+    private final ByteBuffer scratchBuffer = ByteBuffer.wrap(this.scratch);
+    private final CRC32 crc = new CRC32();
+
+    private MappedByteBuffer buffer;
+    private int capacity;
+
+    // Slots of the active triggers, and a stack of the free slots
+    private final Map<Trigger, Integer> slots = new IdentityHashMap<>();
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+
+    // Slots left over by a previous run, by world UUID and chunk key
+    private final Map<UUID, LongObjectMap<List<Entry>>> pending = new HashMap<>();
+    private volatile int pendingCount;
+
+    private TriggerJournal(Path file, Server server, OwnerCache ownerCache) {
+        this.file = file;
+        this.server = server;
+        this.ownerCache = ownerCache;
+    }
+
+    // ============================================================
+    // Factories
+    // ============================================================
+
+    /**
+     * Opens the journal file and loads the triggers left active by a previous run.
+     * @param file the journal file
+     * @param server server used to create the restored block data
+     * @param ownerCache cache writing the owner back into restored signs
+     * @return opened journal
+     * @throws IOException if the journal cannot be read or created
+     */
+    public static TriggerJournal open(Path file, Server server, OwnerCache ownerCache) throws IOException {
+        Objects.requireNonNull(file, "file cannot be null");
+        Objects.requireNonNull(server, "server cannot be null");
+        Objects.requireNonNull(ownerCache, "ownerCache cannot be null");
+        Files.createDirectories(file.toAbsolutePath().getParent());
+
+        TriggerJournal journal = new TriggerJournal(file, server, ownerCache);
+        journal.load();
+        return journal;
+    }
+
+    /**
+     * @return a journal that records nothing
+     */
+    public static TriggerJournal disabled() {
+        return new TriggerJournal(null, null, null);
+    }
+
+    // ============================================================
+    // Active triggers
+    // ============================================================
+
+    /**
+     * Records a trigger that is about to execute. Must be called from the thread owning the sign.
+     * @param trigger the trigger
+     * @param expiresAt tick its reset is due
+     */
+    public synchronized void add(Trigger trigger, long expiresAt) {
+        Objects.requireNonNull(trigger, "trigger cannot be null");
+        if (this.buffer == null || this.slots.containsKey(trigger)) {
+            return;
+        }
+
+        try {
+            if (this.freeCount == 0) {
+                this.grow();
+            }
+            int slot = this.freeSlots[--this.freeCount];
+            this.write(slot, trigger, expiresAt);
+            this.slots.put(trigger, slot);
+        } catch (IOException | RuntimeException e) {
+            this.fail(e);
+        }
+    }
+
+    /**
+     * Frees the slot of a trigger whose sign has been restored.
+     * @param trigger the trigger
+     */
+    public synchronized void remove(Trigger trigger) {
+        Objects.requireNonNull(trigger, "trigger cannot be null");
+        Integer slot = this.slots.remove(trigger);
+        if (slot != null) {
+            this.free(slot);
+        }
+    }
+
+    /**
+     * Flushes the journal and stops recording. Slots of triggers that were not flushed are kept.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.buffer != null) {
+            this.buffer.force();
+            this.buffer = null;
+        }
+    }
+
+    // ============================================================
+    // Recovery
+    // ============================================================
+
+    /**
+     * @return number of signs left active by a previous run and not restored yet
+     */
+    public int pending() {
+        return this.pendingCount;
+    }
+
+    /**
+     * Schedules the restoration of the left over signs in chunks that are already loaded,
+     * one task per chunk on the thread owning it.
+     * @param worlds the loaded worlds
+     * @param scheduler scheduler running the restoration
+     */
+    public void restoreLoaded(Collection<? extends World> worlds, TaskScheduler scheduler) {
+        Objects.requireNonNull(worlds, "worlds cannot be null");
+        Objects.requireNonNull(scheduler, "scheduler cannot be null");
+        if (this.pendingCount == 0) {
+            return;
+        }
+
+        for (World world : worlds) {
+            List<Entry> firsts = new ArrayList<>();
+            synchronized (this) {
+                LongObjectMap<List<Entry>> chunks = this.pending.get(world.getUID());
+                if (chunks != null) {
+                    chunks.forEach((chunkKey, entries) -> firsts.add(entries.get(0)));
+                }
+            }
+
+            for (Entry first : firsts) {
+                int chunkX = first.x >> 4;
+                int chunkZ = first.z >> 4;
+                if (world.isChunkLoaded(chunkX, chunkZ)) {
+                    scheduler.runAt(world.getBlockAt(first.x, first.y, first.z),
+                            () -> this.restore(world, chunkX, chunkZ), 0);
+                }
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        if (this.pendingCount > 0) {
+            Chunk chunk = event.getChunk();
+            this.restore(event.getWorld(), chunk.getX(), chunk.getZ());
+        }
+    }
+
+    /**
+     * Restores the left over signs of a loaded chunk. Must be called from the thread owning it.
+     */
+    private void restore(World world, int chunkX, int chunkZ) {
+        List<Entry> entries;
+        synchronized (this) {
+            LongObjectMap<List<Entry>> chunks = this.pending.get(world.getUID());
+            entries = chunks != null ? chunks.remove(BlockKeys.chunk(chunkX, chunkZ)) : null;
+            if (entries == null) {
+                return;
+            }
+            if (chunks.isEmpty()) {
+                this.pending.remove(world.getUID());
+            }
+            this.pendingCount -= entries.size();
+        }
+
+        for (Entry entry : entries) {
+            try {
+                this.restore(world, entry);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Could not restore PaySign at " + entry.describe(world), e);
+            }
+        }
+
+        synchronized (this) {
+            entries.forEach(entry -> this.free(entry.slot));
+        }
+    }
+
+    /**
+     * Replaces the fake button of a left over trigger by its sign.
+     */
+    private void restore(World world, Entry entry) {
+        Block block = world.getBlockAt(entry.x, entry.y, entry.z);
+        if (Tag.SIGNS.isTagged(block.getType())) {
+            return; // restored before the slot was freed
+        }
+        if (block.getType() != Material.OAK_BUTTON) {
+            logger.warning("Not restoring PaySign at " + entry.describe(world) + ", the block has been replaced by " +
+                           block.getType() + ".");
+            return;
+        }
+
+        // Replacing the powered button with physics also turns off the signal of the base block
+        BlockData data = this.server.createBlockData(entry.blockData);
+        block.setBlockData(data, true);
+        BlockState state = block.getState();
+        if (!(state instanceof Sign)) {
+            logger.warning("Not restoring PaySign at " + entry.describe(world) + ", invalid sign block data " +
+                           entry.blockData + ".");
+            return;
+        }
+
+        Sign sign = (Sign) state;
+        for (int line = 0; line < LINE_COUNT; line++) {
+            sign.setLine(line, entry.lines[line]);
+        }
+        if (entry.color != null) {
+            sign.setColor(entry.color);
+        }
+        if (entry.owner != null) {
+            this.ownerCache.write(sign, entry.ownerName, entry.owner);
+        } else {
+            sign.update(false, false);
+        }
+        logger.info("Restored PaySign at " + entry.describe(world) + " left active by the previous run" +
+                    " (reset was due at tick " + entry.expiresAt + ").");
+    }
+
+    // ============================================================
+    // Slots
+    // ============================================================
+
+    private void write(int slot, Trigger trigger, long expiresAt) {
+        PaySign paySign = trigger.getPaySign();
+        Sign sign = paySign.getSign();
+        UUID world = sign.getWorld().getUID();
+        DyeColor color = sign.getColor();
+
+        Arrays.fill(this.scratch, (byte) 0);
+        this.scratchBuffer.put(STATE, ACTIVE);
+        this.scratchBuffer.put(COLOR, (byte) (color != null ? color.ordinal() + 1 : 0));
+        this.scratchBuffer.putInt(X, sign.getX());
+        this.scratchBuffer.putInt(Y, sign.getY());
+        this.scratchBuffer.putInt(Z, sign.getZ());
+        this.scratchBuffer.putLong(EXPIRES_AT, expiresAt);
+        this.scratchBuffer.putLong(WORLD_MSB, world.getMostSignificantBits());
+        this.scratchBuffer.putLong(WORLD_LSB, world.getLeastSignificantBits());
+        paySign.getOwnerId().ifPresent(owner -> {
+            this.scratchBuffer.putLong(OWNER_MSB, owner.getMostSignificantBits());
+            this.scratchBuffer.putLong(OWNER_LSB, owner.getLeastSignificantBits());
+        });
+        this.putString(OWNER_NAME, OWNER_NAME_MAX, paySign.getPlayerName());
+        this.putString(BLOCK_DATA, BLOCK_DATA_MAX, sign.getBlockData().getAsString());
+        String[] lines = sign.getLines();
+        for (int line = 0; line < LINE_COUNT; line++) {
+            this.putString(LINES + line * LINE_SIZE, LINE_MAX, line < lines.length ? lines[line] : "");
+        }
+        this.scratchBuffer.putInt(CRC, this.checksum(this.scratch));
+
+        ((Buffer) this.buffer).position(slot * RECORD_SIZE);
+        this.buffer.put(this.scratch);
+    }
+
+    /**
+     * Reads the record in the given slot.
+     * @return the entry, or null if the slot is free or torn
+     */
+    private Entry read(int slot) {
+        ((Buffer) this.buffer).position(slot * RECORD_SIZE);
+        this.buffer.get(this.scratch);
+
+        if (this.scratchBuffer.get(STATE) != ACTIVE
+                || this.scratchBuffer.getInt(CRC) != this.checksum(this.scratch)) {
+            return null;
+        }
+
+        int color = this.scratchBuffer.get(COLOR) & 0xFF;
+        long ownerMsb = this.scratchBuffer.getLong(OWNER_MSB);
+        long ownerLsb = this.scratchBuffer.getLong(OWNER_LSB);
+        String[] lines = new String[LINE_COUNT];
+        for (int line = 0; line < LINE_COUNT; line++) {
+            lines[line] = this.getString(LINES + line * LINE_SIZE);
+        }
+        return new Entry(slot,
+                new UUID(this.scratchBuffer.getLong(WORLD_MSB), this.scratchBuffer.getLong(WORLD_LSB)),
+                this.scratchBuffer.getInt(X),
+                this.scratchBuffer.getInt(Y),
+                this.scratchBuffer.getInt(Z),
+                this.scratchBuffer.getLong(EXPIRES_AT),
+                color > 0 && color <= DyeColor.values().length ? DyeColor.values()[color - 1] : null,
+                ownerMsb == 0 && ownerLsb == 0 ? null : new UUID(ownerMsb, ownerLsb),
+                this.getString(OWNER_NAME),
+                this.getString(BLOCK_DATA),
+                lines);
+    }
+
+    private void free(int slot) {
+        if (this.buffer == null) {
+            return;
+        }
+        this.buffer.put(slot * RECORD_SIZE + STATE, FREE);
+        this.freeSlots[this.freeCount++] = slot;
+    }
+
+    private void fail(Exception e) {
+        logger.log(Level.SEVERE, "Trigger journal failed, active PaySigns are no longer journaled.", e);
+        this.buffer = null;
+    }
+
+    // ============================================================
+    // File handling
+    // ============================================================
+
+    /**
+     * Maps the journal file and loads its active slots.
+     */
+    private void load() throws IOException {
+        ByteBuffer header = this.readHeader();
+        this.capacity = header != null ? header.getInt(HEADER_CAPACITY) : DEFAULT_CAPACITY;
+        this.buffer = this.map(this.capacity);
+        this.freeSlots = new int[this.capacity];
+
+        if (header != null) {
+            // Push the free slots in reverse, so the lowest ones are used first
+            for (int slot = this.capacity; slot >= 1; slot--) {
+                Entry entry = this.read(slot);
+                if (entry == null) {
+                    this.freeSlots[this.freeCount++] = slot;
+                    continue;
+                }
+                LongObjectMap<List<Entry>> chunks =
+                        this.pending.computeIfAbsent(entry.world, world -> new LongObjectMap<>(16));
+                long chunkKey = BlockKeys.chunk(entry.x >> 4, entry.z >> 4);
+                List<Entry> entries = chunks.get(chunkKey);
+                if (entries == null) {
+                    entries = new ArrayList<>();
+                    chunks.put(chunkKey, entries);
+                }
+                entries.add(entry);
+                this.pendingCount++;
+            }
+            if (this.pendingCount > 0) {
+                logger.warning(this.pendingCount + " PaySigns were left active by the previous run," +
+                               " they are restored as their chunks load.");
+            }
+        } else {
+            for (int slot = this.capacity; slot >= 1; slot--) {
+                this.freeSlots[this.freeCount++] = slot;
+            }
+            this.writeHeader();
+        }
+    }
+
+    /**
+     * Doubles the number of slots.
+     */
+    private void grow() throws IOException {
+        int previous = this.capacity;
+        this.capacity = previous * 2;
+        this.buffer = this.map(this.capacity);
+        this.writeHeader();
+
+        int[] freeSlots = new int[this.capacity];
+        System.arraycopy(this.freeSlots, 0, freeSlots, 0, this.freeCount);
+        this.freeSlots = freeSlots;
+        for (int slot = this.capacity; slot > previous; slot--) {
+            this.freeSlots[this.freeCount++] = slot;
+        }
+    }
+
+    private MappedByteBuffer map(int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) (capacity + 1) * RECORD_SIZE);
+        }
+    }
+
+    private ByteBuffer readHeader() throws IOException {
+        if (!Files.isRegularFile(this.file) || Files.size(this.file) < RECORD_SIZE) {
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the full header
+            }
+        }
+
+        int capacity = header.getInt(HEADER_CAPACITY);
+        if (header.getLong(HEADER_MAGIC) != MAGIC || header.getInt(HEADER_VERSION) != VERSION
+                || capacity < 1 || Files.size(this.file) < (long) (capacity + 1) * RECORD_SIZE
+                || header.getInt(CRC) != this.checksum(header.array())) {
+            logger.warning("Ignoring invalid trigger journal header in " + this.file);
+            return null;
+        }
+        return header;
+    }
+
+    private void writeHeader() {
+        Arrays.fill(this.scratch, (byte) 0);
+        this.scratchBuffer.putLong(HEADER_MAGIC, MAGIC);
+        this.scratchBuffer.putInt(HEADER_VERSION, VERSION);
+        this.scratchBuffer.putInt(HEADER_CAPACITY, this.capacity);
+        this.scratchBuffer.putInt(CRC, this.checksum(this.scratch));
+
+        ((Buffer) this.buffer).position(0);
+        this.buffer.put(this.scratch);
+        this.buffer.force();
+    }
+
+    private int checksum(byte[] record) {
+        this.crc.reset();
+        this.crc.update(record, STATE, RECORD_SIZE - STATE);
+        return (int) this.crc.getValue();
+    }
+
+    private void putString(int offset, int maxLength, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxLength) {
+            logger.warning("Trigger journal value is too long and will be truncated: " + value);
+        }
+        int length = Math.min(bytes.length, maxLength);
+        this.scratch[offset] = (byte) length;
+        System.arraycopy(bytes, 0, this.scratch, offset + 1, length);
+    }
+
+    private String getString(int offset) {
+        int length = this.scratch[offset] & 0xFF;
+        return new String(this.scratch, offset + 1, length, StandardCharsets.UTF_8);
+    }
+
+    // ============================================================
+    // Journal entry
+    // ============================================================
+
+    /**
+     * Sign left active by a previous run.
+     */
+    private static final class Entry {
+
+        private final int slot;
+        private final UUID world;
+        private final int x;
+        private final int y;
+        private final int z;
+        private final long expiresAt;
+        private final DyeColor color;
+        private final UUID owner;
+        private final String ownerName;
+        private final String blockData;
+        private final String[] lines;
+
+        private Entry(int slot, UUID world, int x, int y, int z, long expiresAt, DyeColor color, UUID owner,
+                      String ownerName, String blockData, String[] lines) {
+            this.slot = slot;
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.expiresAt = expiresAt;
+            this.color = color;
+            this.owner = owner;
+            this.ownerName = ownerName;
+            this.blockData = blockData;
+            this.lines = lines;
+        }
+
+        private String describe(World bukkitWorld) {
+            return bukkitWorld.getName() + " " + this.x + ", " + this.y + ", " + this.z;
+        }
+    }
+}
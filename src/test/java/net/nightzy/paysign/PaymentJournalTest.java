@@ -0,0 +1,149 @@
+package net.nightzy.paysign;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+
+class PaymentJournalTest {
+
+    private static final int SCALE = 2;
+    private static final UUID OWNER_ID = UUID.randomUUID();
+    private static final String OWNER = "Owner";
+    private static final String WORLD = "world";
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Compacts while a deposit is in flight, reopens the journal and replays it.
+     * The in-flight deposit is assumed to have happened, so exactly the rest of the
+     * credited revenue has to be deposited.
+     */
+    @Test
+    void compactionKeepsCreditsOfDepositsInFlight() throws Exception {
+        List<Long> deposits = new ArrayList<>();
+        int payments = 2000; // three records each, enough to fill and compact the journal
+
+        try (PaymentJournal journal = PaymentJournal.open(this.directory, SCALE)) {
+            this.pay(journal, 10);
+            journal.settling(OWNER_ID, OWNER, WORLD, Money.ofMinor(1000, SCALE)); // never settled
+            this.pay(journal, payments);
+        }
+
+        try (PaymentJournal journal = PaymentJournal.open(this.directory, SCALE)) {
+            journal.replay(server(), economy(deposits));
+        }
+        assertEquals(1, deposits.size());
+        assertEquals((10 + payments) * 100L - 1000, (long) deposits.get(0));
+
+        // Everything has been settled
+        deposits.clear();
+        try (PaymentJournal journal = PaymentJournal.open(this.directory, SCALE)) {
+            journal.replay(server(), economy(deposits));
+        }
+        assertEquals(0, deposits.size());
+    }
+
+    /**
+     * Compacts while a deposit of the whole credit is in flight.
+     */
+    @Test
+    void compactionKeepsFullyDepositingAccounts() throws Exception {
+        List<Long> deposits = new ArrayList<>();
+
+        try (PaymentJournal journal = PaymentJournal.open(this.directory, SCALE)) {
+            this.pay(journal, 10);
+            long settle = journal.settling(OWNER_ID, OWNER, WORLD, Money.ofMinor(1000, SCALE));
+            this.pay(journal, 2000);
+            journal.settleFailed(settle);
+        }
+
+        try (PaymentJournal journal = PaymentJournal.open(this.directory, SCALE)) {
+            journal.replay(server(), economy(deposits));
+        }
+        assertEquals(1, deposits.size());
+        assertEquals(2010 * 100L, (long) deposits.get(0));
+    }
+
+    /**
+     * Credits and deposits an owner under two names, as after a rename.
+     * The deposit has to be subtracted from the owner's credit whichever name it was made under.
+     */
+    @Test
+    void creditsAreKeyedByOwnerId() throws Exception {
+        List<Long> deposits = new ArrayList<>();
+
+        try (PaymentJournal journal = PaymentJournal.open(this.directory, SCALE)) {
+            this.pay(journal, 5);
+            long id = journal.begin(UUID.randomUUID(), OWNER_ID, "Renamed", WORLD, Money.ofMinor(300, SCALE));
+            journal.withdrawn(id);
+            journal.credited(id);
+            journal.settled(journal.settling(OWNER_ID, "Renamed", WORLD, Money.ofMinor(800, SCALE)));
+        }
+
+        try (PaymentJournal journal = PaymentJournal.open(this.directory, SCALE)) {
+            journal.replay(server(), economy(deposits));
+        }
+        assertEquals(0, deposits.size());
+    }
+
+    // ============================================================
+    // Helper methods
+    // ============================================================
+
+    private void pay(PaymentJournal journal, int count) {
+        for (int i = 0; i < count; i++) {
+            long id = journal.begin(UUID.randomUUID(), OWNER_ID, OWNER, WORLD, Money.ofMinor(100, SCALE));
+            journal.withdrawn(id);
+            journal.credited(id);
+        }
+    }
+
+    /**
+     * @return a server resolving only the owner
+     */
+    private static Server server() {
+        OfflinePlayer owner = stub(OfflinePlayer.class);
+        return (Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[]{Server.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getOfflinePlayer") || !OWNER_ID.equals(args[0])) {
+                        throw new UnsupportedOperationException("Server." + method.getName() + " is not stubbed");
+                    }
+                    return owner;
+                });
+    }
+
+    /**
+     * @return an economy recording the deposits to accounts resolved by UUID in minor units
+     */
+    private static Economy economy(List<Long> deposits) {
+        return (Economy) Proxy.newProxyInstance(Economy.class.getClassLoader(), new Class<?>[]{Economy.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("depositPlayer") || !(args[0] instanceof OfflinePlayer)) {
+                        throw new UnsupportedOperationException("Economy." + method.getName() + " is not stubbed");
+                    }
+                    double amount = (double) args[args.length - 1];
+                    deposits.add(Money.fromDouble(amount, SCALE).getMinorUnits());
+                    return new EconomyResponse(amount, 0, EconomyResponse.ResponseType.SUCCESS, null);
+                });
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName() + " is not stubbed");
+                }));
+    }
+}